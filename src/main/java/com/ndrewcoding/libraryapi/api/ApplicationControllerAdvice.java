@@ -28,6 +28,7 @@ public class ApplicationControllerAdvice {
 
     @ExceptionHandler(ResponseStatusException.class)
     public ResponseEntity<?> handleResponseStatusException(ResponseStatusException responseStatusException) {
-        return new ResponseEntity<>(new ApiErrors(responseStatusException), responseStatusException.getStatus());
+        return new ResponseEntity<>(new ApiErrors(responseStatusException),
+                responseStatusException.getResponseHeaders(), responseStatusException.getStatus());
     }
 }
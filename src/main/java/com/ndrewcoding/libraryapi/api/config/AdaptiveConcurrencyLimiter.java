@@ -0,0 +1,94 @@
+package com.ndrewcoding.libraryapi.api.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounds the number of requests in flight with a limit found by AIMD: it grows by one after a fast request that
+ * finished while at least half the limit was in use, and shrinks by the backoff ratio after a request slower than
+ * the latency threshold or failed by the server. When the database slows down the limit falls quickly, and the
+ * requests over it are refused at once instead of queueing in the container.
+ * <p>
+ * The limit shrinks at most once per round trip: a slow or failed request that started before the last decrease was
+ * already in flight when the limit reacted, so it does not shrink it again. A burst of requests slowed down together
+ * thus costs one backoff, not one per request.
+ */
+public class AdaptiveConcurrencyLimiter {
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final double backoffRatio;
+    private final long latencyThresholdNanos;
+    private final AtomicInteger limit;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    // System.nanoTime() of the last decrease; a year back at first, so the first drop always counts.
+    private final AtomicLong decreasedAt = new AtomicLong(System.nanoTime() - TimeUnit.DAYS.toNanos(365));
+    private final Counter rejected;
+
+    public AdaptiveConcurrencyLimiter(String kind, ConcurrencyLimitProperties.Limit properties, double backoffRatio,
+                                      MeterRegistry meterRegistry) {
+        this.minLimit = Math.max(1, properties.getMinLimit());
+        this.maxLimit = Math.max(minLimit, properties.getMaxLimit());
+        this.backoffRatio = backoffRatio;
+        this.latencyThresholdNanos = properties.getLatencyThreshold().toNanos();
+        this.limit = new AtomicInteger(Math.min(maxLimit, Math.max(minLimit, properties.getInitialLimit())));
+        Gauge.builder("library.web.concurrency.limit", limit, AtomicInteger::get)
+                .description("Current number of requests allowed in flight")
+                .tag("kind", kind)
+                .register(meterRegistry);
+        Gauge.builder("library.web.concurrency.in-flight", inFlight, AtomicInteger::get)
+                .description("Requests in flight")
+                .tag("kind", kind)
+                .register(meterRegistry);
+        this.rejected = Counter.builder("library.web.concurrency.rejected")
+                .description("Requests refused because the limit was reached")
+                .tag("kind", kind)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Takes a slot if the limit allows it; a caller that got one must {@link #release} it.
+     */
+    public boolean tryAcquire() {
+        for (int current = inFlight.get(); current < limit.get(); current = inFlight.get()) {
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+        rejected.increment();
+        return false;
+    }
+
+    public void release(Duration latency, boolean failed) {
+        int current = inFlight.getAndDecrement();
+        if (failed || latency.toNanos() > latencyThresholdNanos) {
+            decrease(System.nanoTime(), latency.toNanos());
+        } else if (current * 2 >= limit.get()) {
+            limit.updateAndGet(value -> Math.min(maxLimit, value + 1));
+        }
+    }
+
+    private void decrease(long now, long latencyNanos) {
+        long startedAt = now - latencyNanos;
+        for (long last = decreasedAt.get(); startedAt - last >= 0; last = decreasedAt.get()) {
+            if (decreasedAt.compareAndSet(last, now)) {
+                limit.updateAndGet(value -> Math.max(minLimit, (int) (value * backoffRatio)));
+                return;
+            }
+        }
+    }
+
+    public int getLimit() {
+        return limit.get();
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+}
@@ -0,0 +1,131 @@
+package com.ndrewcoding.libraryapi.api.config;
+
+import org.springframework.boot.autoconfigure.web.servlet.WebMvcRegistrations;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.MethodParameter;
+import org.springframework.core.ResolvableType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.async.AsyncWebRequest;
+import org.springframework.web.context.request.async.CallableProcessingInterceptor;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.method.support.AsyncHandlerMethodReturnValueHandler;
+import org.springframework.web.method.support.HandlerMethodReturnValueHandler;
+import org.springframework.web.method.support.ModelAndViewContainer;
+import org.springframework.web.servlet.HandlerMapping;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+import org.springframework.web.servlet.mvc.method.annotation.DeferredResultMethodReturnValueHandler;
+import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandlerAdapter;
+import org.springframework.web.servlet.mvc.method.annotation.ServletInvocableHandlerMethod;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionStage;
+
+/**
+ * Switches the endpoints listed in {@code application.web.async.endpoints} to async mode: their handler runs on the
+ * {@link AsyncEndpointExecutor} and returns a {@code CompletableFuture}, so the container thread is released while the
+ * database works and the response is written once the future completes. The arguments are still resolved and
+ * validated on the container thread. The maximum wait for the result is {@code spring.mvc.async.request-timeout}.
+ * <p>
+ * Streamed responses, which write for as long as there are rows, get {@code application.web.async.stream-timeout}
+ * instead. That timeout is applied only to handlers returning a {@link StreamingResponseBody}, so every other async
+ * request keeps the default.
+ */
+@Configuration
+@EnableConfigurationProperties(AsyncRequestProperties.class)
+public class AsyncEndpointConfig implements WebMvcConfigurer, WebMvcRegistrations {
+
+    private final AsyncEndpointExecutor executor;
+    private final Duration streamTimeout;
+
+    public AsyncEndpointConfig(AsyncRequestProperties properties) {
+        this.executor = new AsyncEndpointExecutor(properties);
+        this.streamTimeout = properties.getStreamTimeout();
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        executor.shutdown();
+    }
+
+    @Override
+    public RequestMappingHandlerAdapter getRequestMappingHandlerAdapter() {
+        return new RequestMappingHandlerAdapter() {
+            @Override
+            protected ServletInvocableHandlerMethod createInvocableHandlerMethod(HandlerMethod handlerMethod) {
+                return executor.handles(handlerMethod)
+                        ? new AsyncHandlerMethod(handlerMethod)
+                        : super.createInvocableHandlerMethod(handlerMethod);
+            }
+        };
+    }
+
+    @Override
+    public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+        configurer.registerCallableInterceptors(new CallableProcessingInterceptor() {
+            @Override
+            public <T> void beforeConcurrentHandling(NativeWebRequest request, Callable<T> task) {
+                Object handler = request.getAttribute(
+                        HandlerMapping.BEST_MATCHING_HANDLER_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+                if (handler instanceof HandlerMethod && isStream((HandlerMethod) handler)) {
+                    ((AsyncWebRequest) request).setTimeout(streamTimeout.toMillis());
+                }
+            }
+        });
+    }
+
+    static boolean isStream(HandlerMethod handlerMethod) {
+        ResolvableType returnType = ResolvableType.forMethodReturnType(handlerMethod.getMethod());
+        if (ResponseEntity.class.isAssignableFrom(returnType.toClass())) {
+            returnType = returnType.getGeneric(0);
+        }
+        return StreamingResponseBody.class.isAssignableFrom(returnType.toClass());
+    }
+
+    @Override
+    public void addReturnValueHandlers(List<HandlerMethodReturnValueHandler> handlers) {
+        handlers.add(new AsyncEndpointReturnValueHandler());
+    }
+
+    private class AsyncHandlerMethod extends ServletInvocableHandlerMethod {
+        AsyncHandlerMethod(HandlerMethod handlerMethod) {
+            super(handlerMethod);
+        }
+
+        @Override
+        protected Object doInvoke(Object... args) {
+            return executor.submit(() -> AsyncHandlerMethod.super.doInvoke(args));
+        }
+    }
+
+    /**
+     * Hands the future of an async endpoint to Spring MVC as a {@code DeferredResult}, whatever the declared return
+     * type of its handler.
+     */
+    private class AsyncEndpointReturnValueHandler implements AsyncHandlerMethodReturnValueHandler {
+        private final DeferredResultMethodReturnValueHandler delegate = new DeferredResultMethodReturnValueHandler();
+
+        @Override
+        public boolean isAsyncReturnValue(Object returnValue, MethodParameter returnType) {
+            return returnValue instanceof CompletionStage;
+        }
+
+        @Override
+        public boolean supportsReturnType(MethodParameter returnType) {
+            return executor.handles(returnType.getContainingClass(), returnType.getMethod());
+        }
+
+        @Override
+        public void handleReturnValue(Object returnValue, MethodParameter returnType,
+                                      ModelAndViewContainer mavContainer, NativeWebRequest webRequest) throws Exception {
+            delegate.handleReturnValue(returnValue, returnType, mavContainer, webRequest);
+        }
+    }
+}
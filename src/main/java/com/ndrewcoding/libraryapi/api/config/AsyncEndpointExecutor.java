@@ -0,0 +1,85 @@
+package com.ndrewcoding.libraryapi.api.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs the handlers of the endpoints listed in {@code application.web.async.endpoints} (as {@code
+ * BookController.get}) on a bounded pool reserved for database work. When the pool and its queue are full the
+ * request is refused at once with a 503 and a {@code Retry-After} of {@code application.web.async.retry-after},
+ * as the concurrency limit does, instead of waiting for a thread.
+ */
+@Slf4j
+public class AsyncEndpointExecutor {
+
+    private final AsyncRequestProperties properties;
+    private final ThreadPoolExecutor executor;
+    private final HttpHeaders busyHeaders = new HttpHeaders();
+
+    public AsyncEndpointExecutor(AsyncRequestProperties properties) {
+        this.properties = properties;
+        AtomicInteger threadCount = new AtomicInteger();
+        BlockingQueue<Runnable> queue = properties.getQueueCapacity() > 0
+                ? new ArrayBlockingQueue<>(properties.getQueueCapacity())
+                : new SynchronousQueue<>();
+        this.executor = new ThreadPoolExecutor(properties.getPoolSize(), properties.getPoolSize(),
+                0L, TimeUnit.MILLISECONDS, queue,
+                runnable -> new Thread(runnable, "async-endpoint-" + threadCount.incrementAndGet()));
+        busyHeaders.set(HttpHeaders.RETRY_AFTER,
+                Long.toString(Math.max(1, (properties.getRetryAfter().toMillis() + 999) / 1000)));
+    }
+
+    public boolean handles(HandlerMethod handlerMethod) {
+        return handles(handlerMethod.getBeanType(), handlerMethod.getMethod());
+    }
+
+    public boolean handles(Class<?> beanType, Method method) {
+        return properties.getEndpoints().contains(beanType.getSimpleName() + "." + method.getName());
+    }
+
+    public CompletableFuture<Object> submit(Callable<Object> handler) {
+        CompletableFuture<Object> result = new CompletableFuture<>();
+        Callable<Object> task = ReadYourWrites.propagate(handler);
+        try {
+            executor.execute(() -> {
+                try {
+                    result.complete(task.call());
+                } catch (Throwable exception) {
+                    result.completeExceptionally(exception);
+                }
+            });
+        } catch (RejectedExecutionException exception) {
+            log.debug("async endpoint pool is full, refusing the request");
+            throw new ServerBusyException(busyHeaders);
+        }
+        return result;
+    }
+
+    public void shutdown() throws InterruptedException {
+        executor.shutdown();
+        if (!executor.awaitTermination(30, TimeUnit.SECONDS)) {
+            executor.shutdownNow();
+        }
+    }
+
+    private static class ServerBusyException extends ResponseStatusException {
+        private final HttpHeaders headers;
+
+        ServerBusyException(HttpHeaders headers) {
+            super(HttpStatus.SERVICE_UNAVAILABLE, "Server busy, try again later.");
+            this.headers = headers;
+        }
+
+        @Override
+        public HttpHeaders getResponseHeaders() {
+            return headers;
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package com.ndrewcoding.libraryapi.api.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "application.web.async")
+public class AsyncRequestProperties {
+    private Set<String> endpoints = new LinkedHashSet<>();
+    private int poolSize = 16;
+    private int queueCapacity = 64;
+    private Duration streamTimeout = Duration.ofMinutes(30);
+    private Duration retryAfter = Duration.ofSeconds(1);
+}
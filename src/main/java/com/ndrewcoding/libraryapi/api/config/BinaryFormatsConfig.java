@@ -0,0 +1,31 @@
+package com.ndrewcoding.libraryapi.api.config;
+
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+
+/**
+ * Lets clients exchange bodies as CBOR ({@code application/cbor}) or Smile ({@code application/x-jackson-smile})
+ * through the {@code Accept} and {@code Content-Type} headers. Both are binary forms of the same Jackson model, so
+ * they carry exactly what the JSON does; JSON stays the default when no binary type is asked for.
+ * <p>
+ * The mappers are built from Spring Boot's {@link Jackson2ObjectMapperBuilder}, so the {@code spring.jackson}
+ * settings apply to every format alike.
+ */
+@Configuration
+public class BinaryFormatsConfig {
+
+    @Bean
+    public MappingJackson2CborHttpMessageConverter cborHttpMessageConverter(Jackson2ObjectMapperBuilder builder) {
+        return new MappingJackson2CborHttpMessageConverter(builder.factory(new CBORFactory()).build());
+    }
+
+    @Bean
+    public MappingJackson2SmileHttpMessageConverter smileHttpMessageConverter(Jackson2ObjectMapperBuilder builder) {
+        return new MappingJackson2SmileHttpMessageConverter(builder.factory(new SmileFactory()).build());
+    }
+}
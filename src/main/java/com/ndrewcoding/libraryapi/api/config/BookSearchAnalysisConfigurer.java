@@ -0,0 +1,33 @@
+package com.ndrewcoding.libraryapi.api.config;
+
+import org.apache.lucene.analysis.core.LowerCaseFilterFactory;
+import org.apache.lucene.analysis.miscellaneous.ASCIIFoldingFilterFactory;
+import org.apache.lucene.analysis.ngram.EdgeNGramFilterFactory;
+import org.apache.lucene.analysis.standard.StandardTokenizerFactory;
+import org.hibernate.search.backend.lucene.analysis.LuceneAnalysisConfigurationContext;
+import org.hibernate.search.backend.lucene.analysis.LuceneAnalysisConfigurer;
+
+/**
+ * Indexes every word of the searchable Book fields together with its prefixes, so that a search for "tolk" finds
+ * "Tolkien" with a single term lookup instead of a {@code LIKE '%tolk%'} scan.
+ */
+public class BookSearchAnalysisConfigurer implements LuceneAnalysisConfigurer {
+    public static final String PREFIX_ANALYZER = "prefix";
+    public static final String PREFIX_QUERY_ANALYZER = "prefix_query";
+
+    @Override
+    public void configure(LuceneAnalysisConfigurationContext context) {
+        context.analyzer(PREFIX_ANALYZER).custom()
+                .tokenizer(StandardTokenizerFactory.class)
+                .tokenFilter(LowerCaseFilterFactory.class)
+                .tokenFilter(ASCIIFoldingFilterFactory.class)
+                .tokenFilter(EdgeNGramFilterFactory.class)
+                .param("minGramSize", "1")
+                .param("maxGramSize", "20");
+
+        context.analyzer(PREFIX_QUERY_ANALYZER).custom()
+                .tokenizer(StandardTokenizerFactory.class)
+                .tokenFilter(LowerCaseFilterFactory.class)
+                .tokenFilter(ASCIIFoldingFilterFactory.class);
+    }
+}
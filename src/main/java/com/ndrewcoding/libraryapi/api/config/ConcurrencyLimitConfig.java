@@ -0,0 +1,41 @@
+package com.ndrewcoding.libraryapi.api.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+
+import java.io.IOException;
+
+/**
+ * Puts an {@link AdaptiveConcurrencyLimiter} for reads and another for writes in front of the Book and Loan
+ * endpoints, so a slow database sheds the excess requests with a 503 rather than piling them up in Tomcat. Each
+ * limit and its rejections are published as {@code library.web.concurrency.*}, tagged with the kind.
+ * <p>
+ * Set {@code application.web.concurrency-limit.enabled} to false to let every request through.
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "application.web.concurrency-limit", name = "enabled", matchIfMissing = true)
+@EnableConfigurationProperties(ConcurrencyLimitProperties.class)
+public class ConcurrencyLimitConfig {
+
+    @Bean
+    public FilterRegistrationBean<ConcurrencyLimitFilter> concurrencyLimitFilter(
+            ConcurrencyLimitProperties properties, ObjectMapper objectMapper, MeterRegistry meterRegistry)
+            throws IOException {
+        AdaptiveConcurrencyLimiter readLimiter = new AdaptiveConcurrencyLimiter(
+                "read", properties.getRead(), properties.getBackoffRatio(), meterRegistry);
+        AdaptiveConcurrencyLimiter writeLimiter = new AdaptiveConcurrencyLimiter(
+                "write", properties.getWrite(), properties.getBackoffRatio(), meterRegistry);
+        FilterRegistrationBean<ConcurrencyLimitFilter> registration = new FilterRegistrationBean<>(
+                new ConcurrencyLimitFilter(readLimiter, writeLimiter, properties.getExcludedPaths(),
+                        properties.getRetryAfter(), objectMapper));
+        registration.addUrlPatterns("/api/books", "/api/books/*", "/api/loans", "/api/loans/*");
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE + 5);
+        return registration;
+    }
+}
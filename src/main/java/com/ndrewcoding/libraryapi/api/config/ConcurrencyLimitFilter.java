@@ -0,0 +1,127 @@
+package com.ndrewcoding.libraryapi.api.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.ndrewcoding.libraryapi.api.exception.ApiErrors;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.util.UrlPathHelper;
+
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Lets a request through only if the limiter of its kind has room, GET and HEAD on the read one and the other methods
+ * on the write one, and otherwise answers 503 with a {@code Retry-After} at once. The slot is held until the response
+ * is complete, async ones included. Long-lived responses, as streams and exports, and the bulk endpoints, whose
+ * duration grows with the number of items, are left out since their duration says nothing about the load.
+ */
+public class ConcurrencyLimitFilter extends OncePerRequestFilter {
+    static final String BUSY_MESSAGE = "Server busy, try again later.";
+
+    private final AdaptiveConcurrencyLimiter readLimiter;
+    private final AdaptiveConcurrencyLimiter writeLimiter;
+    private final Set<String> excludedPaths;
+    private final String retryAfter;
+    private final byte[] busyBody;
+    private final UrlPathHelper urlPathHelper = new UrlPathHelper();
+
+    public ConcurrencyLimitFilter(AdaptiveConcurrencyLimiter readLimiter, AdaptiveConcurrencyLimiter writeLimiter,
+                                  Set<String> excludedPaths, Duration retryAfter, ObjectMapper objectMapper)
+            throws IOException {
+        this.readLimiter = readLimiter;
+        this.writeLimiter = writeLimiter;
+        this.excludedPaths = excludedPaths;
+        this.retryAfter = Long.toString(Math.max(1, (retryAfter.toMillis() + 999) / 1000));
+        this.busyBody = objectMapper.writeValueAsBytes(
+                new ApiErrors(new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, BUSY_MESSAGE)));
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return excludedPaths.contains(urlPathHelper.getPathWithinApplication(request));
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        AdaptiveConcurrencyLimiter limiter = isRead(request) ? readLimiter : writeLimiter;
+        if (!limiter.tryAcquire()) {
+            response.setStatus(HttpStatus.SERVICE_UNAVAILABLE.value());
+            response.setHeader(HttpHeaders.RETRY_AFTER, retryAfter);
+            response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+            response.getOutputStream().write(busyBody);
+            return;
+        }
+        Slot slot = new Slot(limiter, response);
+        try {
+            filterChain.doFilter(request, response);
+        } catch (IOException | ServletException | RuntimeException exception) {
+            slot.release(true);
+            throw exception;
+        }
+        if (request.isAsyncStarted()) {
+            request.getAsyncContext().addListener(slot);
+        } else {
+            slot.release(false);
+        }
+    }
+
+    private static boolean isRead(HttpServletRequest request) {
+        String method = request.getMethod();
+        return HttpMethod.GET.matches(method) || HttpMethod.HEAD.matches(method);
+    }
+
+    /**
+     * A slot taken from a limiter, given back once whichever way the request ends.
+     */
+    private static class Slot implements AsyncListener {
+        private final AdaptiveConcurrencyLimiter limiter;
+        private final HttpServletResponse response;
+        private final long start = System.nanoTime();
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        Slot(AdaptiveConcurrencyLimiter limiter, HttpServletResponse response) {
+            this.limiter = limiter;
+            this.response = response;
+        }
+
+        void release(boolean failed) {
+            if (released.compareAndSet(false, true)) {
+                limiter.release(Duration.ofNanos(System.nanoTime() - start),
+                        failed || response.getStatus() >= HttpStatus.INTERNAL_SERVER_ERROR.value());
+            }
+        }
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+            release(false);
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+            release(true);
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+            release(true);
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+            event.getAsyncContext().addListener(this);
+        }
+    }
+}
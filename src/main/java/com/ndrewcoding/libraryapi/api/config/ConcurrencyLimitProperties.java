@@ -0,0 +1,39 @@
+package com.ndrewcoding.libraryapi.api.config;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "application.web.concurrency-limit")
+public class ConcurrencyLimitProperties {
+    private Duration retryAfter = Duration.ofSeconds(1);
+    private double backoffRatio = 0.9;
+    private Set<String> excludedPaths = new LinkedHashSet<>(
+            Arrays.asList("/api/books/export", "/api/loans/export", "/api/loans/stream",
+                    "/api/books/bulk", "/api/loans/bulk", "/api/loans/bulk/returns"));
+    private Limit read = new Limit(50, 4, 200, Duration.ofMillis(500));
+    private Limit write = new Limit(20, 2, 100, Duration.ofSeconds(1));
+
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Limit {
+        private int initialLimit;
+        private int minLimit;
+        private int maxLimit;
+        /**
+         * A request slower than this is taken as a sign of overload, as a server error is.
+         */
+        private Duration latencyThreshold;
+    }
+}
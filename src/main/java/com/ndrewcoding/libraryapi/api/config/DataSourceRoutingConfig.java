@@ -0,0 +1,82 @@
+package com.ndrewcoding.libraryapi.api.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.Ordered;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Turned on by listing replicas under {@code application.datasource.replicas}: read-only transactions are then served
+ * by the replicas and everything else by the primary of {@code spring.datasource}. Without replicas the usual single
+ * datasource is left alone.
+ * <p>
+ * The pools are built here, so {@code spring.datasource.hikari} does not apply; each replica gets a read-only pool
+ * of {@code maximum-pool-size} connections. The read-your-writes window should be at least the maximum replica lag.
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "application.datasource.replicas[0]", name = "url")
+@EnableConfigurationProperties({DataSourceProperties.class, DataSourceRoutingProperties.class})
+public class DataSourceRoutingConfig {
+
+    @Bean
+    public ReadWriteRoutingDataSource readWriteRoutingDataSource(DataSourceProperties primaryProperties,
+                                                                 DataSourceRoutingProperties properties) {
+        HikariDataSource primary = primaryProperties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        primary.setPoolName("primary");
+        Map<String, DataSource> replicas = new LinkedHashMap<>();
+        List<DataSourceRoutingProperties.Replica> replicaProperties = properties.getReplicas();
+        for (int i = 0; i < replicaProperties.size(); i++) {
+            DataSourceRoutingProperties.Replica replicaProperty = replicaProperties.get(i);
+            HikariDataSource replica = DataSourceBuilder.create()
+                    .type(HikariDataSource.class)
+                    .url(replicaProperty.getUrl())
+                    .username(replicaProperty.getUsername())
+                    .password(replicaProperty.getPassword())
+                    .build();
+            replica.setPoolName("replica-" + i);
+            replica.setReadOnly(true);
+            replica.setMaximumPoolSize(replicaProperty.getMaximumPoolSize());
+            replicas.put(replica.getPoolName(), replica);
+        }
+        return new ReadWriteRoutingDataSource(primary, replicas, properties.getReadYourWritesWindow());
+    }
+
+    /**
+     * Depends on the routing datasource so that it is built first: Spring Boot initializes every datasource bean with
+     * the primary one, which must not be in creation at that point.
+     */
+    @Bean
+    @Primary
+    @DependsOn("readWriteRoutingDataSource")
+    public DataSource dataSource(ReadWriteRoutingDataSource readWriteRoutingDataSource) {
+        return new LazyConnectionDataSourceProxy(readWriteRoutingDataSource);
+    }
+
+    @Bean
+    public ReplicaLagMonitor replicaLagMonitor(ReadWriteRoutingDataSource readWriteRoutingDataSource,
+                                               DataSourceRoutingProperties properties, MeterRegistry meterRegistry) {
+        return new ReplicaLagMonitor(readWriteRoutingDataSource, properties.getMaxReplicaLag(), meterRegistry);
+    }
+
+    @Bean
+    public FilterRegistrationBean<ReadYourWritesFilter> readYourWritesFilter(DataSourceRoutingProperties properties) {
+        FilterRegistrationBean<ReadYourWritesFilter> registration =
+                new FilterRegistrationBean<>(new ReadYourWritesFilter(properties.getReadYourWritesWindow()));
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE + 10);
+        return registration;
+    }
+}
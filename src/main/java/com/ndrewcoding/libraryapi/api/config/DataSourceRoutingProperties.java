@@ -0,0 +1,28 @@
+package com.ndrewcoding.libraryapi.api.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "application.datasource")
+public class DataSourceRoutingProperties {
+    private List<Replica> replicas = new ArrayList<>();
+    private Duration readYourWritesWindow = Duration.ofSeconds(5);
+    private Duration maxReplicaLag = Duration.ofSeconds(5);
+    private Duration lagCheckInterval = Duration.ofSeconds(1);
+
+    @Getter
+    @Setter
+    public static class Replica {
+        private String url;
+        private String username;
+        private String password;
+        private int maximumPoolSize = 10;
+    }
+}
@@ -0,0 +1,36 @@
+package com.ndrewcoding.libraryapi.api.config;
+
+import com.ndrewcoding.libraryapi.api.service.LoanService;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Publishes the number of open and overdue Loans. The counts are refreshed on a fixed delay rather than on every
+ * scrape, so monitoring never adds load to the database.
+ */
+@Component
+public class LoanGauges {
+    private final LoanService loanService;
+    private final AtomicLong openLoans = new AtomicLong();
+    private final AtomicLong overdueLoans = new AtomicLong();
+
+    public LoanGauges(LoanService loanService, MeterRegistry meterRegistry) {
+        this.loanService = loanService;
+        Gauge.builder("library.loans.open", openLoans, AtomicLong::get)
+                .description("Loans not returned yet")
+                .register(meterRegistry);
+        Gauge.builder("library.loans.overdue", overdueLoans, AtomicLong::get)
+                .description("Loans not returned within the loan period")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${application.metrics.loan-gauges.refresh-interval:PT1M}")
+    public void refresh() {
+        openLoans.set(loanService.countOpenLoans());
+        overdueLoans.set(loanService.countOverdueLoans());
+    }
+}
@@ -0,0 +1,37 @@
+package com.ndrewcoding.libraryapi.api.config;
+
+import com.ndrewcoding.libraryapi.api.service.LoanService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * The index of loaned Books lives in memory, so it is loaded from the database on startup. Loans changed through
+ * {@code LoanService} keep it current; anything else writing to the database is caught by the periodic
+ * reconciliation.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class LoanedBookIndexReconciler {
+    private final LoanService loanService;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        log.info("loaded {} loaned Books into the availability index", loanService.reconcileLoanedBookIndex());
+    }
+
+    @Scheduled(
+            initialDelayString = "${application.availability.reconcile-interval:PT10M}",
+            fixedDelayString = "${application.availability.reconcile-interval:PT10M}"
+    )
+    public void reconcile() {
+        int outOfSync = loanService.reconcileLoanedBookIndex();
+        if (outOfSync > 0) {
+            log.warn("the availability index disagreed with the database on {} Books, now fixed", outOfSync);
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package com.ndrewcoding.libraryapi.api.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "application.mail.dispatch")
+public class MailDispatchProperties {
+    private int queueCapacity = 1000;
+    private int workers = 2;
+    private int recipientsPerMessage = 50;
+    private int messagesPerConnection = 20;
+    private int maxAttempts = 3;
+    private Duration initialBackoff = Duration.ofSeconds(1);
+    private Duration maxBackoff = Duration.ofSeconds(30);
+    private Duration enqueueTimeout = Duration.ofSeconds(30);
+}
@@ -0,0 +1,109 @@
+package com.ndrewcoding.libraryapi.api.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.RequiredArgsConstructor;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.aop.support.AopUtils;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Times every call to the Book and Loan repositories and to the services. Timers are tagged only by class, method
+ * and exception class name, so the number of series stays bounded by the code base, and each is built and registered
+ * once, on its first call, rather than looked up in the registry on every call.
+ */
+@Aspect
+@Component
+@RequiredArgsConstructor
+public class MetricsAspect {
+    public static final String REPOSITORY_TIMER = "library.repository";
+    public static final String SERVICE_TIMER = "library.service";
+
+    private final MeterRegistry meterRegistry;
+    private final Map<TimerKey, Timer> timers = new ConcurrentHashMap<>();
+
+    @Around("execution(public * com.ndrewcoding.libraryapi.api.model.repository.*Repository+.*(..))")
+    public Object timeRepository(ProceedingJoinPoint joinPoint) throws Throwable {
+        return time(REPOSITORY_TIMER, joinPoint.getThis().getClass(), joinPoint);
+    }
+
+    @Around("execution(public * com.ndrewcoding.libraryapi.api.service.*Service+.*(..))")
+    public Object timeService(ProceedingJoinPoint joinPoint) throws Throwable {
+        return time(SERVICE_TIMER, AopUtils.getTargetClass(joinPoint.getTarget()), joinPoint);
+    }
+
+    private Object time(String name, Class<?> type, ProceedingJoinPoint joinPoint) throws Throwable {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        Class<?> exception = null;
+        try {
+            return joinPoint.proceed();
+        } catch (Throwable throwable) {
+            exception = throwable.getClass();
+            throw throwable;
+        } finally {
+            sample.stop(timer(new TimerKey(name, type, joinPoint.getSignature().getName(), exception)));
+        }
+    }
+
+    private Timer timer(TimerKey key) {
+        // A plain get first: Java 8's computeIfAbsent locks the bin even when the timer is already there.
+        Timer timer = timers.get(key);
+        return timer != null ? timer : timers.computeIfAbsent(key, this::register);
+    }
+
+    private Timer register(TimerKey key) {
+        return Timer.builder(key.name)
+                .tag("class", REPOSITORY_TIMER.equals(key.name) ? repositoryName(key.type) : key.type.getSimpleName())
+                .tag("method", key.method)
+                .tag("exception", key.exception == null ? "none" : key.exception.getSimpleName())
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    private static String repositoryName(Class<?> proxyClass) {
+        for (Class<?> repositoryInterface : proxyClass.getInterfaces()) {
+            if (repositoryInterface.getPackage().getName().endsWith(".model.repository")) {
+                return repositoryInterface.getSimpleName();
+            }
+        }
+        return proxyClass.getSimpleName();
+    }
+
+    private static final class TimerKey {
+        private final String name;
+        private final Class<?> type;
+        private final String method;
+        private final Class<?> exception;
+
+        private TimerKey(String name, Class<?> type, String method, Class<?> exception) {
+            this.name = name;
+            this.type = type;
+            this.method = method;
+            this.exception = exception;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof TimerKey)) {
+                return false;
+            }
+            TimerKey key = (TimerKey) other;
+            return name.equals(key.name) && type == key.type && method.equals(key.method)
+                    && exception == key.exception;
+        }
+
+        @Override
+        public int hashCode() {
+            int hash = name.hashCode();
+            hash = 31 * hash + type.hashCode();
+            hash = 31 * hash + method.hashCode();
+            return 31 * hash + (exception == null ? 0 : exception.hashCode());
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package com.ndrewcoding.libraryapi.api.config;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Sends the connections of read-only transactions to the replicas, in turn, and everything else to the primary.
+ * A read still goes to the primary when no replica is healthy, that is within {@code maxReplicaLag} of the primary
+ * at the last check of the {@link ReplicaLagMonitor}, or when the thread is pinned by {@link ReadYourWrites}.
+ * <p>
+ * The choice is made when the connection is first used, so this must sit behind a
+ * {@code LazyConnectionDataSourceProxy}: the transaction manager asks for a connection before marking the
+ * transaction read-only.
+ */
+public class ReadWriteRoutingDataSource extends AbstractRoutingDataSource implements DisposableBean {
+    static final String PRIMARY = "primary";
+
+    private final DataSource primary;
+    private final Map<String, DataSource> replicas;
+    private final List<String> replicaKeys;
+    private final Set<String> healthyReplicas = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger nextReplica = new AtomicInteger();
+    private final Duration readYourWritesWindow;
+
+    public ReadWriteRoutingDataSource(DataSource primary, Map<String, DataSource> replicas,
+                                      Duration readYourWritesWindow) {
+        this.primary = primary;
+        this.replicas = Collections.unmodifiableMap(new LinkedHashMap<>(replicas));
+        this.replicaKeys = new ArrayList<>(replicas.keySet());
+        this.readYourWritesWindow = readYourWritesWindow;
+        Map<Object, Object> targets = new HashMap<>(replicas);
+        targets.put(PRIMARY, primary);
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(primary);
+        afterPropertiesSet();
+    }
+
+    public DataSource getPrimary() {
+        return primary;
+    }
+
+    public Map<String, DataSource> getReplicas() {
+        return replicas;
+    }
+
+    /**
+     * Lets reads reach the replica again, or keeps them away from it.
+     */
+    public void setHealthy(String replica, boolean healthy) {
+        if (healthy) {
+            healthyReplicas.add(replica);
+        } else {
+            healthyReplicas.remove(replica);
+        }
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            if (TransactionSynchronizationManager.isActualTransactionActive()) {
+                ReadYourWrites.written(readYourWritesWindow);
+            }
+            return PRIMARY;
+        }
+        if (ReadYourWrites.isPinned()) {
+            return PRIMARY;
+        }
+        int start = Math.floorMod(nextReplica.getAndIncrement(), replicaKeys.size());
+        for (int i = 0; i < replicaKeys.size(); i++) {
+            String replica = replicaKeys.get((start + i) % replicaKeys.size());
+            if (healthyReplicas.contains(replica)) {
+                return replica;
+            }
+        }
+        return PRIMARY;
+    }
+
+    @Override
+    public void destroy() throws Exception {
+        for (DataSource replica : replicas.values()) {
+            close(replica);
+        }
+        close(primary);
+    }
+
+    private static void close(DataSource dataSource) throws Exception {
+        if (dataSource instanceof AutoCloseable) {
+            ((AutoCloseable) dataSource).close();
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package com.ndrewcoding.libraryapi.api.config;
+
+import java.time.Duration;
+import java.util.concurrent.Callable;
+import java.util.function.LongConsumer;
+
+/**
+ * Keeps the reads of the current thread on the primary database for a short while after it wrote, since a replica may
+ * not have caught up yet. {@link ReadYourWritesFilter} carries the pin from one request of a client to the next.
+ * <p>
+ * Writes are only recorded inside a scope: a request, a task {@link #propagate propagated} to another thread, or work
+ * {@link #run run} in one, such as a scheduled job. The scope always ends with the work, so pooled threads never keep
+ * the pin of a previous task.
+ */
+public final class ReadYourWrites {
+    private static final ThreadLocal<State> STATE = new ThreadLocal<>();
+
+    private ReadYourWrites() {
+    }
+
+    /**
+     * Pins the thread to the primary until the given time, calling the listener, if any, on the first write.
+     */
+    static void bind(long pinnedUntil, LongConsumer onFirstWrite) {
+        STATE.set(new State(pinnedUntil, onFirstWrite));
+    }
+
+    static void clear() {
+        STATE.remove();
+    }
+
+    static boolean isPinned() {
+        State state = STATE.get();
+        return state != null && state.pinnedUntil > System.currentTimeMillis();
+    }
+
+    /**
+     * Records a write, pinning the thread to the primary for the given window. Does nothing outside a scope.
+     */
+    static void written(Duration window) {
+        State state = STATE.get();
+        if (state == null) {
+            return;
+        }
+        state.pinnedUntil = Math.max(state.pinnedUntil, System.currentTimeMillis() + window.toMillis());
+        if (state.onFirstWrite != null && !state.written) {
+            state.onFirstWrite.accept(state.pinnedUntil);
+        }
+        state.written = true;
+    }
+
+    /**
+     * Runs the work in a scope of its own, so that its reads follow its writes, unless the thread already has one.
+     */
+    public static void run(Runnable work) {
+        if (STATE.get() != null) {
+            work.run();
+            return;
+        }
+        STATE.set(new State(0, null));
+        try {
+            work.run();
+        } finally {
+            STATE.remove();
+        }
+    }
+
+    /**
+     * Wraps the task so that it runs with the pin of the calling thread, for work handed over to another thread, or
+     * in a scope of its own when the calling thread has none.
+     */
+    public static <T> Callable<T> propagate(Callable<T> task) {
+        State current = STATE.get();
+        State state = current != null ? current : new State(0, null);
+        return () -> {
+            STATE.set(state);
+            try {
+                return task.call();
+            } finally {
+                STATE.remove();
+            }
+        };
+    }
+
+    private static final class State {
+        private volatile long pinnedUntil;
+        private final LongConsumer onFirstWrite;
+        private volatile boolean written;
+
+        private State(long pinnedUntil, LongConsumer onFirstWrite) {
+            this.pinnedUntil = pinnedUntil;
+            this.onFirstWrite = onFirstWrite;
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package com.ndrewcoding.libraryapi.api.config;
+
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.WebUtils;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.time.Duration;
+
+/**
+ * Gives a client that wrote a cookie holding until when its reads stay on the primary, and pins the requests that
+ * bring it back. The cookie is set on the first write of a request, as long as the response is not committed yet.
+ */
+public class ReadYourWritesFilter extends OncePerRequestFilter {
+    static final String COOKIE = "library-primary-until";
+
+    private final Duration window;
+
+    public ReadYourWritesFilter(Duration window) {
+        this.window = window;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        ReadYourWrites.bind(pinnedUntil(request, window), pinnedUntil -> {
+            if (!response.isCommitted()) {
+                Cookie cookie = new Cookie(COOKIE, Long.toString(pinnedUntil));
+                cookie.setPath("/");
+                cookie.setHttpOnly(true);
+                cookie.setMaxAge((int) Math.max(1, (window.toMillis() + 999) / 1000));
+                response.addCookie(cookie);
+            }
+        });
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            ReadYourWrites.clear();
+        }
+    }
+
+    /**
+     * Reads the pin from the cookie, never further than one window from now, whatever the client sends.
+     */
+    private static long pinnedUntil(HttpServletRequest request, Duration window) {
+        Cookie cookie = WebUtils.getCookie(request, COOKIE);
+        if (cookie == null) {
+            return 0;
+        }
+        try {
+            return Math.min(Long.parseLong(cookie.getValue()), System.currentTimeMillis() + window.toMillis());
+        } catch (NumberFormatException exception) {
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package com.ndrewcoding.libraryapi.api.config;
+
+import com.ndrewcoding.libraryapi.api.model.entity.ReplicationHeartbeat;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Writes the current time to the heartbeat row of the primary and compares it with the copy each replica holds.
+ * A replica further behind than {@code application.datasource.max-replica-lag}, or that cannot be read, gets no
+ * reads until a later check finds it caught up. Replicas start unhealthy, until the first check.
+ * <p>
+ * The lag is published as {@code library.datasource.replica.lag}, in milliseconds, NaN while unknown.
+ */
+@Slf4j
+public class ReplicaLagMonitor {
+    private static final String UPDATE_BEAT = "UPDATE " + ReplicationHeartbeat.TABLE + " SET beat_at = ? WHERE id = 1";
+    private static final String INSERT_BEAT = "INSERT INTO " + ReplicationHeartbeat.TABLE + " (id, beat_at) VALUES (1, ?)";
+    private static final String SELECT_BEAT = "SELECT beat_at FROM " + ReplicationHeartbeat.TABLE + " WHERE id = 1";
+
+    private final ReadWriteRoutingDataSource routingDataSource;
+    private final Duration maxReplicaLag;
+    private final JdbcTemplate primary;
+    private final Map<String, JdbcTemplate> replicas = new LinkedHashMap<>();
+    private final Map<String, Double> lags = new ConcurrentHashMap<>();
+
+    public ReplicaLagMonitor(ReadWriteRoutingDataSource routingDataSource, Duration maxReplicaLag,
+                             MeterRegistry meterRegistry) {
+        this.routingDataSource = routingDataSource;
+        this.maxReplicaLag = maxReplicaLag;
+        this.primary = new JdbcTemplate(routingDataSource.getPrimary());
+        routingDataSource.getReplicas().forEach((name, dataSource) -> {
+            replicas.put(name, new JdbcTemplate(dataSource));
+            lags.put(name, Double.NaN);
+            Gauge.builder("library.datasource.replica.lag", lags, lagsByName -> lagsByName.get(name))
+                    .description("How far the replica was behind the primary at the last check, in milliseconds")
+                    .tag("replica", name)
+                    .register(meterRegistry);
+        });
+    }
+
+    @Scheduled(fixedDelayString = "${application.datasource.lag-check-interval:PT1S}")
+    public void check() {
+        long beat = System.currentTimeMillis();
+        try {
+            if (primary.update(UPDATE_BEAT, beat) == 0) {
+                primary.update(INSERT_BEAT, beat);
+            }
+        } catch (DataAccessException exception) {
+            log.warn("could not write the replication heartbeat to the primary: {}", exception.getMessage());
+            return;
+        }
+        replicas.forEach((name, replica) -> {
+            long lag = lag(name, replica, beat);
+            lags.put(name, lag < 0 ? Double.NaN : (double) lag);
+            boolean healthy = lag >= 0 && lag <= maxReplicaLag.toMillis();
+            routingDataSource.setHealthy(name, healthy);
+        });
+    }
+
+    /**
+     * @return how far the replica is behind the given beat, in milliseconds, or -1 when it cannot be told
+     */
+    private long lag(String name, JdbcTemplate replica, long beat) {
+        try {
+            Long replicaBeat = replica.query(SELECT_BEAT, resultSet -> resultSet.next() ? resultSet.getLong(1) : null);
+            return replicaBeat == null ? -1 : Math.max(0, beat - replicaBeat);
+        } catch (DataAccessException exception) {
+            log.warn("could not read the replication heartbeat of {}: {}", name, exception.getMessage());
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package com.ndrewcoding.libraryapi.api.config;
+
+import com.ndrewcoding.libraryapi.api.model.entity.Book;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.search.mapper.orm.Search;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import javax.persistence.EntityManagerFactory;
+
+/**
+ * The search index lives in memory, so it is rebuilt from the database on startup. From then on Hibernate Search
+ * keeps it in sync with every Book saved, updated or deleted through JPA.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class SearchIndexInitializer {
+    private final EntityManagerFactory entityManagerFactory;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void reindex() throws InterruptedException {
+        log.info("rebuilding the Book search index");
+        Search.mapping(entityManagerFactory).scope(Book.class).massIndexer().startAndWait();
+    }
+}
@@ -0,0 +1,69 @@
+package com.ndrewcoding.libraryapi.api.config;
+
+import com.github.benmanes.caffeine.jcache.configuration.CaffeineConfiguration;
+import com.github.benmanes.caffeine.jcache.spi.CaffeineCachingProvider;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.JCacheMetrics;
+import org.hibernate.cache.jcache.ConfigSettings;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.cache.CacheManager;
+import java.net.URI;
+import java.util.OptionalLong;
+import java.util.UUID;
+
+/**
+ * Builds the JCache regions, on Caffeine, behind the Hibernate second-level and query caches that
+ * {@code application.yml} turns on. Each region is bounded by the size and time to live given under
+ * {@code application.second-level-cache.regions}, and Hibernate refuses to start when it needs a region that is not
+ * configured there, so none is ever left unbounded by accident.
+ * <p>
+ * Each region records its JCache statistics, which are bound as the {@code cache.gets}, {@code cache.puts},
+ * {@code cache.evictions} and {@code cache.removals} meters tagged with the region name, so the hit, miss and eviction
+ * counts of the Book caches are on the actuator whether or not Hibernate statistics are generated.
+ * <p>
+ * Every application context gets its own cache manager, so contexts sharing a class loader, as in tests, never see
+ * each other's entries. With {@code application.second-level-cache.enabled=false} both the caches and this
+ * configuration are off; slices that leave this configuration out, like {@code @DataJpaTest}, must set it too.
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "application.second-level-cache", name = "enabled", matchIfMissing = true)
+@EnableConfigurationProperties(SecondLevelCacheProperties.class)
+public class SecondLevelCacheConfig {
+
+    @Bean(destroyMethod = "close")
+    public CacheManager secondLevelCacheManager(SecondLevelCacheProperties properties) {
+        CaffeineCachingProvider provider = new CaffeineCachingProvider();
+        CacheManager cacheManager = provider.getCacheManager(
+                URI.create("second-level-cache-" + UUID.randomUUID()), provider.getDefaultClassLoader()
+        );
+        properties.getRegions().forEach((name, region) -> {
+            CaffeineConfiguration<Object, Object> configuration = new CaffeineConfiguration<>();
+            configuration.setStoreByValue(false);
+            configuration.setStatisticsEnabled(true);
+            configuration.setMaximumSize(OptionalLong.of(region.getMaximumSize()));
+            if (region.getTimeToLive() != null) {
+                configuration.setExpireAfterWrite(OptionalLong.of(region.getTimeToLive().toNanos()));
+            }
+            cacheManager.createCache(name, configuration);
+        });
+        return cacheManager;
+    }
+
+    @Bean
+    public MeterBinder secondLevelCacheMetrics(CacheManager secondLevelCacheManager) {
+        return registry -> secondLevelCacheManager.getCacheNames().forEach(name -> JCacheMetrics.monitor(
+                registry, secondLevelCacheManager.getCache(name), Tags.of("cacheManager", "secondLevelCacheManager")
+        ));
+    }
+
+    @Bean
+    public HibernatePropertiesCustomizer secondLevelCacheCustomizer(CacheManager secondLevelCacheManager) {
+        return hibernateProperties -> hibernateProperties.put(ConfigSettings.CACHE_MANAGER, secondLevelCacheManager);
+    }
+}
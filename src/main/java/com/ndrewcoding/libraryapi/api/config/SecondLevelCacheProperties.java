@@ -0,0 +1,26 @@
+package com.ndrewcoding.libraryapi.api.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "application.second-level-cache")
+public class SecondLevelCacheProperties {
+    private Map<String, Region> regions = new LinkedHashMap<>();
+
+    @Getter
+    @Setter
+    public static class Region {
+        private long maximumSize = 10000;
+        /**
+         * How long an entry is kept after it is written, forever when null.
+         */
+        private Duration timeToLive;
+    }
+}
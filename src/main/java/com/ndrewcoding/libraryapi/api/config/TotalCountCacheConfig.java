@@ -0,0 +1,34 @@
+package com.ndrewcoding.libraryapi.api.config;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.cache.CacheManagerCustomizer;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * The totals offered next to count-free slices are cached for a short, configurable time instead of the global
+ * cache spec, since no write evicts them.
+ */
+@Configuration
+public class TotalCountCacheConfig {
+    static final String[] TOTAL_COUNT_CACHES = {"bookCount", "loanCount", "loanCountByBook"};
+
+    @Bean
+    public CacheManagerCustomizer<CaffeineCacheManager> totalCountCacheCustomizer(
+            @Value("${application.pagination.total-staleness:PT1M}") Duration totalStaleness
+    ) {
+        return cacheManager -> {
+            for (String name : TOTAL_COUNT_CACHES) {
+                cacheManager.registerCustomCache(name, Caffeine.newBuilder()
+                        .expireAfterWrite(totalStaleness)
+                        .maximumSize(10000)
+                        .recordStats()
+                        .build());
+            }
+        };
+    }
+}
@@ -1,9 +1,18 @@
 package com.ndrewcoding.libraryapi.api.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.ndrewcoding.libraryapi.api.dto.BookAvailabilityDTO;
 import com.ndrewcoding.libraryapi.api.dto.BookDTO;
+import com.ndrewcoding.libraryapi.api.dto.BulkItemResultDTO;
 import com.ndrewcoding.libraryapi.api.dto.LoanDTO;
+import com.ndrewcoding.libraryapi.api.export.ExportFormat;
+import com.ndrewcoding.libraryapi.api.export.ExportWriter;
+import com.ndrewcoding.libraryapi.api.mapper.BookMapper;
+import com.ndrewcoding.libraryapi.api.mapper.LoanMapper;
 import com.ndrewcoding.libraryapi.api.model.entity.Book;
-import com.ndrewcoding.libraryapi.api.model.entity.Loan;
+import com.ndrewcoding.libraryapi.api.pagination.KeysetPage;
+import com.ndrewcoding.libraryapi.api.pagination.SlicePage;
 import com.ndrewcoding.libraryapi.api.service.BookService;
 import com.ndrewcoding.libraryapi.api.service.LoanService;
 import io.swagger.annotations.Api;
@@ -12,16 +21,26 @@ import io.swagger.annotations.ApiResponse;
 import io.swagger.annotations.ApiResponses;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.modelmapper.ModelMapper;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import javax.validation.ConstraintViolation;
 import javax.validation.Valid;
+import javax.validation.Validator;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
 import java.util.stream.Collectors;
 
 @RestController
@@ -31,40 +50,110 @@ import java.util.stream.Collectors;
 @Slf4j
 public class BookController {
 
+    private static final String[] EXPORT_CSV_HEADER = {"id", "title", "author", "isbn"};
+    private static final int MAX_AVAILABILITY_IDS = 1000;
+
     private final BookService bookService;
-    private final ModelMapper modelMapper;
     private final LoanService loanService;
+    private final Validator validator;
+    private final ObjectMapper objectMapper;
 
     @GetMapping("{id}")
     @ApiOperation("Gets the details of a Book by its ID")
     @ApiResponses({
             @ApiResponse(code = 200, message = "Book successfully found"),
+            @ApiResponse(code = 304, message = "Book not modified since the given ETag"),
             @ApiResponse(code = 404, message = "Book not found")
     })
-    public BookDTO get(@PathVariable Long id) {
-        return bookService
-                .getById(id)
-                .map(book -> modelMapper.map(book, BookDTO.class))
+    public ResponseEntity<BookDTO> get(@PathVariable Long id, WebRequest request) {
+        if (request.getHeader(HttpHeaders.IF_NONE_MATCH) != null) {
+            Optional<Long> version = bookService.getVersion(id);
+            if (version.isPresent() && request.checkNotModified(EntityTags.strong(version.get()))) {
+                return null;
+            }
+        }
+        BookDTO book = bookService
+                .getDTOById(id)
                 .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND));
+
+        return ResponseEntity.ok().eTag(EntityTags.strong(book.getVersion())).body(book);
     }
 
     @GetMapping
     @ApiOperation("Finds all existing Books")
+    @ApiResponses({
+            @ApiResponse(code = 200, message = "Books successfully returned"),
+            @ApiResponse(code = 304, message = "Books not modified since the given ETag")
+    })
+    public ResponseEntity<Page<BookDTO>> find(BookDTO bookDTO, Pageable pageRequest) {
+        Book filter = BookMapper.toEntity(bookDTO);
+
+        Page<BookDTO> result = bookService.findDTOs(filter, pageRequest);
+
+        return ResponseEntity.ok()
+                .eTag(EntityTags.weak(result, BookDTO::getId, BookDTO::getVersion))
+                .body(result);
+    }
+
+    @GetMapping(params = {"slice=true", "!q", "!cursor"})
+    @ApiOperation("Finds existing Books without counting them, telling only if there is a next page (count=true adds a cached total)")
     @ApiResponses({
             @ApiResponse(code = 200, message = "Books successfully returned")
     })
-    public Page<BookDTO> find(BookDTO bookDTO, Pageable pageRequest) {
-        Book filter = modelMapper.map(bookDTO, Book.class);
+    public SlicePage<BookDTO> findSlice(BookDTO bookDTO, @RequestParam(defaultValue = "false") boolean count,
+                                        Pageable pageRequest) {
+        Book filter = BookMapper.toEntity(bookDTO);
 
-        Page<Book> result = bookService.find(filter, pageRequest);
+        return bookService.findSlice(filter, pageRequest, count).map(BookMapper::toDTO);
+    }
 
-        List<BookDTO> list = result.getContent().stream()
-                .map(entity -> modelMapper.map(entity, BookDTO.class))
-                .collect(Collectors.toList());
+    @GetMapping(params = {"q", "!cursor"})
+    @ApiOperation("Searches Books by the words (or their beginnings) of their title, author or ISBN, most relevant first")
+    @ApiResponses({
+            @ApiResponse(code = 200, message = "Books successfully returned")
+    })
+    public Page<BookDTO> search(@RequestParam("q") String text, Pageable pageRequest) {
+        Page<Book> result = bookService.search(text, pageRequest);
+
+        List<BookDTO> list = BookMapper.toDTOList(result.getContent());
 
         return new PageImpl<>(list, pageRequest, result.getTotalElements());
     }
 
+    @GetMapping(params = "cursor")
+    @ApiOperation("Finds existing Books page by page, continuing from the given cursor (empty for the first page)")
+    @ApiResponses({
+            @ApiResponse(code = 200, message = "Books successfully returned"),
+            @ApiResponse(code = 400, message = "Invalid cursor or sort property")
+    })
+    public KeysetPage<BookDTO> findByCursor(BookDTO bookDTO, @RequestParam String cursor,
+                                            @RequestParam(defaultValue = "false") boolean count, Pageable pageRequest) {
+        Book filter = BookMapper.toEntity(bookDTO);
+
+        return bookService.findByCursor(filter, cursor, pageRequest, count).map(BookMapper::toDTO);
+    }
+
+    @GetMapping("export")
+    @ApiOperation("Exports all the Books, in ID order, as CSV (format=csv, the default) or as newline-delimited JSON (format=ndjson)")
+    @ApiResponses({
+            @ApiResponse(code = 200, message = "Books successfully exported"),
+            @ApiResponse(code = 400, message = "Unknown export format")
+    })
+    public ResponseEntity<StreamingResponseBody> export(@RequestParam(defaultValue = "csv") String format) {
+        ExportFormat exportFormat = ExportFormat.of(format);
+        ObjectWriter jsonWriter = objectMapper.writerFor(BookDTO.class);
+
+        StreamingResponseBody body = outputStream -> ExportWriter.<BookDTO>of(exportFormat, outputStream, jsonWriter,
+                        EXPORT_CSV_HEADER, book -> new Object[]{book.getId(), book.getTitle(), book.getAuthor(), book.getIsbn()})
+                .writeAll(rows -> bookService.forEachBook(book -> rows.accept(BookMapper.toDTO(book))));
+
+        return ResponseEntity.ok()
+                .contentType(exportFormat.getMediaType())
+                .header(HttpHeaders.CONTENT_DISPOSITION,
+                        ContentDisposition.attachment().filename(exportFormat.fileName("books")).build().toString())
+                .body(body);
+    }
+
     @PostMapping
     @ResponseStatus(HttpStatus.CREATED)
     @ApiOperation("Creates a Book based on its DTO details")
@@ -73,11 +162,48 @@ public class BookController {
             @ApiResponse(code = 400, message = "ISBN already registered")
     })
     public BookDTO create(@RequestBody @Valid BookDTO bookDTO) {
-        Book entity = modelMapper.map(bookDTO, Book.class);
+        Book entity = BookMapper.toEntity(bookDTO);
 
         entity = bookService.save(entity);
 
-        return modelMapper.map(entity, BookDTO.class);
+        return BookMapper.toDTO(entity);
+    }
+
+    @PostMapping("bulk")
+    @ApiOperation("Creates several Books at once, reporting whether each one was created")
+    @ApiResponses({
+            @ApiResponse(code = 200, message = "Books processed, see the result of each one")
+    })
+    public List<BulkItemResultDTO> createAll(@RequestBody List<BookDTO> bookDTOs) {
+        List<List<String>> errors = new ArrayList<>(bookDTOs.size());
+        List<Book> entities = new ArrayList<>(bookDTOs.size());
+        for (BookDTO bookDTO : bookDTOs) {
+            List<String> violations = validator.validate(bookDTO).stream()
+                    .map(ConstraintViolation::getMessage)
+                    .sorted()
+                    .collect(Collectors.toList());
+            errors.add(violations);
+            entities.add(violations.isEmpty() ? BookMapper.toEntity(bookDTO) : null);
+        }
+
+        bookService.saveAll(entities.stream().filter(Objects::nonNull).collect(Collectors.toList()));
+
+        List<BulkItemResultDTO> results = new ArrayList<>(bookDTOs.size());
+        for (int index = 0; index < bookDTOs.size(); index++) {
+            Book entity = entities.get(index);
+            BulkItemResultDTO.BulkItemResultDTOBuilder result = BulkItemResultDTO.builder()
+                    .index(index)
+                    .isbn(bookDTOs.get(index).getIsbn());
+            if (entity == null) {
+                result.errors(errors.get(index));
+            } else if (entity.getId() == null) {
+                result.errors(Collections.singletonList("ISBN already registered!"));
+            } else {
+                result.created(true).id(entity.getId());
+            }
+            results.add(result.build());
+        }
+        return results;
     }
 
     @PutMapping("{id}")
@@ -85,21 +211,26 @@ public class BookController {
     @ApiOperation("Updates the Book with the given ID using its given DTO details (doesnt update the ISBN")
     @ApiResponses({
             @ApiResponse(code = 200, message = "Book successfully updated"),
-            @ApiResponse(code = 404, message = "Book not found")
+            @ApiResponse(code = 404, message = "Book not found"),
+            @ApiResponse(code = 412, message = "Book changed since the ETag given in If-Match")
     })
-    public BookDTO update(@PathVariable Long id, @Valid @RequestBody BookDTO bookDTO) {
+    public ResponseEntity<BookDTO> update(@PathVariable Long id, @Valid @RequestBody BookDTO bookDTO,
+                                          @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
         log.info("updating the Book of id: {}", id);
-        return bookService
-                .getById(id)
-                .map(book -> {
-                    book.setTitle(bookDTO.getTitle());
-                    book.setAuthor(bookDTO.getAuthor());
+        Long version = ifMatch != null ? EntityTags.version(ifMatch) : null;
 
-                    book = bookService.update(book);
+        if (bookService.updateDetails(id, bookDTO.getTitle(), bookDTO.getAuthor(), version) == 0) {
+            if (version != null && bookService.getVersion(id).isPresent()) {
+                throw new ResponseStatusException(HttpStatus.PRECONDITION_FAILED, "The Book was changed since it was read.");
+            }
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND);
+        }
 
-                    return modelMapper.map(book, BookDTO.class);
-                })
+        BookDTO updatedBook = bookService
+                .getDTOById(id)
                 .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND));
+
+        return ResponseEntity.ok().eTag(EntityTags.strong(updatedBook.getVersion())).body(updatedBook);
     }
 
     @DeleteMapping("{id}")
@@ -119,19 +250,61 @@ public class BookController {
 
     @GetMapping("{id}/loans")
     @ApiOperation("Gets all the Loans of the Book with the given ID")
+    @ApiResponses({
+            @ApiResponse(code = 200, message = "Book Loans successfully returned"),
+            @ApiResponse(code = 304, message = "Book Loans not modified since the given ETag"),
+            @ApiResponse(code = 404, message = "Book not found")
+    })
+    public ResponseEntity<Page<LoanDTO>> loansByBook(@PathVariable Long id, Pageable pageable) {
+        bookService
+                .getDTOById(id)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND));
+
+        Page<LoanDTO> loansResult = loanService.getLoanDTOsByBook(id, pageable);
+
+        return ResponseEntity.ok()
+                .eTag(LoanController.pageLoanETag(loansResult))
+                .body(loansResult);
+    }
+
+    @GetMapping(value = "{id}/loans", params = "slice=true")
+    @ApiOperation("Gets the Loans of the Book with the given ID without counting them (count=true adds a cached total)")
     @ApiResponses({
             @ApiResponse(code = 200, message = "Book Loans successfully returned"),
             @ApiResponse(code = 404, message = "Book not found")
     })
-    public Page<LoanDTO> loansByBook(@PathVariable Long id, Pageable pageable) {
+    public SlicePage<LoanDTO> loansByBookSlice(@PathVariable Long id, @RequestParam(defaultValue = "false") boolean count,
+                                               Pageable pageable) {
         Book foundedBook = bookService
                 .getById(id)
                 .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND));
 
-        Page<Loan> loansResult = loanService.getLoansByBook(foundedBook, pageable);
+        return loanService.getLoansByBookSlice(foundedBook, pageable, count).map(LoanMapper::toDTO);
+    }
 
-        List<LoanDTO> listLoans = LoanController.pageLoanToListLoanDTO(loansResult, modelMapper);
+    @GetMapping("{id}/availability")
+    @ApiOperation("Tells whether the Book with the given ID is available for a Loan, without checking that it exists")
+    @ApiResponses({
+            @ApiResponse(code = 200, message = "Book availability successfully returned")
+    })
+    public BookAvailabilityDTO availability(@PathVariable Long id) {
+        return new BookAvailabilityDTO(id, !loanService.isLoaned(id));
+    }
 
-        return new PageImpl<>(listLoans, pageable, loansResult.getTotalElements());
+    @GetMapping("availability")
+    @ApiOperation("Tells whether each of the Books with the given IDs is available for a Loan")
+    @ApiResponses({
+            @ApiResponse(code = 200, message = "Books availability successfully returned"),
+            @ApiResponse(code = 400, message = "Too many IDs")
+    })
+    public List<BookAvailabilityDTO> availability(@RequestParam List<Long> ids) {
+        if (ids.size() > MAX_AVAILABILITY_IDS) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "At most " + MAX_AVAILABILITY_IDS + " IDs at a time.");
+        }
+        List<BookAvailabilityDTO> availabilities = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            availabilities.add(new BookAvailabilityDTO(id, !loanService.isLoaned(id)));
+        }
+        return availabilities;
     }
 }
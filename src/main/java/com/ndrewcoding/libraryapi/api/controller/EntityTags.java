@@ -0,0 +1,59 @@
+package com.ndrewcoding.libraryapi.api.controller;
+
+import org.springframework.data.domain.Page;
+import org.springframework.http.HttpStatus;
+import org.springframework.util.StringUtils;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.Objects;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+
+/**
+ * ETags derived from the version column of the entities, so a conditional request can be answered without
+ * serializing them again.
+ */
+final class EntityTags {
+
+    private EntityTags() {
+    }
+
+    static String strong(long version) {
+        return "\"" + version + "\"";
+    }
+
+    /**
+     * The version held by an {@code If-Match} header, or null for {@code *}. Anything but a single strong ETag is
+     * refused as a failed precondition.
+     */
+    static Long version(String ifMatch) {
+        String etag = ifMatch.trim();
+        if (etag.equals("*")) {
+            return null;
+        }
+        if (etag.length() > 2 && etag.startsWith("\"") && etag.endsWith("\"")) {
+            try {
+                return Long.parseLong(etag.substring(1, etag.length() - 1));
+            } catch (NumberFormatException exception) {
+                // not one of our ETags
+            }
+        }
+        throw new ResponseStatusException(HttpStatus.PRECONDITION_FAILED, "Unknown ETag in If-Match: " + etag);
+    }
+
+    /**
+     * A weak ETag of a page, hashed from the page position, the total and the id and version of every row. The row
+     * versions are read by {@code versions}, which may combine the versions of the entities shown along each row.
+     */
+    static <T> String weak(Page<T> page, Function<T, Long> ids, ToLongFunction<T> versions) {
+        long hash = 17;
+        hash = 31 * hash + page.getNumber();
+        hash = 31 * hash + page.getSize();
+        hash = 31 * hash + page.getTotalElements();
+        for (T row : page.getContent()) {
+            hash = 31 * hash + Objects.hashCode(ids.apply(row));
+            hash = 31 * hash + versions.applyAsLong(row);
+        }
+        return "W/\"" + Long.toHexString(hash) + "\"";
+    }
+}
@@ -1,11 +1,20 @@
 package com.ndrewcoding.libraryapi.api.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import com.ndrewcoding.libraryapi.api.dto.BookDTO;
+import com.ndrewcoding.libraryapi.api.dto.BulkLoanDTO;
+import com.ndrewcoding.libraryapi.api.dto.BulkLoanResultDTO;
 import com.ndrewcoding.libraryapi.api.dto.LoanDTO;
 import com.ndrewcoding.libraryapi.api.dto.LoanFilterDTO;
 import com.ndrewcoding.libraryapi.api.dto.ReturnedLoanDTO;
+import com.ndrewcoding.libraryapi.api.export.ExportFormat;
+import com.ndrewcoding.libraryapi.api.export.ExportWriter;
+import com.ndrewcoding.libraryapi.api.mapper.LoanMapper;
 import com.ndrewcoding.libraryapi.api.model.entity.Book;
 import com.ndrewcoding.libraryapi.api.model.entity.Loan;
+import com.ndrewcoding.libraryapi.api.pagination.KeysetPage;
+import com.ndrewcoding.libraryapi.api.pagination.SlicePage;
 import com.ndrewcoding.libraryapi.api.service.BookService;
 import com.ndrewcoding.libraryapi.api.service.LoanService;
 import io.swagger.annotations.Api;
@@ -14,16 +23,21 @@ import io.swagger.annotations.ApiResponse;
 import io.swagger.annotations.ApiResponses;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.modelmapper.ModelMapper;
 import org.springframework.data.domain.Page;
-import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import javax.validation.Valid;
 import java.time.LocalDate;
-import java.util.List;
+import java.util.*;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @RestController
@@ -32,22 +46,80 @@ import java.util.stream.Collectors;
 @Api("Loan API")
 @Slf4j
 public class LoanController {
+    private static final String[] EXPORT_CSV_HEADER = {"id", "isbn", "customer", "customerEmail", "title", "author"};
+
     private final LoanService loanService;
     private final BookService bookService;
-
-    private final ModelMapper modelMapper;
+    private final ObjectMapper objectMapper;
 
     @GetMapping
     @ApiOperation("Finds all existing Loans")
+    @ApiResponses({
+            @ApiResponse(code = 200, message = "Loans successfully returned"),
+            @ApiResponse(code = 304, message = "Loans not modified since the given ETag")
+    })
+    public ResponseEntity<Page<LoanDTO>> find(LoanFilterDTO filter, Pageable pageable) {
+        Page<LoanDTO> loans = loanService.findDTOs(filter, pageable);
+
+        return ResponseEntity.ok()
+                .eTag(pageLoanETag(loans))
+                .body(loans);
+    }
+
+    @GetMapping(params = {"slice=true", "!cursor"})
+    @ApiOperation("Finds existing Loans without counting them, telling only if there is a next page (count=true adds a cached total)")
     @ApiResponses({
             @ApiResponse(code = 200, message = "Loans successfully returned")
     })
-    public Page<LoanDTO> find(LoanFilterDTO filter, Pageable pageable) {
-        Page<Loan> loans = loanService.find(filter, pageable);
+    public SlicePage<LoanDTO> findSlice(LoanFilterDTO filter, @RequestParam(defaultValue = "false") boolean count,
+                                        Pageable pageable) {
+        return loanService.findSlice(filter, pageable, count).map(LoanMapper::toDTO);
+    }
+
+    @GetMapping(params = "cursor")
+    @ApiOperation("Finds existing Loans page by page, continuing from the given cursor (empty for the first page)")
+    @ApiResponses({
+            @ApiResponse(code = 200, message = "Loans successfully returned"),
+            @ApiResponse(code = 400, message = "Invalid cursor or sort property")
+    })
+    public KeysetPage<LoanDTO> findByCursor(LoanFilterDTO filter, @RequestParam String cursor,
+                                            @RequestParam(defaultValue = "false") boolean count, Pageable pageable) {
+        return loanService.findByCursor(filter, cursor, pageable, count).map(LoanMapper::toDTO);
+    }
+
+    @GetMapping(value = "stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    @ApiOperation("Streams all the Loans matching the filters as newline-delimited JSON, one Loan per line")
+    @ApiResponses({
+            @ApiResponse(code = 200, message = "Loans successfully streamed")
+    })
+    public ResponseEntity<StreamingResponseBody> stream(LoanFilterDTO filter) {
+        ObjectWriter jsonWriter = objectMapper.writerFor(LoanDTO.class);
+
+        StreamingResponseBody body = outputStream -> ExportWriter.<LoanDTO>ndjson(outputStream, jsonWriter)
+                .writeAll(rows -> loanService.forEachLoan(filter, loan -> rows.accept(LoanMapper.toDTO(loan))));
+
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(body);
+    }
+
+    @GetMapping("export")
+    @ApiOperation("Exports all the Loans, in ID order, as CSV (format=csv, the default) or as newline-delimited JSON (format=ndjson)")
+    @ApiResponses({
+            @ApiResponse(code = 200, message = "Loans successfully exported"),
+            @ApiResponse(code = 400, message = "Unknown export format")
+    })
+    public ResponseEntity<StreamingResponseBody> export(@RequestParam(defaultValue = "csv") String format) {
+        ExportFormat exportFormat = ExportFormat.of(format);
+        ObjectWriter jsonWriter = objectMapper.writerFor(LoanDTO.class);
 
-        List<LoanDTO> loansList = pageLoanToListLoanDTO(loans, modelMapper);
+        StreamingResponseBody body = outputStream -> ExportWriter.<LoanDTO>of(exportFormat, outputStream, jsonWriter,
+                        EXPORT_CSV_HEADER, LoanController::csvColumns)
+                .writeAll(rows -> loanService.forEachLoan(loan -> rows.accept(LoanMapper.toDTO(loan))));
 
-        return new PageImpl<>(loansList, pageable, loans.getTotalElements());
+        return ResponseEntity.ok()
+                .contentType(exportFormat.getMediaType())
+                .header(HttpHeaders.CONTENT_DISPOSITION,
+                        ContentDisposition.attachment().filename(exportFormat.fileName("loans")).build().toString())
+                .body(body);
     }
 
     @PostMapping
@@ -81,29 +153,98 @@ public class LoanController {
     @ApiOperation("Sets a Loan as 'returned'")
     @ApiResponses({
             @ApiResponse(code = 200, message = "Book successfully returned"),
-            @ApiResponse(code = 404, message = "No Loan for the given Book")
+            @ApiResponse(code = 404, message = "No Loan for the given Book"),
+            @ApiResponse(code = 412, message = "Loan changed since the ETag given in If-Match")
+    })
+    public void returnBook(@PathVariable Long id, @RequestBody ReturnedLoanDTO returnedLoanDTO,
+                           @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        Long version = ifMatch != null ? EntityTags.version(ifMatch) : null;
+
+        if (loanService.updateReturned(id, returnedLoanDTO.isReturned(), version) == 0) {
+            if (version != null && loanService.getById(id).isPresent()) {
+                throw new ResponseStatusException(HttpStatus.PRECONDITION_FAILED, "The Loan was changed since it was read.");
+            }
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "There is no Loan for this Book");
+        }
+        log.info("loan of id {} returned", id);
+    }
+
+    @PostMapping("bulk")
+    @ApiOperation("Creates one Loan for each of the given ISBNs, reporting whether each one was created")
+    @ApiResponses({
+            @ApiResponse(code = 200, message = "Loans processed, see the result of each one"),
+            @ApiResponse(code = 400, message = "Missing customer details or ISBNs")
     })
-    public void returnBook(@PathVariable Long id, @RequestBody ReturnedLoanDTO returnedLoanDTO) {
-        Loan foundedLoan = loanService
-                .getById(id)
-                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "There is no Loan for this Book"));
+    public List<BulkLoanResultDTO> createAll(@RequestBody @Valid BulkLoanDTO bulkLoanDTO) {
+        List<String> isbns = bulkLoanDTO.getIsbns();
+        Map<String, Book> booksByIsbn = bookService.getByIsbns(isbns).stream()
+                .collect(Collectors.toMap(Book::getIsbn, Function.identity(), (first, second) -> first));
 
-        foundedLoan.setReturned(returnedLoanDTO.isReturned());
+        List<Loan> entities = new ArrayList<>(isbns.size());
+        for (String isbn : isbns) {
+            Book foundedBook = booksByIsbn.get(isbn);
+            entities.add(foundedBook == null ? null : Loan.builder()
+                    .book(foundedBook)
+                    .customer(bulkLoanDTO.getCustomer())
+                    .customerEmail(bulkLoanDTO.getCustomerEmail())
+                    .loanDate(LocalDate.now())
+                    .build());
+        }
+
+        loanService.saveAll(entities.stream().filter(Objects::nonNull).collect(Collectors.toList()));
+
+        List<BulkLoanResultDTO> results = new ArrayList<>(isbns.size());
+        for (int index = 0; index < isbns.size(); index++) {
+            Loan entity = entities.get(index);
+            BulkLoanResultDTO.BulkLoanResultDTOBuilder result = BulkLoanResultDTO.builder()
+                    .index(index)
+                    .isbn(isbns.get(index));
+            if (entity == null) {
+                result.errors(Collections.singletonList("There is no Book with this ISBN."));
+            } else if (entity.getId() == null) {
+                result.errors(Collections.singletonList("Book already loaned"));
+            } else {
+                result.succeeded(true).id(entity.getId());
+            }
+            results.add(result.build());
+        }
+        return results;
+    }
+
+    @PostMapping("bulk/returns")
+    @ApiOperation("Sets the Loans with the given IDs as 'returned', reporting whether each one was found")
+    @ApiResponses({
+            @ApiResponse(code = 200, message = "Loans processed, see the result of each one")
+    })
+    public List<BulkLoanResultDTO> returnBooks(@RequestBody List<Long> ids) {
+        Set<Long> returnedIds = loanService.returnAll(ids);
+        log.info("{} loans returned", returnedIds.size());
+
+        List<BulkLoanResultDTO> results = new ArrayList<>(ids.size());
+        for (int index = 0; index < ids.size(); index++) {
+            Long id = ids.get(index);
+            BulkLoanResultDTO.BulkLoanResultDTOBuilder result = BulkLoanResultDTO.builder().index(index).id(id);
+            if (returnedIds.contains(id)) {
+                result.succeeded(true);
+            } else {
+                result.errors(Collections.singletonList("There is no Loan for this Book"));
+            }
+            results.add(result.build());
+        }
+        return results;
+    }
 
-        loanService.update(foundedLoan);
-        log.info("loan of id {} returned", foundedLoan.getId());
+    private static Object[] csvColumns(LoanDTO loan) {
+        BookDTO book = loan.getBookDTO();
+        return new Object[]{loan.getId(), loan.getIsbn(), loan.getCustomer(), loan.getCustomerEmail(),
+                book != null ? book.getTitle() : null, book != null ? book.getAuthor() : null};
     }
 
-    protected static List<LoanDTO> pageLoanToListLoanDTO(Page<Loan> loans, ModelMapper modelMapper) {
-        return loans
-                .getContent()
-                .stream()
-                .map(loan -> {
-                    Book book = loan.getBook();
-                    BookDTO bookDTO = modelMapper.map(book, BookDTO.class);
-                    LoanDTO loanDTO = modelMapper.map(loan, LoanDTO.class);
-                    loanDTO.setBookDTO(bookDTO);
-                    return loanDTO;
-                }).collect(Collectors.toList());
+    /**
+     * A Loan is shown with its Book, so both versions go into the ETag.
+     */
+    protected static String pageLoanETag(Page<LoanDTO> loans) {
+        return EntityTags.weak(loans, LoanDTO::getId,
+                loan -> 31 * loan.getVersion() + (loan.getBookDTO() != null ? loan.getBookDTO().getVersion() : 0));
     }
 }
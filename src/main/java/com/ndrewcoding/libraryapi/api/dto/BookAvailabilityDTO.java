@@ -0,0 +1,13 @@
+package com.ndrewcoding.libraryapi.api.dto;
+
+import lombok.*;
+
+@Getter
+@Setter
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class BookAvailabilityDTO {
+    private Long id;
+    private boolean available;
+}
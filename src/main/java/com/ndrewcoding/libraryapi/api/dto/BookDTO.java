@@ -1,5 +1,6 @@
 package com.ndrewcoding.libraryapi.api.dto;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.*;
 
 import javax.validation.constraints.NotEmpty;
@@ -17,4 +18,9 @@ public class BookDTO {
     private String author;
     @NotEmpty(message = "The field 'isbn' cannot be null!")
     private String isbn;
+    /**
+     * Version of the Book it was read from, for the ETags. Not part of the representation.
+     */
+    @JsonIgnore
+    private long version;
 }
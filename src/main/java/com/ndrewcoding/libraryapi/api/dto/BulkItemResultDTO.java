@@ -0,0 +1,20 @@
+package com.ndrewcoding.libraryapi.api.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.*;
+
+import java.util.List;
+
+@Getter
+@Setter
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class BulkItemResultDTO {
+    private int index;
+    private String isbn;
+    private boolean created;
+    private Long id;
+    private List<String> errors;
+}
@@ -0,0 +1,20 @@
+package com.ndrewcoding.libraryapi.api.dto;
+
+import lombok.*;
+
+import javax.validation.constraints.NotEmpty;
+import java.util.List;
+
+@Getter
+@Setter
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class BulkLoanDTO {
+    @NotEmpty
+    private String customer;
+    @NotEmpty
+    private String customerEmail;
+    @NotEmpty
+    private List<String> isbns;
+}
@@ -0,0 +1,20 @@
+package com.ndrewcoding.libraryapi.api.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.*;
+
+import java.util.List;
+
+@Getter
+@Setter
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class BulkLoanResultDTO {
+    private int index;
+    private Long id;
+    private String isbn;
+    private boolean succeeded;
+    private List<String> errors;
+}
@@ -1,5 +1,6 @@
 package com.ndrewcoding.libraryapi.api.dto;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.*;
 
 import javax.validation.constraints.NotEmpty;
@@ -18,4 +19,17 @@ public class LoanDTO {
     @NotEmpty
     private String customerEmail;
     private BookDTO bookDTO;
+    /**
+     * Version of the Loan it was read from, for the ETags. Not part of the representation.
+     */
+    @JsonIgnore
+    private long version;
+
+    /**
+     * The flat form the projection queries select into, as a constructor expression cannot build the nested Book.
+     */
+    public LoanDTO(Long id, String customer, String customerEmail, long version,
+                   Long bookId, String title, String author, String isbn, long bookVersion) {
+        this(id, isbn, customer, customerEmail, new BookDTO(bookId, title, author, isbn, bookVersion), version);
+    }
 }
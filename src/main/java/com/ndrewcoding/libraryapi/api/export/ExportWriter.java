@@ -0,0 +1,96 @@
+package com.ndrewcoding.libraryapi.api.export;
+
+import com.fasterxml.jackson.databind.ObjectWriter;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Writes rows to an export as they are handed over, either as CSV after a header line or as one JSON document per
+ * line, through a buffer so the response is sent in large chunks.
+ */
+public class ExportWriter<T> {
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final Writer writer;
+    private final ObjectWriter jsonWriter;
+    private final String[] csvHeader;
+    private final Function<T, Object[]> csvColumns;
+
+    private ExportWriter(OutputStream outputStream, ObjectWriter jsonWriter, String[] csvHeader,
+                         Function<T, Object[]> csvColumns) {
+        this.writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8), BUFFER_SIZE);
+        this.jsonWriter = jsonWriter;
+        this.csvHeader = csvHeader;
+        this.csvColumns = csvColumns;
+    }
+
+    public static <T> ExportWriter<T> ndjson(OutputStream outputStream, ObjectWriter jsonWriter) {
+        return new ExportWriter<>(outputStream, jsonWriter, null, null);
+    }
+
+    public static <T> ExportWriter<T> csv(OutputStream outputStream, String[] header, Function<T, Object[]> columns) {
+        return new ExportWriter<>(outputStream, null, header, columns);
+    }
+
+    public static <T> ExportWriter<T> of(ExportFormat format, OutputStream outputStream, ObjectWriter jsonWriter,
+                                         String[] csvHeader, Function<T, Object[]> csvColumns) {
+        return format == ExportFormat.CSV
+                ? csv(outputStream, csvHeader, csvColumns)
+                : ndjson(outputStream, jsonWriter);
+    }
+
+    /**
+     * Runs the source, writing every row it hands over, and flushes the output.
+     */
+    public void writeAll(Consumer<Consumer<T>> source) throws IOException {
+        try {
+            if (csvHeader != null) {
+                writeCsvLine(csvHeader);
+            }
+            source.accept(this::write);
+            writer.flush();
+        } catch (UncheckedIOException exception) {
+            throw exception.getCause();
+        }
+    }
+
+    private void write(T row) {
+        try {
+            if (jsonWriter != null) {
+                writer.write(jsonWriter.writeValueAsString(row));
+                writer.write('\n');
+            } else {
+                writeCsvLine(csvColumns.apply(row));
+            }
+        } catch (IOException exception) {
+            throw new UncheckedIOException(exception);
+        }
+    }
+
+    private void writeCsvLine(Object[] values) throws IOException {
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                writer.write(',');
+            }
+            writeCsvValue(values[i]);
+        }
+        writer.write("\r\n");
+    }
+
+    private void writeCsvValue(Object value) throws IOException {
+        if (value == null) {
+            return;
+        }
+        String text = value.toString();
+        if (text.indexOf(',') < 0 && text.indexOf('"') < 0 && text.indexOf('\n') < 0 && text.indexOf('\r') < 0) {
+            writer.write(text);
+            return;
+        }
+        writer.write('"');
+        writer.write(text.replace("\"", "\"\""));
+        writer.write('"');
+    }
+}
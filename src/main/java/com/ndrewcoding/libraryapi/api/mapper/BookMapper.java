@@ -0,0 +1,40 @@
+package com.ndrewcoding.libraryapi.api.mapper;
+
+import com.ndrewcoding.libraryapi.api.dto.BookDTO;
+import com.ndrewcoding.libraryapi.api.model.entity.Book;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public final class BookMapper {
+
+    private BookMapper() {
+    }
+
+    public static BookDTO toDTO(Book book) {
+        if (book == null) {
+            return null;
+        }
+        return new BookDTO(book.getId(), book.getTitle(), book.getAuthor(), book.getIsbn(), book.getVersion());
+    }
+
+    public static List<BookDTO> toDTOList(List<Book> books) {
+        List<BookDTO> bookDTOs = new ArrayList<>(books.size());
+        for (Book book : books) {
+            bookDTOs.add(toDTO(book));
+        }
+        return bookDTOs;
+    }
+
+    public static Book toEntity(BookDTO bookDTO) {
+        if (bookDTO == null) {
+            return null;
+        }
+        return Book.builder()
+                .id(bookDTO.getId())
+                .title(bookDTO.getTitle())
+                .author(bookDTO.getAuthor())
+                .isbn(bookDTO.getIsbn())
+                .build();
+    }
+}
@@ -0,0 +1,37 @@
+package com.ndrewcoding.libraryapi.api.mapper;
+
+import com.ndrewcoding.libraryapi.api.dto.BookDTO;
+import com.ndrewcoding.libraryapi.api.dto.LoanDTO;
+import com.ndrewcoding.libraryapi.api.model.entity.Loan;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public final class LoanMapper {
+
+    private LoanMapper() {
+    }
+
+    public static LoanDTO toDTO(Loan loan) {
+        if (loan == null) {
+            return null;
+        }
+        BookDTO bookDTO = BookMapper.toDTO(loan.getBook());
+        return new LoanDTO(
+                loan.getId(),
+                bookDTO != null ? bookDTO.getIsbn() : null,
+                loan.getCustomer(),
+                loan.getCustomerEmail(),
+                bookDTO,
+                loan.getVersion()
+        );
+    }
+
+    public static List<LoanDTO> toDTOList(List<Loan> loans) {
+        List<LoanDTO> loanDTOs = new ArrayList<>(loans.size());
+        for (Loan loan : loans) {
+            loanDTOs.add(toDTO(loan));
+        }
+        return loanDTOs;
+    }
+}
@@ -1,31 +1,57 @@
 package com.ndrewcoding.libraryapi.api.model.entity;
 
 import lombok.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.search.mapper.pojo.mapping.definition.annotation.FullTextField;
+import org.hibernate.search.mapper.pojo.mapping.definition.annotation.Indexed;
 
 import javax.persistence.*;
 import java.util.List;
 
+import static com.ndrewcoding.libraryapi.api.config.BookSearchAnalysisConfigurer.PREFIX_ANALYZER;
+import static com.ndrewcoding.libraryapi.api.config.BookSearchAnalysisConfigurer.PREFIX_QUERY_ANALYZER;
+
 @Getter
 @Setter
 @Builder
 @AllArgsConstructor
 @NoArgsConstructor
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = Book.CACHE_REGION)
+@Indexed
+@Table(indexes = {
+        @Index(name = "idx_book_title_id", columnList = "title, id"),
+        @Index(name = "idx_book_author_id", columnList = "author, id"),
+        @Index(name = "idx_book_isbn", columnList = "isbn")
+})
 public class Book {
+    public static final String CACHE_REGION = "book";
+    public static final String QUERY_CACHE_REGION = "book-queries";
+
     @Id
     @Column
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "book_seq")
+    @SequenceGenerator(name = "book_seq", sequenceName = "book_seq", allocationSize = 50)
     private Long id;
 
     @Column
+    @FullTextField(analyzer = PREFIX_ANALYZER, searchAnalyzer = PREFIX_QUERY_ANALYZER)
     private String title;
 
     @Column
+    @FullTextField(analyzer = PREFIX_ANALYZER, searchAnalyzer = PREFIX_QUERY_ANALYZER)
     private String author;
 
     @Column
+    @FullTextField(analyzer = PREFIX_ANALYZER, searchAnalyzer = PREFIX_QUERY_ANALYZER)
     private String isbn;
 
+    @Version
+    @Column
+    private long version;
+
     @OneToMany(mappedBy = "book")
     private List<Loan> loans;
 }
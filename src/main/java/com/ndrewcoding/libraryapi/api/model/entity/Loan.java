@@ -4,6 +4,7 @@ import lombok.*;
 
 import javax.persistence.*;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
 
 @SuppressWarnings("JpaDataSourceORMInspection")
 @Getter
@@ -12,10 +13,25 @@ import java.time.LocalDate;
 @AllArgsConstructor
 @NoArgsConstructor
 @Entity
+@Table(
+        indexes = {
+                @Index(name = "idx_loan_loan_date_id", columnList = "loanDate, id"),
+                @Index(name = "idx_loan_due_date_id", columnList = "due_date, id")
+        },
+        uniqueConstraints = @UniqueConstraint(name = Loan.OPEN_BOOK_CONSTRAINT, columnNames = "open_book_id")
+)
 public class Loan {
+    public static final String OPEN_BOOK_CONSTRAINT = "uk_loan_open_book";
+
+    /**
+     * Number of days after the loan date a Book may still be returned on time.
+     */
+    public static final int LOAN_PERIOD_DAYS = 3;
+
     @Id
     @Column
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "loan_seq")
+    @SequenceGenerator(name = "loan_seq", sequenceName = "loan_seq", allocationSize = 50)
     private Long id;
 
     @Column(length = 100)
@@ -25,7 +41,7 @@ public class Loan {
     private String customerEmail;
 
     @JoinColumn(name = "id_book")
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     private Book book;
 
     @Column
@@ -33,4 +49,36 @@ public class Loan {
 
     @Column
     private boolean returned;
+
+    /**
+     * Last day to return the Book, derived from the loan date. The Loan is overdue from the next day on.
+     */
+    @Setter(AccessLevel.NONE)
+    @Column(name = "due_date")
+    private LocalDate dueDate;
+
+    /**
+     * When the customer was told the Loan is overdue, null until then.
+     */
+    @Column(name = "overdue_notified_at")
+    private LocalDateTime overdueNotifiedAt;
+
+    @Version
+    @Column
+    private long version;
+
+    /**
+     * Copy of the Book id while the Loan is open, null once returned. The unique constraint on it guarantees at most
+     * one open Loan per Book.
+     */
+    @Setter(AccessLevel.NONE)
+    @Column(name = "open_book_id")
+    private Long openBookId;
+
+    @PrePersist
+    @PreUpdate
+    void updateDerivedColumns() {
+        openBookId = returned || book == null ? null : book.getId();
+        dueDate = loanDate == null ? null : loanDate.plusDays(LOAN_PERIOD_DAYS);
+    }
 }
@@ -0,0 +1,30 @@
+package com.ndrewcoding.libraryapi.api.model.entity;
+
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Table;
+
+/**
+ * Single row the primary database rewrites with the current time, so the lag of a read replica shows in how old its
+ * copy is. Only declared here so the table is created with the rest of the schema; it is read and written with plain
+ * JDBC by {@code ReplicaLagMonitor}.
+ */
+@SuppressWarnings("JpaDataSourceORMInspection")
+@Getter
+@NoArgsConstructor
+@Entity
+@Table(name = ReplicationHeartbeat.TABLE)
+public class ReplicationHeartbeat {
+    public static final String TABLE = "replication_heartbeat";
+
+    @Id
+    @Column
+    private Integer id;
+
+    @Column(name = "beat_at")
+    private long beatAt;
+}
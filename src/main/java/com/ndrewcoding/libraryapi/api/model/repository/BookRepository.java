@@ -1,14 +1,61 @@
 package com.ndrewcoding.libraryapi.api.model.repository;
 
+import com.ndrewcoding.libraryapi.api.dto.BookDTO;
 import com.ndrewcoding.libraryapi.api.model.entity.Book;
+import org.springframework.cache.annotation.Cacheable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import javax.persistence.QueryHint;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+
+import static org.hibernate.jpa.QueryHints.HINT_CACHEABLE;
+import static org.hibernate.jpa.QueryHints.HINT_CACHE_REGION;
 
 @Repository
-public interface BookRepository extends JpaRepository<Book, Long> {
+public interface BookRepository extends JpaRepository<Book, Long>, BookRepositoryCustom {
+    @QueryHints({
+            @QueryHint(name = HINT_CACHEABLE, value = "true"),
+            @QueryHint(name = HINT_CACHE_REGION, value = Book.QUERY_CACHE_REGION)
+    })
     boolean existsByIsbn(String isbn);
 
+    @QueryHints({
+            @QueryHint(name = HINT_CACHEABLE, value = "true"),
+            @QueryHint(name = HINT_CACHE_REGION, value = Book.QUERY_CACHE_REGION)
+    })
     Optional<Book> findByIsbn(String isbn);
+
+    /**
+     * The Book with the given ID read straight into its DTO, through the query cache like the ISBN lookups.
+     */
+    @QueryHints({
+            @QueryHint(name = HINT_CACHEABLE, value = "true"),
+            @QueryHint(name = HINT_CACHE_REGION, value = Book.QUERY_CACHE_REGION)
+    })
+    @Query("SELECT new com.ndrewcoding.libraryapi.api.dto.BookDTO(b.id, b.title, b.author, b.isbn, b.version) " +
+            "FROM Book as b WHERE b.id = :id")
+    Optional<BookDTO> findDTOById(@Param("id") Long id);
+
+    @Query("SELECT b.version FROM Book b WHERE b.id = :id")
+    Optional<Long> findVersionById(@Param("id") Long id);
+
+    List<Book> findByIsbnIn(Collection<String> isbns);
+
+    @Query("SELECT b.isbn FROM Book b WHERE b.isbn IN :isbns")
+    Set<String> findIsbnsByIsbnIn(@Param("isbns") Collection<String> isbns);
+
+    /**
+     * Counts the Books matching the filter as {@code GET /api/books} does. The count is cached and may be up to
+     * {@code application.pagination.total-staleness} old.
+     */
+    @Override
+    @Cacheable(cacheNames = "bookCount", key = "{#p0.id, #p0.title, #p0.author, #p0.isbn}")
+    long countMatching(Book filter);
 }
@@ -0,0 +1,49 @@
+package com.ndrewcoding.libraryapi.api.model.repository;
+
+import com.ndrewcoding.libraryapi.api.dto.BookDTO;
+import com.ndrewcoding.libraryapi.api.model.entity.Book;
+import com.ndrewcoding.libraryapi.api.pagination.KeysetCursor;
+import com.ndrewcoding.libraryapi.api.pagination.KeysetPage;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+
+import java.util.stream.Stream;
+
+public interface BookRepositoryCustom {
+    KeysetPage<Book> findByKeyset(Book filter, KeysetCursor cursor, int size);
+
+    /**
+     * The requested page of the Books matching the filter as {@code GET /api/books} does, selected straight into
+     * DTOs so that no entity is loaded. The total is counted exactly, unless the page itself tells it.
+     */
+    Page<BookDTO> findDTOs(Book filter, Pageable pageable);
+
+    /**
+     * The requested page of the Books matching the filter as {@code GET /api/books} does, reading one extra row to
+     * know if there is a next page instead of counting them.
+     */
+    Slice<Book> findSlice(Book filter, Pageable pageable);
+
+    long countMatching(Book filter);
+
+    /**
+     * Sets the title and author of the Book with the given ID in a single UPDATE, checking its version unless it is
+     * null, and reindexes it.
+     *
+     * @return the number of updated Books, 0 when there is no Book with that ID and version
+     */
+    int updateDetails(Long id, String title, String author, Long version);
+
+    /**
+     * Full-text search over the title, author and ISBN of the Books, most relevant first. Every word of the text
+     * must match a word, or the beginning of a word, of one of those fields.
+     */
+    Page<Book> search(String text, Pageable pageable);
+
+    /**
+     * Every Book in ID order, read off a forward-only cursor {@code application.export.fetch-size} rows at a time.
+     * Must be consumed, and closed, within a transaction.
+     */
+    Stream<Book> streamAll();
+}
@@ -0,0 +1,153 @@
+package com.ndrewcoding.libraryapi.api.model.repository;
+
+import com.ndrewcoding.libraryapi.api.dto.BookDTO;
+import com.ndrewcoding.libraryapi.api.model.entity.Book;
+import com.ndrewcoding.libraryapi.api.pagination.KeysetCursor;
+import com.ndrewcoding.libraryapi.api.pagination.KeysetPage;
+import org.hibernate.search.engine.search.common.BooleanOperator;
+import org.hibernate.search.engine.search.query.SearchResult;
+import org.hibernate.search.mapper.orm.Search;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.jpa.repository.query.QueryUtils;
+import org.springframework.data.support.PageableExecutionUtils;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.CacheRetrieveMode;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Predicate;
+import javax.persistence.criteria.Root;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.hibernate.cfg.AvailableSettings.JPA_SHARED_CACHE_RETRIEVE_MODE;
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
+
+public class BookRepositoryCustomImpl implements BookRepositoryCustom {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Value("${application.export.fetch-size:1000}")
+    private int fetchSize;
+
+    @Override
+    public KeysetPage<Book> findByKeyset(Book filter, KeysetCursor cursor, int size) {
+        CriteriaBuilder criteriaBuilder = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Book> query = criteriaBuilder.createQuery(Book.class);
+        Root<Book> book = query.from(Book.class);
+
+        return KeysetQueries.fetch(entityManager, query, book, filters(criteriaBuilder, book, filter), cursor, size);
+    }
+
+    @Override
+    public Page<BookDTO> findDTOs(Book filter, Pageable pageable) {
+        CriteriaBuilder criteriaBuilder = entityManager.getCriteriaBuilder();
+        CriteriaQuery<BookDTO> query = criteriaBuilder.createQuery(BookDTO.class);
+        Root<Book> book = query.from(Book.class);
+        query.select(criteriaBuilder.construct(BookDTO.class,
+                        book.get("id"), book.get("title"), book.get("author"), book.get("isbn"), book.get("version")))
+                .where(filters(criteriaBuilder, book, filter).toArray(new Predicate[0]))
+                .orderBy(QueryUtils.toOrders(pageable.getSort(), book, criteriaBuilder));
+
+        List<BookDTO> rows = entityManager.createQuery(query)
+                .setFirstResult(Math.toIntExact(pageable.getOffset()))
+                .setMaxResults(pageable.getPageSize())
+                .getResultList();
+        return PageableExecutionUtils.getPage(rows, pageable, () -> countMatching(filter));
+    }
+
+    @Override
+    public Slice<Book> findSlice(Book filter, Pageable pageable) {
+        CriteriaBuilder criteriaBuilder = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Book> query = criteriaBuilder.createQuery(Book.class);
+        Root<Book> book = query.from(Book.class);
+        query.where(filters(criteriaBuilder, book, filter).toArray(new Predicate[0]))
+                .orderBy(QueryUtils.toOrders(pageable.getSort(), book, criteriaBuilder));
+
+        List<Book> rows = entityManager.createQuery(query)
+                .setFirstResult(Math.toIntExact(pageable.getOffset()))
+                .setMaxResults(pageable.getPageSize() + 1)
+                .getResultList();
+        boolean hasNext = rows.size() > pageable.getPageSize();
+        return new SliceImpl<>(hasNext ? rows.subList(0, pageable.getPageSize()) : rows, pageable, hasNext);
+    }
+
+    @Override
+    public long countMatching(Book filter) {
+        CriteriaBuilder criteriaBuilder = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Long> query = criteriaBuilder.createQuery(Long.class);
+        Root<Book> book = query.from(Book.class);
+        query.select(criteriaBuilder.count(book))
+                .where(filters(criteriaBuilder, book, filter).toArray(new Predicate[0]));
+        return entityManager.createQuery(query).getSingleResult();
+    }
+
+    @Override
+    @Transactional
+    public int updateDetails(Long id, String title, String author, Long version) {
+        int updated = entityManager
+                .createQuery("UPDATE Book as b SET b.title = :title, b.author = :author, b.version = b.version + 1 " +
+                        "WHERE b.id = :id AND (:version IS NULL OR b.version = :version)")
+                .setParameter("title", title)
+                .setParameter("author", author)
+                .setParameter("id", id)
+                .setParameter("version", version)
+                .executeUpdate();
+        if (updated > 0) {
+            // the cached Book is only invalidated once the transaction ends, so it is read past the cache
+            Book book = entityManager.find(Book.class, id,
+                    Collections.singletonMap(JPA_SHARED_CACHE_RETRIEVE_MODE, CacheRetrieveMode.BYPASS));
+            Search.session(entityManager).indexingPlan().addOrUpdate(book);
+        }
+        return updated;
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Page<Book> search(String text, Pageable pageable) {
+        SearchResult<Book> result = Search.session(entityManager)
+                .search(Book.class)
+                .where(f -> f.simpleQueryString()
+                        .field("title").boost(2.0f)
+                        .fields("author", "isbn")
+                        .matching(text)
+                        .defaultOperator(BooleanOperator.AND))
+                .fetch(Math.toIntExact(pageable.getOffset()), pageable.getPageSize());
+
+        return new PageImpl<>(result.hits(), pageable, result.total().hitCount());
+    }
+
+    @Override
+    public Stream<Book> streamAll() {
+        return entityManager.createQuery("SELECT b FROM Book as b ORDER BY b.id", Book.class)
+                .setHint(HINT_FETCH_SIZE, fetchSize)
+                .getResultStream();
+    }
+
+    private List<Predicate> filters(CriteriaBuilder criteriaBuilder, Root<Book> book, Book filter) {
+        List<Predicate> predicates = new ArrayList<>();
+        if (filter.getId() != null) {
+            predicates.add(criteriaBuilder.equal(book.get("id"), filter.getId()));
+        }
+        if (filter.getTitle() != null) {
+            predicates.add(KeysetQueries.containsIgnoringCase(criteriaBuilder, book.get("title"), filter.getTitle()));
+        }
+        if (filter.getAuthor() != null) {
+            predicates.add(KeysetQueries.containsIgnoringCase(criteriaBuilder, book.get("author"), filter.getAuthor()));
+        }
+        if (filter.getIsbn() != null) {
+            predicates.add(KeysetQueries.containsIgnoringCase(criteriaBuilder, book.get("isbn"), filter.getIsbn()));
+        }
+        return predicates;
+    }
+}
@@ -0,0 +1,83 @@
+package com.ndrewcoding.libraryapi.api.model.repository;
+
+import com.ndrewcoding.libraryapi.api.pagination.KeysetCursor;
+import com.ndrewcoding.libraryapi.api.pagination.KeysetPage;
+import org.springframework.beans.BeanWrapper;
+import org.springframework.beans.PropertyAccessorFactory;
+import org.springframework.data.domain.Sort;
+
+import javax.persistence.EntityManager;
+import javax.persistence.criteria.*;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Runs keyset (seek) queries: instead of an OFFSET, rows are filtered with
+ * {@code sortKey > :lastValue OR (sortKey = :lastValue AND id > :lastId)}, so an index on {@code (sortKey, id)}
+ * can jump straight to the requested page, and one extra row is read to know if there is a next page.
+ */
+final class KeysetQueries {
+
+    private KeysetQueries() {
+    }
+
+    static <T> KeysetPage<T> fetch(EntityManager entityManager, CriteriaQuery<T> query, Root<T> root,
+                                   List<Predicate> filters, KeysetCursor cursor, int size) {
+        CriteriaBuilder criteriaBuilder = entityManager.getCriteriaBuilder();
+        List<Predicate> predicates = new ArrayList<>(filters);
+        if (!cursor.isFirst()) {
+            predicates.add(after(criteriaBuilder, root, cursor));
+        }
+
+        Path<Long> id = root.get(KeysetCursor.ID);
+        List<Order> orders = new ArrayList<>(2);
+        if (!KeysetCursor.ID.equals(cursor.getProperty())) {
+            orders.add(order(criteriaBuilder, root.get(cursor.getProperty()), cursor.getDirection()));
+        }
+        orders.add(order(criteriaBuilder, id, cursor.getDirection()));
+
+        query.where(predicates.toArray(new Predicate[0])).orderBy(orders);
+
+        List<T> rows = entityManager.createQuery(query).setMaxResults(size + 1).getResultList();
+        if (rows.size() <= size) {
+            return new KeysetPage<>(rows, null, null);
+        }
+
+        List<T> content = new ArrayList<>(rows.subList(0, size));
+        BeanWrapper last = PropertyAccessorFactory.forBeanPropertyAccess(content.get(size - 1));
+        KeysetCursor next = cursor.next((Long) last.getPropertyValue(KeysetCursor.ID),
+                last.getPropertyValue(cursor.getProperty()));
+        return new KeysetPage<>(content, next.encode(), null);
+    }
+
+    static Predicate containsIgnoringCase(CriteriaBuilder criteriaBuilder, Path<String> path, String value) {
+        String escaped = value.toLowerCase()
+                .replace("\\", "\\\\")
+                .replace("%", "\\%")
+                .replace("_", "\\_");
+        return criteriaBuilder.like(criteriaBuilder.lower(path), "%" + escaped + "%", '\\');
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static Predicate after(CriteriaBuilder criteriaBuilder, Root<?> root, KeysetCursor cursor) {
+        boolean ascending = cursor.getDirection().isAscending();
+        Path<Long> id = root.get(KeysetCursor.ID);
+        Predicate idAfter = ascending
+                ? criteriaBuilder.greaterThan(id, cursor.getLastId())
+                : criteriaBuilder.lessThan(id, cursor.getLastId());
+        if (KeysetCursor.ID.equals(cursor.getProperty())) {
+            return idAfter;
+        }
+
+        Path<Comparable> key = root.get(cursor.getProperty());
+        Comparable value = cursor.lastValueAs(key.getJavaType());
+        Predicate keyAfter = ascending
+                ? criteriaBuilder.greaterThan(key, value)
+                : criteriaBuilder.lessThan(key, value);
+        return criteriaBuilder.or(keyAfter, criteriaBuilder.and(criteriaBuilder.equal(key, value), idAfter));
+    }
+
+    private static Order order(CriteriaBuilder criteriaBuilder, Expression<?> expression, Sort.Direction direction) {
+        return direction.isAscending() ? criteriaBuilder.asc(expression) : criteriaBuilder.desc(expression);
+    }
+}
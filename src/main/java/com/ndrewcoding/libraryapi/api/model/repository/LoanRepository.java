@@ -1,19 +1,40 @@
 package com.ndrewcoding.libraryapi.api.model.repository;
 
+import com.ndrewcoding.libraryapi.api.dto.LoanDTO;
 import com.ndrewcoding.libraryapi.api.model.entity.Book;
 import com.ndrewcoding.libraryapi.api.model.entity.Loan;
+import org.springframework.cache.annotation.Cacheable;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import javax.persistence.QueryHint;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
 
 @Repository
-public interface LoanRepository extends JpaRepository<Loan, Long> {
+public interface LoanRepository extends JpaRepository<Loan, Long>, LoanRepositoryCustom {
+    /**
+     * Selects a Loan joined to its Book as {@code b} straight into a {@link LoanDTO}.
+     */
+    String LOAN_DTO = "new com.ndrewcoding.libraryapi.api.dto.LoanDTO(" +
+            "l.id, l.customer, l.customerEmail, l.version, b.id, b.title, b.author, b.isbn, b.version)";
+
     @Query(
             value = "SELECT CASE WHEN (COUNT(l.id) > 0) THEN true ELSE false END " +
                     "FROM Loan l WHERE l.book = :book AND NOT l.returned = true"
@@ -21,17 +42,140 @@ public interface LoanRepository extends JpaRepository<Loan, Long> {
     boolean existsByBookAndHasNotBeenReturned(@Param("book") Book book);
 
     @Query(
-            value = "SELECT l FROM Loan as l JOIN l.book as b " +
+            value = "SELECT l FROM Loan as l JOIN FETCH l.book as b " +
+                    "WHERE b.isbn = :isbn OR l.customer = :customer",
+            countQuery = "SELECT COUNT(l) FROM Loan as l JOIN l.book as b " +
                     "WHERE b.isbn = :isbn OR l.customer = :customer"
     )
     Page<Loan> findByBookIsbnOrCustomer(
             @Param("isbn") String isbn, @Param("customer") String customer, Pageable pageable
     );
 
+    /**
+     * The same Loans as {@link #findByBookIsbnOrCustomer}, selected straight into DTOs so that no entity is loaded.
+     */
+    @Query(
+            value = "SELECT " + LOAN_DTO + " FROM Loan as l JOIN l.book as b " +
+                    "WHERE b.isbn = :isbn OR l.customer = :customer",
+            countQuery = "SELECT COUNT(l) FROM Loan as l JOIN l.book as b " +
+                    "WHERE b.isbn = :isbn OR l.customer = :customer"
+    )
+    Page<LoanDTO> findDTOsByBookIsbnOrCustomer(
+            @Param("isbn") String isbn, @Param("customer") String customer, Pageable pageable
+    );
+
+    @Query(
+            value = "SELECT l FROM Loan as l JOIN FETCH l.book as b " +
+                    "WHERE b.isbn = :isbn OR l.customer = :customer"
+    )
+    Slice<Loan> findSliceByBookIsbnOrCustomer(
+            @Param("isbn") String isbn, @Param("customer") String customer, Pageable pageable
+    );
+
+    /**
+     * Cached, so the count may be up to {@code application.pagination.total-staleness} old.
+     */
+    @Cacheable(cacheNames = "loanCount", key = "{#p0, #p1}")
+    @Query(
+            value = "SELECT COUNT(l) FROM Loan as l JOIN l.book as b " +
+                    "WHERE b.isbn = :isbn OR l.customer = :customer"
+    )
+    long countByBookIsbnOrCustomer(@Param("isbn") String isbn, @Param("customer") String customer);
+
+    @Query("SELECT l.openBookId FROM Loan as l WHERE l.openBookId IN :bookIds")
+    Set<Long> findOpenBookIdsByOpenBookIdIn(@Param("bookIds") Collection<Long> bookIds);
+
+    @Query("SELECT l.openBookId FROM Loan as l WHERE l.id IN :ids AND l.openBookId IS NOT NULL")
+    Set<Long> findOpenBookIdsByIdIn(@Param("ids") Collection<Long> ids);
+
+    @Query("SELECT l.book.id FROM Loan as l WHERE l.id = :id")
+    Optional<Long> findBookIdById(@Param("id") Long id);
+
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "1000"))
+    @Query("SELECT l.openBookId FROM Loan as l WHERE l.openBookId IS NOT NULL")
+    Stream<Long> streamOpenBookIds();
+
+    @Query("SELECT l.id FROM Loan as l WHERE l.id IN :ids")
+    Set<Long> findIdsByIdIn(@Param("ids") Collection<Long> ids);
+
+    @Modifying(clearAutomatically = true)
+    @Query("UPDATE Loan as l SET l.returned = true, l.openBookId = null, l.version = l.version + 1 " +
+            "WHERE l.id IN :ids AND l.returned = false")
+    int returnAllByIdIn(@Param("ids") Collection<Long> ids);
+
+    /**
+     * Sets whether the Loan with the given ID is returned, checking its version unless it is null.
+     *
+     * @return the number of updated Loans, 0 when there is no Loan with that ID and version
+     */
+    @Modifying
+    @Query("UPDATE Loan as l SET l.returned = :returned, " +
+            "l.openBookId = CASE WHEN :returned = true THEN NULL ELSE l.book.id END, l.version = l.version + 1 " +
+            "WHERE l.id = :id AND (:version IS NULL OR l.version = :version)")
+    int updateReturnedById(@Param("id") Long id, @Param("returned") boolean returned, @Param("version") Long version);
+
+    @EntityGraph(attributePaths = "book")
     Page<Loan> findByBook(Book foundedBook, Pageable pageable);
 
+    /**
+     * The Loans of the Book with the given ID, selected straight into DTOs so that no entity is loaded.
+     */
+    @Query(
+            value = "SELECT " + LOAN_DTO + " FROM Loan as l JOIN l.book as b WHERE b.id = :bookId",
+            countQuery = "SELECT COUNT(l) FROM Loan as l WHERE l.book.id = :bookId"
+    )
+    Page<LoanDTO> findDTOsByBookId(@Param("bookId") Long bookId, Pageable pageable);
+
+    @EntityGraph(attributePaths = "book")
+    Slice<Loan> findSliceByBook(Book foundedBook, Pageable pageable);
+
+    /**
+     * Cached, so the count may be up to {@code application.pagination.total-staleness} old.
+     */
+    @Cacheable(cacheNames = "loanCountByBook", key = "#p0.id")
+    long countByBook(Book book);
+
+    long countByReturnedFalse();
+
     @Query(
-            value = "SELECT l FROM Loan as l WHERE l.loanDate <= :threeDaysAgo AND NOT l.returned = true"
+            value = "SELECT COUNT(l) FROM Loan as l WHERE l.loanDate <= :threeDaysAgo AND NOT l.returned = true"
     )
-    List<Loan> findByLoanDateLessThanAndNotReturned(@Param("threeDaysAgo") LocalDate threeDaysAgo);
+    long countByLoanDateLessThanAndNotReturned(@Param("threeDaysAgo") LocalDate threeDaysAgo);
+
+    /**
+     * Earliest due date of the overdue Loans that are neither returned nor notified, if there is any.
+     */
+    @Query(
+            value = "SELECT MIN(l.dueDate) FROM Loan as l " +
+                    "WHERE l.dueDate < :today AND l.returned = false AND l.overdueNotifiedAt IS NULL"
+    )
+    Optional<LocalDate> findEarliestUnnotifiedOverdueDueDate(@Param("today") LocalDate today);
+
+    /**
+     * Reads the overdue Loans due from the given date on that are neither returned nor notified, in due date order.
+     * Range scans the due date index, so the cost follows the number of days since {@code from}, not the backlog.
+     */
+    @Query(
+            value = "SELECT l.id as id, l.customerEmail as customerEmail FROM Loan as l " +
+                    "WHERE l.dueDate >= :from AND l.dueDate < :today AND l.returned = false " +
+                    "AND l.overdueNotifiedAt IS NULL ORDER BY l.dueDate, l.id"
+    )
+    List<OverdueLoan> findUnnotifiedOverdueLoans(
+            @Param("from") LocalDate from, @Param("today") LocalDate today, Pageable pageable
+    );
+
+    /**
+     * Sets when the customers of the Loans with the given IDs were told they are overdue. Leaves the version alone,
+     * as the marker is not part of what clients see.
+     */
+    @Transactional
+    @Modifying
+    @Query("UPDATE Loan as l SET l.overdueNotifiedAt = :notifiedAt WHERE l.id IN :ids")
+    int markOverdueNotified(@Param("ids") Collection<Long> ids, @Param("notifiedAt") LocalDateTime notifiedAt);
+
+    interface OverdueLoan {
+        Long getId();
+
+        String getCustomerEmail();
+    }
 }
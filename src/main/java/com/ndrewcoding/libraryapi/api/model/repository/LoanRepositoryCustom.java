@@ -0,0 +1,23 @@
+package com.ndrewcoding.libraryapi.api.model.repository;
+
+import com.ndrewcoding.libraryapi.api.model.entity.Loan;
+import com.ndrewcoding.libraryapi.api.pagination.KeysetCursor;
+import com.ndrewcoding.libraryapi.api.pagination.KeysetPage;
+
+import java.util.stream.Stream;
+
+public interface LoanRepositoryCustom {
+    KeysetPage<Loan> findByBookIsbnOrCustomerByKeyset(String isbn, String customer, KeysetCursor cursor, int size);
+
+    /**
+     * The Loans of the Book with the given ISBN or of the given Customer, with their Book, in ID order, read off a
+     * forward-only cursor {@code application.export.fetch-size} rows at a time. Must be consumed, and closed, within
+     * a transaction.
+     */
+    Stream<Loan> streamByBookIsbnOrCustomer(String isbn, String customer);
+
+    /**
+     * Every Loan with its Book, as {@link #streamByBookIsbnOrCustomer} does.
+     */
+    Stream<Loan> streamAll();
+}
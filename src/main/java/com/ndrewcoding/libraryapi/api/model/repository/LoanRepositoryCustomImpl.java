@@ -0,0 +1,63 @@
+package com.ndrewcoding.libraryapi.api.model.repository;
+
+import com.ndrewcoding.libraryapi.api.model.entity.Book;
+import com.ndrewcoding.libraryapi.api.model.entity.Loan;
+import com.ndrewcoding.libraryapi.api.pagination.KeysetCursor;
+import com.ndrewcoding.libraryapi.api.pagination.KeysetPage;
+import org.springframework.beans.factory.annotation.Value;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.criteria.*;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
+
+public class LoanRepositoryCustomImpl implements LoanRepositoryCustom {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Value("${application.export.fetch-size:1000}")
+    private int fetchSize;
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public KeysetPage<Loan> findByBookIsbnOrCustomerByKeyset(String isbn, String customer, KeysetCursor cursor, int size) {
+        CriteriaBuilder criteriaBuilder = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Loan> query = criteriaBuilder.createQuery(Loan.class);
+        Root<Loan> loan = query.from(Loan.class);
+        Join<Loan, Book> book = (Join<Loan, Book>) loan.<Loan, Book>fetch("book");
+
+        List<Predicate> matches = new ArrayList<>(2);
+        if (isbn != null) {
+            matches.add(criteriaBuilder.equal(book.get("isbn"), isbn));
+        }
+        if (customer != null) {
+            matches.add(criteriaBuilder.equal(loan.get("customer"), customer));
+        }
+        Predicate filter = criteriaBuilder.or(matches.toArray(new Predicate[0]));
+
+        return KeysetQueries.fetch(entityManager, query, loan, Collections.singletonList(filter), cursor, size);
+    }
+
+    @Override
+    public Stream<Loan> streamByBookIsbnOrCustomer(String isbn, String customer) {
+        return entityManager.createQuery("SELECT l FROM Loan as l JOIN FETCH l.book as b " +
+                        "WHERE b.isbn = :isbn OR l.customer = :customer ORDER BY l.id", Loan.class)
+                .setParameter("isbn", isbn)
+                .setParameter("customer", customer)
+                .setHint(HINT_FETCH_SIZE, fetchSize)
+                .getResultStream();
+    }
+
+    @Override
+    public Stream<Loan> streamAll() {
+        return entityManager.createQuery("SELECT l FROM Loan as l JOIN FETCH l.book ORDER BY l.id", Loan.class)
+                .setHint(HINT_FETCH_SIZE, fetchSize)
+                .getResultStream();
+    }
+}
@@ -0,0 +1,44 @@
+package com.ndrewcoding.libraryapi.api.pagination;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * A page read without counting the matching rows: one extra row tells if there is a next page, and the total is only
+ * there when asked for. {@link SlicePage} places the page by its number, {@link KeysetPage} by a cursor.
+ */
+@Getter
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public abstract class CountFreePage<T> {
+    private final List<T> content;
+    private final Long totalElements;
+
+    protected CountFreePage(List<T> content, Long totalElements) {
+        this.content = content;
+        this.totalElements = totalElements;
+    }
+
+    @JsonProperty("hasNext")
+    public abstract boolean hasNext();
+
+    public int getNumberOfElements() {
+        return content.size();
+    }
+
+    public abstract CountFreePage<T> withTotalElements(long totalElements);
+
+    public abstract <U> CountFreePage<U> map(Function<? super T, ? extends U> converter);
+
+    protected <U> List<U> convertContent(Function<? super T, ? extends U> converter) {
+        List<U> converted = new ArrayList<>(content.size());
+        for (T element : content) {
+            converted.add(converter.apply(element));
+        }
+        return converted;
+    }
+}
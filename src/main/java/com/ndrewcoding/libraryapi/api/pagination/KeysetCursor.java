@@ -0,0 +1,94 @@
+package com.ndrewcoding.libraryapi.api.pagination;
+
+import com.ndrewcoding.libraryapi.api.exception.BusinessException;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.springframework.data.domain.Sort;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+import java.util.Set;
+
+/**
+ * Position of a keyset (seek) pagination: the sort property and direction, plus the sort key and id of the last row
+ * already returned. It travels to the clients as an opaque Base64 token.
+ */
+@Getter
+@AllArgsConstructor(access = AccessLevel.PRIVATE)
+public class KeysetCursor {
+    public static final String ID = "id";
+
+    private static final String SEPARATOR = "|";
+    private static final String INVALID = "Invalid pagination cursor.";
+
+    private final String property;
+    private final Sort.Direction direction;
+    private final Long lastId;
+    private final String lastValue;
+
+    public boolean isFirst() {
+        return lastId == null;
+    }
+
+    public KeysetCursor next(Long lastId, Object lastValue) {
+        return new KeysetCursor(property, direction, lastId, lastValue == null ? null : String.valueOf(lastValue));
+    }
+
+    /**
+     * The sort key of the last row, read back as the type of the sort property. Cursors are client input, so a value
+     * that does not parse is reported as an invalid cursor rather than failing the query.
+     */
+    @SuppressWarnings("rawtypes")
+    public Comparable lastValueAs(Class<?> type) {
+        try {
+            if (LocalDate.class.equals(type)) {
+                return LocalDate.parse(lastValue);
+            }
+            if (Long.class.equals(type)) {
+                return Long.valueOf(lastValue);
+            }
+            return lastValue;
+        } catch (DateTimeParseException | IllegalArgumentException exception) {
+            throw new BusinessException(INVALID);
+        }
+    }
+
+    public String encode() {
+        String raw = property + SEPARATOR + direction.name() + SEPARATOR + lastId + SEPARATOR +
+                (lastValue == null ? "" : lastValue);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Resolves the cursor of a request: an empty token starts from the beginning, sorted by the first order of the
+     * given sort (or by id); any other token continues where the previous page stopped.
+     */
+    public static KeysetCursor of(String token, Sort sort, Set<String> sortableProperties) {
+        if (token == null || token.isEmpty()) {
+            Sort.Order order = sort.stream().findFirst().orElse(Sort.Order.asc(ID));
+            checkSortable(order.getProperty(), sortableProperties);
+            return new KeysetCursor(order.getProperty(), order.getDirection(), null, null);
+        }
+        return decode(token, sortableProperties);
+    }
+
+    private static KeysetCursor decode(String token, Set<String> sortableProperties) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            String[] parts = raw.split("\\" + SEPARATOR, 4);
+            checkSortable(parts[0], sortableProperties);
+            return new KeysetCursor(parts[0], Sort.Direction.valueOf(parts[1]), Long.valueOf(parts[2]), parts[3]);
+        } catch (IllegalArgumentException | ArrayIndexOutOfBoundsException exception) {
+            throw new BusinessException(INVALID);
+        }
+    }
+
+    private static void checkSortable(String property, Set<String> sortableProperties) {
+        if (!ID.equals(property) && !sortableProperties.contains(property)) {
+            throw new BusinessException("Cannot paginate by cursor sorting by '" + property + "'.");
+        }
+    }
+}
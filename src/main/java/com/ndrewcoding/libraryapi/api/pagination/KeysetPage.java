@@ -0,0 +1,34 @@
+package com.ndrewcoding.libraryapi.api.pagination;
+
+import lombok.Getter;
+
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * A count-free page placed by a {@link KeysetCursor}; the cursor of the next page is null on the last one.
+ */
+@Getter
+public class KeysetPage<T> extends CountFreePage<T> {
+    private final String nextCursor;
+
+    public KeysetPage(List<T> content, String nextCursor, Long totalElements) {
+        super(content, totalElements);
+        this.nextCursor = nextCursor;
+    }
+
+    @Override
+    public boolean hasNext() {
+        return nextCursor != null;
+    }
+
+    @Override
+    public KeysetPage<T> withTotalElements(long totalElements) {
+        return new KeysetPage<>(getContent(), nextCursor, totalElements);
+    }
+
+    @Override
+    public <U> KeysetPage<U> map(Function<? super T, ? extends U> converter) {
+        return new KeysetPage<>(convertContent(converter), nextCursor, getTotalElements());
+    }
+}
@@ -0,0 +1,46 @@
+package com.ndrewcoding.libraryapi.api.pagination;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import org.springframework.data.domain.Slice;
+
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * A count-free page placed by its number. The total, when asked for, comes from a cache and may be up to
+ * {@code application.pagination.total-staleness} old.
+ */
+@Getter
+public class SlicePage<T> extends CountFreePage<T> {
+    private final int number;
+    private final int size;
+    @Getter(AccessLevel.NONE)
+    private final boolean hasNext;
+
+    public SlicePage(List<T> content, int number, int size, boolean hasNext, Long totalElements) {
+        super(content, totalElements);
+        this.number = number;
+        this.size = size;
+        this.hasNext = hasNext;
+    }
+
+    public static <T> SlicePage<T> of(Slice<T> slice) {
+        return new SlicePage<>(slice.getContent(), slice.getNumber(), slice.getSize(), slice.hasNext(), null);
+    }
+
+    @Override
+    public boolean hasNext() {
+        return hasNext;
+    }
+
+    @Override
+    public SlicePage<T> withTotalElements(long totalElements) {
+        return new SlicePage<>(getContent(), number, size, hasNext, totalElements);
+    }
+
+    @Override
+    public <U> SlicePage<U> map(Function<? super T, ? extends U> converter) {
+        return new SlicePage<>(convertContent(converter), number, size, hasNext, getTotalElements());
+    }
+}
@@ -1,23 +1,75 @@
 package com.ndrewcoding.libraryapi.api.service;
 
+import com.ndrewcoding.libraryapi.api.dto.BookDTO;
 import com.ndrewcoding.libraryapi.api.model.entity.Book;
+import com.ndrewcoding.libraryapi.api.pagination.KeysetPage;
+import com.ndrewcoding.libraryapi.api.pagination.SlicePage;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 @Service
 public interface BookService {
     Book save(Book book);
 
+    /**
+     * Saves, in one transaction, the given Books whose ISBN is neither registered nor repeated earlier in the list.
+     * The saved Books get their ID set and are returned; the skipped ones are left without an ID.
+     */
+    List<Book> saveAll(List<Book> books);
+
     Optional<Book> getById(Long id);
 
+    /**
+     * The Book with the given ID as a DTO, read without loading the entity.
+     */
+    Optional<BookDTO> getDTOById(Long id);
+
+    /**
+     * The version of the Book with the given ID, read without loading the Book.
+     */
+    Optional<Long> getVersion(Long id);
+
     void delete(Book book);
 
     Book update(Book book);
 
+    /**
+     * Sets the title and author of the Book with the given ID in one statement, checking its version unless it is null.
+     *
+     * @return the number of updated Books, 0 when there is no Book with that ID and version
+     */
+    int updateDetails(Long id, String title, String author, Long version);
+
     Page<Book> find(Book bookFilter, Pageable pageRequest);
 
+    /**
+     * Finds the same Books as {@link #find(Book, Pageable)} as DTOs, read without loading the entities.
+     */
+    Page<BookDTO> findDTOs(Book bookFilter, Pageable pageRequest);
+
+    Page<Book> search(String text, Pageable pageRequest);
+
+    KeysetPage<Book> findByCursor(Book bookFilter, String cursor, Pageable pageRequest, boolean count);
+
+    /**
+     * Finds the same Books as {@link #find(Book, Pageable)} without counting them. When asked for, the total comes
+     * from a short-lived cache.
+     */
+    SlicePage<Book> findSlice(Book bookFilter, Pageable pageRequest, boolean count);
+
     Optional<Book> getByIsbn(String isbn);
+
+    List<Book> getByIsbns(Collection<String> isbns);
+
+    /**
+     * Hands every Book over to the consumer, in ID order, as the rows come off a database cursor. The Books are
+     * detached from the persistence context as they go, so memory does not grow with their number.
+     */
+    void forEachBook(Consumer<Book> bookConsumer);
 }
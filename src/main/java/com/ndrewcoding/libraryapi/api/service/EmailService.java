@@ -3,8 +3,14 @@ package com.ndrewcoding.libraryapi.api.service;
 import org.springframework.stereotype.Service;
 
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 @Service
 public interface EmailService {
-    void sendMails(String message, List<String> mailsList);
+    /**
+     * Queues the message for the given recipients and returns without waiting for the mail server.
+     *
+     * @return a future completed once every recipient's mail was sent, or failed when any of them was given up on
+     */
+    CompletableFuture<Void> sendMails(String message, List<String> mailsList);
 }
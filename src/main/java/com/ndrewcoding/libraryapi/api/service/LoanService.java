@@ -1,14 +1,23 @@
 package com.ndrewcoding.libraryapi.api.service;
 
+import com.ndrewcoding.libraryapi.api.dto.LoanDTO;
 import com.ndrewcoding.libraryapi.api.dto.LoanFilterDTO;
 import com.ndrewcoding.libraryapi.api.model.entity.Book;
 import com.ndrewcoding.libraryapi.api.model.entity.Loan;
+import com.ndrewcoding.libraryapi.api.pagination.KeysetPage;
+import com.ndrewcoding.libraryapi.api.pagination.SlicePage;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 
+import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import java.util.function.Function;
 
 @Service
 public interface LoanService {
@@ -18,9 +27,89 @@ public interface LoanService {
 
     Loan update(Loan foundedLoan);
 
+    /**
+     * Sets whether the Loan with the given ID is returned in one statement, checking its version unless it is null.
+     *
+     * @return the number of updated Loans, 0 when there is no Loan with that ID and version
+     */
+    int updateReturned(Long id, boolean returned, Long version);
+
+    /**
+     * Saves, in one transaction, the given Loans whose Book is neither loaned nor repeated earlier in the list.
+     * The saved Loans get their ID set and are returned; the skipped ones are left without an ID.
+     */
+    List<Loan> saveAll(List<Loan> loans);
+
+    /**
+     * Sets the Loans with the given IDs as returned, in one transaction, and returns the IDs that exist.
+     */
+    Set<Long> returnAll(Collection<Long> ids);
+
     Page<Loan> find(LoanFilterDTO filter, Pageable pageable);
 
+    /**
+     * Finds the same Loans as {@link #find(LoanFilterDTO, Pageable)} as DTOs, read without loading the entities.
+     */
+    Page<LoanDTO> findDTOs(LoanFilterDTO filter, Pageable pageable);
+
+    KeysetPage<Loan> findByCursor(LoanFilterDTO filter, String cursor, Pageable pageable, boolean count);
+
+    /**
+     * Finds the same Loans as {@link #find(LoanFilterDTO, Pageable)} without counting them. When asked for, the total
+     * comes from a short-lived cache.
+     */
+    SlicePage<Loan> findSlice(LoanFilterDTO filter, Pageable pageable, boolean count);
+
+    /**
+     * Hands every Loan matching the filter over to the consumer, in ID order, as the rows come off a database cursor.
+     * The Loans are detached from the persistence context as they go, so memory does not grow with their number.
+     */
+    void forEachLoan(LoanFilterDTO filter, Consumer<Loan> loanConsumer);
+
+    /**
+     * Hands every Loan over to the consumer, as {@link #forEachLoan(LoanFilterDTO, Consumer)} does.
+     */
+    void forEachLoan(Consumer<Loan> loanConsumer);
+
     Page<Loan> getLoansByBook(Book foundedBook, Pageable pageable);
-    
-    List<Loan> getAllOverdueLoans();
+
+    /**
+     * The Loans of the Book with the given ID as DTOs, read without loading the entities.
+     */
+    Page<LoanDTO> getLoanDTOsByBook(Long bookId, Pageable pageable);
+
+    SlicePage<Loan> getLoansByBookSlice(Book foundedBook, Pageable pageable, boolean count);
+
+    long countOpenLoans();
+
+    long countOverdueLoans();
+
+    /**
+     * Earliest due date of the overdue Loans that are neither returned nor notified, where a watermark for
+     * {@link #notifyNewlyOverdueLoans(LocalDate, int, Function)} starts when there is none yet.
+     */
+    Optional<LocalDate> getEarliestUnnotifiedOverdueDueDate();
+
+    /**
+     * Hands the customer e-mails of the overdue Loans due from the given date on, that are neither returned nor
+     * notified, over to the sender in chunks. Each chunk is marked as notified only once the future the sender
+     * returned for it completes, that is once the mails were delivered; a failed delivery is rethrown and leaves that
+     * chunk and the rest for the next call.
+     *
+     * @return the watermark for the next call: every Loan due before it has been handled
+     */
+    LocalDate notifyNewlyOverdueLoans(LocalDate from, int chunkSize,
+                                      Function<List<String>, CompletableFuture<?>> chunkSender);
+
+    /**
+     * Whether the Book with the given ID has an open Loan, answered from the in-memory {@link LoanedBookIndex}
+     * without touching the database. A Book that does not exist is not loaned.
+     */
+    boolean isLoaned(long bookId);
+
+    /**
+     * Reads the open Loans from the primary database and fixes the {@link LoanedBookIndex} where it disagrees, returning the
+     * number of Books that were out of sync. Also loads the index on startup.
+     */
+    int reconcileLoanedBookIndex();
 }
@@ -0,0 +1,110 @@
+package com.ndrewcoding.libraryapi.api.service;
+
+import org.springframework.stereotype.Component;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * The IDs of the Books with an open Loan, kept in memory as a bitmap so availability can be answered without a
+ * query. Book IDs come from a sequence, so the bitmap stays dense: a million Books take 128 KB.
+ * <p>
+ * Reads are lock-free. Writes are serialized, and the bitmap grows by copying, which is why they never race with
+ * each other.
+ */
+@Component
+public class LoanedBookIndex {
+    private volatile AtomicLongArray words = new AtomicLongArray(1024);
+    private Set<Long> touchedDuringReconcile;
+
+    public boolean contains(long bookId) {
+        if (bookId < 0) {
+            return false;
+        }
+        AtomicLongArray current = words;
+        long word = bookId >>> 6;
+        return word < current.length() && (current.get((int) word) & (1L << bookId)) != 0;
+    }
+
+    public synchronized void add(long bookId) {
+        set(bookId, true);
+        touched(bookId);
+    }
+
+    public synchronized void remove(long bookId) {
+        set(bookId, false);
+        touched(bookId);
+    }
+
+    /**
+     * Starts recording the Books changed from now on, which {@link #finishReconcile(LoanedBookIndex)} leaves as they
+     * are: their Loans may have changed after the database was read.
+     */
+    public synchronized void beginReconcile() {
+        touchedDuringReconcile = new HashSet<>();
+    }
+
+    /**
+     * Makes this index match the one read from the database, except for the Books changed since
+     * {@link #beginReconcile()}, and returns how many Books were out of sync.
+     */
+    public synchronized int finishReconcile(LoanedBookIndex fromDatabase) {
+        AtomicLongArray expected = fromDatabase.words;
+        int length = Math.max(words.length(), expected.length());
+        int outOfSync = 0;
+        for (int word = 0; word < length; word++) {
+            long difference = word(words, word) ^ word(expected, word);
+            while (difference != 0) {
+                long bookId = ((long) word << 6) + Long.numberOfTrailingZeros(difference);
+                difference &= difference - 1;
+                if (touchedDuringReconcile == null || !touchedDuringReconcile.contains(bookId)) {
+                    set(bookId, fromDatabase.contains(bookId));
+                    outOfSync++;
+                }
+            }
+        }
+        touchedDuringReconcile = null;
+        return outOfSync;
+    }
+
+    private void set(long bookId, boolean loaned) {
+        if (bookId < 0) {
+            throw new IllegalArgumentException("Invalid Book ID: " + bookId);
+        }
+        int word = Math.toIntExact(bookId >>> 6);
+        AtomicLongArray current = words;
+        if (word >= current.length()) {
+            if (!loaned) {
+                return;
+            }
+            current = grow(current, word);
+        }
+        long bit = 1L << bookId;
+        long value = current.get(word);
+        current.set(word, loaned ? value | bit : value & ~bit);
+    }
+
+    private AtomicLongArray grow(AtomicLongArray current, int word) {
+        int length = current.length();
+        while (length <= word) {
+            length = length > Integer.MAX_VALUE / 2 ? Integer.MAX_VALUE : length * 2;
+        }
+        AtomicLongArray grown = new AtomicLongArray(length);
+        for (int index = 0; index < current.length(); index++) {
+            grown.set(index, current.get(index));
+        }
+        words = grown;
+        return grown;
+    }
+
+    private void touched(long bookId) {
+        if (touchedDuringReconcile != null) {
+            touchedDuringReconcile.add(bookId);
+        }
+    }
+
+    private static long word(AtomicLongArray words, int word) {
+        return word < words.length() ? words.get(word) : 0;
+    }
+}
@@ -1,33 +1,52 @@
 package com.ndrewcoding.libraryapi.api.service;
 
-import com.ndrewcoding.libraryapi.api.model.entity.Loan;
-import lombok.RequiredArgsConstructor;
+import com.ndrewcoding.libraryapi.api.config.ReadYourWrites;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
-import java.util.List;
-import java.util.stream.Collectors;
+import java.time.LocalDate;
 
 @Service
-@RequiredArgsConstructor
 public class ScheduleService {
-    private static final String CRON_OVERDUE_LOANS = "0 0 0 1/1 * ?";
+    private static final String OVERDUE_LOANS_INTERVAL = "${application.mail.overdueLoans.interval:PT15M}";
 
     @Value("${application.mail.overdueLoans.message}")
     private String message;
 
+    @Value("${application.mail.overdueLoans.chunk-size:500}")
+    private int chunkSize;
+
     private final LoanService loanService;
     private final EmailService emailService;
+    private final Timer overdueLoansJob;
 
-    @Scheduled(cron = CRON_OVERDUE_LOANS)
-    void sendMailToCustomersWithOverdueLoans() {
-        List<Loan> overdueLoans = loanService.getAllOverdueLoans();
-        List<String> mailsList = overdueLoans
-                .stream()
-                .map(Loan::getCustomerEmail)
-                .collect(Collectors.toList());
+    /**
+     * Every Loan due before it has been handled. Kept in memory, so the first run after startup looks it up, and left
+     * where it was when a run fails, so that the undelivered Loans are picked up again by the next one.
+     */
+    private volatile LocalDate overdueLoansWatermark;
 
-        emailService.sendMails(message, mailsList);
+    public ScheduleService(LoanService loanService, EmailService emailService, MeterRegistry meterRegistry) {
+        this.loanService = loanService;
+        this.emailService = emailService;
+        this.overdueLoansJob = Timer.builder("library.job.overdue-loans")
+                .description("Duration of the overdue loans e-mail job")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(initialDelayString = OVERDUE_LOANS_INTERVAL, fixedDelayString = OVERDUE_LOANS_INTERVAL)
+    void sendMailToCustomersWithOverdueLoans() {
+        // The job reads the next chunk right after marking the previous one, so its reads must follow its writes.
+        overdueLoansJob.record(() -> ReadYourWrites.run(() -> {
+            LocalDate from = overdueLoansWatermark != null
+                    ? overdueLoansWatermark
+                    : loanService.getEarliestUnnotifiedOverdueDueDate().orElseGet(LocalDate::now);
+            overdueLoansWatermark = loanService.notifyNewlyOverdueLoans(
+                    from, chunkSize, mailsList -> emailService.sendMails(message, mailsList)
+            );
+        }));
     }
 }
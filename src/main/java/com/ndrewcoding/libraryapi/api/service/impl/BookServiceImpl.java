@@ -1,8 +1,12 @@
 package com.ndrewcoding.libraryapi.api.service.impl;
 
+import com.ndrewcoding.libraryapi.api.dto.BookDTO;
 import com.ndrewcoding.libraryapi.api.exception.BusinessException;
 import com.ndrewcoding.libraryapi.api.model.entity.Book;
 import com.ndrewcoding.libraryapi.api.model.repository.BookRepository;
+import com.ndrewcoding.libraryapi.api.pagination.KeysetCursor;
+import com.ndrewcoding.libraryapi.api.pagination.KeysetPage;
+import com.ndrewcoding.libraryapi.api.pagination.SlicePage;
 import com.ndrewcoding.libraryapi.api.service.BookService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.Example;
@@ -10,14 +14,25 @@ import org.springframework.data.domain.ExampleMatcher;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.util.StringUtils;
 
-import java.util.Optional;
+import javax.persistence.EntityManager;
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
 @RequiredArgsConstructor
 public class BookServiceImpl implements BookService {
 
+    private static final Set<String> KEYSET_PROPERTIES = new HashSet<>(Arrays.asList("title", "author", "isbn"));
+    private static final int ISBN_LOOKUP_SIZE = 1000;
+    private static final int STREAM_CLEAR_INTERVAL = 500;
+
     private final BookRepository bookRepository;
+    private final EntityManager entityManager;
 
     @Override
     public Book save(Book book) {
@@ -27,11 +42,34 @@ public class BookServiceImpl implements BookService {
         return bookRepository.save(book);
     }
 
+    @Override
+    @Transactional
+    public List<Book> saveAll(List<Book> books) {
+        Set<String> takenIsbns = registeredIsbns(books);
+        List<Book> newBooks = new ArrayList<>(books.size());
+        for (Book book : books) {
+            if (takenIsbns.add(book.getIsbn())) {
+                newBooks.add(book);
+            }
+        }
+        return newBooks.isEmpty() ? newBooks : bookRepository.saveAll(newBooks);
+    }
+
     @Override
     public Optional<Book> getById(Long id) {
         return bookRepository.findById(id);
     }
 
+    @Override
+    public Optional<BookDTO> getDTOById(Long id) {
+        return bookRepository.findDTOById(id);
+    }
+
+    @Override
+    public Optional<Long> getVersion(Long id) {
+        return bookRepository.findVersionById(id);
+    }
+
     @Override
     public void delete(Book book) {
         if (book == null || book.getId() == null) {
@@ -49,16 +87,89 @@ public class BookServiceImpl implements BookService {
     }
 
     @Override
+    public int updateDetails(Long id, String title, String author, Long version) {
+        if (id == null) {
+            throw new IllegalArgumentException("There is no Book with this ID.");
+        }
+        return bookRepository.updateDetails(id, title, author, version);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
     public Page<Book> find(Book filter, Pageable pageRequest) {
-        Example<Book> example = Example.of(filter, ExampleMatcher.matching()
-                .withIgnoreCase()
-                .withIgnoreNullValues()
-                .withStringMatcher(ExampleMatcher.StringMatcher.CONTAINING));
-        return bookRepository.findAll(example, pageRequest);
+        return bookRepository.findAll(example(filter), pageRequest);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Page<BookDTO> findDTOs(Book filter, Pageable pageRequest) {
+        return bookRepository.findDTOs(filter, pageRequest);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Page<Book> search(String text, Pageable pageRequest) {
+        if (!StringUtils.hasText(text)) {
+            return Page.empty(pageRequest);
+        }
+        return bookRepository.search(text, pageRequest);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public KeysetPage<Book> findByCursor(Book filter, String cursor, Pageable pageRequest, boolean count) {
+        KeysetCursor keysetCursor = KeysetCursor.of(cursor, pageRequest.getSort(), KEYSET_PROPERTIES);
+        KeysetPage<Book> page = bookRepository.findByKeyset(filter, keysetCursor, pageRequest.getPageSize());
+        return count ? page.withTotalElements(bookRepository.countMatching(filter)) : page;
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public SlicePage<Book> findSlice(Book filter, Pageable pageRequest, boolean count) {
+        SlicePage<Book> slice = SlicePage.of(bookRepository.findSlice(filter, pageRequest));
+        return count ? slice.withTotalElements(bookRepository.countMatching(filter)) : slice;
     }
 
     @Override
     public Optional<Book> getByIsbn(String isbn) {
         return bookRepository.findByIsbn(isbn);
     }
+
+    @Override
+    public List<Book> getByIsbns(Collection<String> isbns) {
+        return bookRepository.findByIsbnIn(isbns);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public void forEachBook(Consumer<Book> bookConsumer) {
+        try (Stream<Book> books = bookRepository.streamAll()) {
+            int count = 0;
+            Iterator<Book> iterator = books.iterator();
+            while (iterator.hasNext()) {
+                bookConsumer.accept(iterator.next());
+                if (++count % STREAM_CLEAR_INTERVAL == 0) {
+                    entityManager.clear();
+                }
+            }
+        }
+    }
+
+    private Set<String> registeredIsbns(List<Book> books) {
+        List<String> isbns = books.stream().map(Book::getIsbn).distinct().collect(Collectors.toList());
+        Set<String> registeredIsbns = new HashSet<>();
+        for (int from = 0; from < isbns.size(); from += ISBN_LOOKUP_SIZE) {
+            List<String> lookup = isbns.subList(from, Math.min(from + ISBN_LOOKUP_SIZE, isbns.size()));
+            registeredIsbns.addAll(bookRepository.findIsbnsByIsbnIn(lookup));
+        }
+        return registeredIsbns;
+    }
+
+    private Example<Book> example(Book filter) {
+        return Example.of(filter, ExampleMatcher.matching()
+                .withIgnoreCase()
+                .withIgnoreNullValues()
+                .withIgnorePaths("version")
+                .withStringMatcher(ExampleMatcher.StringMatcher.CONTAINING));
+    }
 }
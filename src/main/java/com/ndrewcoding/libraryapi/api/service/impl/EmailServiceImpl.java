@@ -1,34 +1,45 @@
 package com.ndrewcoding.libraryapi.api.service.impl;
 
+import com.ndrewcoding.libraryapi.api.config.MailDispatchProperties;
 import com.ndrewcoding.libraryapi.api.service.EmailService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.mail.SimpleMailMessage;
-import org.springframework.mail.javamail.JavaMailSender;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 @Service
 @RequiredArgsConstructor
 public class EmailServiceImpl implements EmailService {
 
-    private final JavaMailSender javaMailSender;
+    private final MailDispatcher mailDispatcher;
+    private final MailDispatchProperties mailDispatchProperties;
 
     @Value("${application.mail.default-sender}")
     private String sender;
 
     @Override
-    public void sendMails(String message, List<String> mailsList) {
-        SimpleMailMessage mailMessage = new SimpleMailMessage();
+    public CompletableFuture<Void> sendMails(String message, List<String> mailsList) {
+        int recipientsPerMessage = mailDispatchProperties.getRecipientsPerMessage();
+        List<CompletableFuture<Void>> deliveries = new ArrayList<>();
 
-        String[] mails = mailsList.toArray(new String[0]);
+        for (int from = 0; from < mailsList.size(); from += recipientsPerMessage) {
+            List<String> recipients = mailsList.subList(from, Math.min(from + recipientsPerMessage, mailsList.size()));
 
-        mailMessage.setFrom(sender);
-        mailMessage.setSubject("Overdue book loan");
-        mailMessage.setText(message);
-        mailMessage.setTo(mails);
+            SimpleMailMessage mailMessage = new SimpleMailMessage();
 
-        javaMailSender.send(mailMessage);
+            String[] mails = recipients.toArray(new String[0]);
+
+            mailMessage.setFrom(sender);
+            mailMessage.setSubject("Overdue book loan");
+            mailMessage.setText(message);
+            mailMessage.setTo(mails);
+
+            deliveries.add(mailDispatcher.dispatch(mailMessage));
+        }
+        return CompletableFuture.allOf(deliveries.toArray(new CompletableFuture[0]));
     }
 }
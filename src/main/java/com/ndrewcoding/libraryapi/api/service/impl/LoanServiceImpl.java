@@ -1,34 +1,58 @@
 package com.ndrewcoding.libraryapi.api.service.impl;
 
+import com.ndrewcoding.libraryapi.api.dto.LoanDTO;
 import com.ndrewcoding.libraryapi.api.dto.LoanFilterDTO;
 import com.ndrewcoding.libraryapi.api.exception.BusinessException;
 import com.ndrewcoding.libraryapi.api.model.entity.Book;
 import com.ndrewcoding.libraryapi.api.model.entity.Loan;
 import com.ndrewcoding.libraryapi.api.model.repository.LoanRepository;
+import com.ndrewcoding.libraryapi.api.pagination.KeysetCursor;
+import com.ndrewcoding.libraryapi.api.pagination.KeysetPage;
+import com.ndrewcoding.libraryapi.api.pagination.SlicePage;
 import com.ndrewcoding.libraryapi.api.service.LoanService;
+import com.ndrewcoding.libraryapi.api.service.LoanedBookIndex;
+import org.hibernate.exception.ConstraintViolationException;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import javax.persistence.EntityManager;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.time.temporal.ChronoUnit;
-import java.util.List;
-import java.util.Optional;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
 public class LoanServiceImpl implements LoanService {
+    private static final Set<String> KEYSET_PROPERTIES = Collections.singleton("loanDate");
+    private static final int STREAM_CLEAR_INTERVAL = 500;
+
     private final LoanRepository loanRepository;
+    private final EntityManager entityManager;
+    private final LoanedBookIndex loanedBookIndex;
 
-    public LoanServiceImpl(LoanRepository loanRepository) {
+    public LoanServiceImpl(LoanRepository loanRepository, EntityManager entityManager, LoanedBookIndex loanedBookIndex) {
         this.loanRepository = loanRepository;
+        this.entityManager = entityManager;
+        this.loanedBookIndex = loanedBookIndex;
     }
 
     @Override
     public Loan save(Loan loan) {
-        if (loanRepository.existsByBookAndHasNotBeenReturned(loan.getBook())) {
-            throw new BusinessException("Book already loaned");
-        }
-        return loanRepository.save(loan);
+        Loan savedLoan = saveAndFlush(loan);
+        indexAfterCommit(savedLoan);
+        return savedLoan;
     }
 
     @Override
@@ -38,23 +62,269 @@ public class LoanServiceImpl implements LoanService {
 
     @Override
     public Loan update(Loan foundedLoan) {
-        return loanRepository.save(foundedLoan);
+        Loan updatedLoan = saveAndFlush(foundedLoan);
+        indexAfterCommit(updatedLoan);
+        return updatedLoan;
     }
 
     @Override
+    @Transactional
+    public int updateReturned(Long id, boolean returned, Long version) {
+        int updated;
+        try {
+            updated = loanRepository.updateReturnedById(id, returned, version);
+        } catch (DataIntegrityViolationException exception) {
+            throw translate(exception);
+        }
+        if (updated > 0) {
+            loanRepository.findBookIdById(id).ifPresent(bookId -> indexAfterCommit(bookId, !returned));
+        }
+        return updated;
+    }
+
+    @Override
+    @Transactional
+    public List<Loan> saveAll(List<Loan> loans) {
+        Set<Long> bookIds = loans.stream().map(loan -> loan.getBook().getId()).collect(Collectors.toSet());
+        Set<Long> loanedBookIds = new HashSet<>(loanRepository.findOpenBookIdsByOpenBookIdIn(bookIds));
+        List<Loan> newLoans = new ArrayList<>(loans.size());
+        for (Loan loan : loans) {
+            if (loanedBookIds.add(loan.getBook().getId())) {
+                newLoans.add(loan);
+            }
+        }
+        if (newLoans.isEmpty()) {
+            return newLoans;
+        }
+        try {
+            List<Loan> savedLoans = loanRepository.saveAll(newLoans);
+            loanRepository.flush();
+            savedLoans.forEach(this::indexAfterCommit);
+            return savedLoans;
+        } catch (DataIntegrityViolationException exception) {
+            throw translate(exception);
+        }
+    }
+
+    @Override
+    @Transactional
+    public Set<Long> returnAll(Collection<Long> ids) {
+        Set<Long> existingIds = loanRepository.findIdsByIdIn(ids);
+        if (!existingIds.isEmpty()) {
+            Set<Long> returnedBookIds = loanRepository.findOpenBookIdsByIdIn(existingIds);
+            loanRepository.returnAllByIdIn(existingIds);
+            returnedBookIds.forEach(bookId -> indexAfterCommit(bookId, false));
+        }
+        return existingIds;
+    }
+
+    @Override
+    @Transactional(readOnly = true)
     public Page<Loan> find(LoanFilterDTO filter, Pageable pageable) {
         return loanRepository.findByBookIsbnOrCustomer(filter.getIsbn(), filter.getCustomer(), pageable);
     }
 
     @Override
+    @Transactional(readOnly = true)
+    public Page<LoanDTO> findDTOs(LoanFilterDTO filter, Pageable pageable) {
+        return loanRepository.findDTOsByBookIsbnOrCustomer(filter.getIsbn(), filter.getCustomer(), pageable);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public KeysetPage<Loan> findByCursor(LoanFilterDTO filter, String cursor, Pageable pageable, boolean count) {
+        KeysetCursor keysetCursor = KeysetCursor.of(cursor, pageable.getSort(), KEYSET_PROPERTIES);
+        KeysetPage<Loan> page = loanRepository.findByBookIsbnOrCustomerByKeyset(
+                filter.getIsbn(), filter.getCustomer(), keysetCursor, pageable.getPageSize()
+        );
+        if (!count) {
+            return page;
+        }
+        return page.withTotalElements(loanRepository.countByBookIsbnOrCustomer(filter.getIsbn(), filter.getCustomer()));
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public SlicePage<Loan> findSlice(LoanFilterDTO filter, Pageable pageable, boolean count) {
+        SlicePage<Loan> slice = SlicePage.of(
+                loanRepository.findSliceByBookIsbnOrCustomer(filter.getIsbn(), filter.getCustomer(), pageable)
+        );
+        if (!count) {
+            return slice;
+        }
+        return slice.withTotalElements(loanRepository.countByBookIsbnOrCustomer(filter.getIsbn(), filter.getCustomer()));
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public void forEachLoan(LoanFilterDTO filter, Consumer<Loan> loanConsumer) {
+        try (Stream<Loan> loans = loanRepository.streamByBookIsbnOrCustomer(filter.getIsbn(), filter.getCustomer())) {
+            forEach(loans, loanConsumer);
+        }
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public void forEachLoan(Consumer<Loan> loanConsumer) {
+        try (Stream<Loan> loans = loanRepository.streamAll()) {
+            forEach(loans, loanConsumer);
+        }
+    }
+
+    @Override
+    @Transactional(readOnly = true)
     public Page<Loan> getLoansByBook(Book foundedBook, Pageable pageable) {
         return loanRepository.findByBook(foundedBook, pageable);
     }
 
     @Override
-    public List<Loan> getAllOverdueLoans() {
+    @Transactional(readOnly = true)
+    public Page<LoanDTO> getLoanDTOsByBook(Long bookId, Pageable pageable) {
+        return loanRepository.findDTOsByBookId(bookId, pageable);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public SlicePage<Loan> getLoansByBookSlice(Book foundedBook, Pageable pageable, boolean count) {
+        SlicePage<Loan> slice = SlicePage.of(loanRepository.findSliceByBook(foundedBook, pageable));
+        return count ? slice.withTotalElements(loanRepository.countByBook(foundedBook)) : slice;
+    }
+
+    @Override
+    public long countOpenLoans() {
+        return loanRepository.countByReturnedFalse();
+    }
+
+    @Override
+    public long countOverdueLoans() {
+        return loanRepository.countByLoanDateLessThanAndNotReturned(overdueLoanDate());
+    }
+
+    @Override
+    public Optional<LocalDate> getEarliestUnnotifiedOverdueDueDate() {
+        return loanRepository.findEarliestUnnotifiedOverdueDueDate(LocalDate.now());
+    }
+
+    @Override
+    public LocalDate notifyNewlyOverdueLoans(LocalDate from, int chunkSize,
+                                             Function<List<String>, CompletableFuture<?>> chunkSender) {
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("The chunk size must be positive.");
+        }
+        LocalDate today = LocalDate.now();
+        // Notified Loans drop out of the query, so the first page is always the next chunk.
+        Pageable chunk = PageRequest.of(0, chunkSize);
+        List<LoanRepository.OverdueLoan> overdueLoans;
+        do {
+            overdueLoans = loanRepository.findUnnotifiedOverdueLoans(from, today, chunk);
+            if (overdueLoans.isEmpty()) {
+                break;
+            }
+            List<Long> ids = new ArrayList<>(overdueLoans.size());
+            List<String> emails = new ArrayList<>(overdueLoans.size());
+            for (LoanRepository.OverdueLoan overdueLoan : overdueLoans) {
+                ids.add(overdueLoan.getId());
+                emails.add(overdueLoan.getCustomerEmail());
+            }
+            awaitDelivery(chunkSender.apply(emails));
+            loanRepository.markOverdueNotified(ids, LocalDateTime.now());
+        } while (overdueLoans.size() == chunkSize);
+        return today;
+    }
+
+    @Override
+    public boolean isLoaned(long bookId) {
+        return loanedBookIndex.contains(bookId);
+    }
+
+    /**
+     * Not read-only, so that the open Loans are read from the primary: a lagging replica would undo the updates the
+     * index got from the Loans committed since.
+     */
+    @Override
+    @Transactional
+    public int reconcileLoanedBookIndex() {
+        loanedBookIndex.beginReconcile();
+        LoanedBookIndex fromDatabase = new LoanedBookIndex();
+        try (Stream<Long> openBookIds = loanRepository.streamOpenBookIds()) {
+            openBookIds.forEach(fromDatabase::add);
+        }
+        return loanedBookIndex.finishReconcile(fromDatabase);
+    }
+
+    private void indexAfterCommit(Loan loan) {
+        if (loan.getBook() != null && loan.getBook().getId() != null) {
+            indexAfterCommit(loan.getBook().getId(), !loan.isReturned());
+        }
+    }
+
+    /**
+     * Updates the index once the change is committed, so a rolled back Loan never shows up in it.
+     */
+    private void indexAfterCommit(long bookId, boolean loaned) {
+        Runnable update = () -> {
+            if (loaned) {
+                loanedBookIndex.add(bookId);
+            } else {
+                loanedBookIndex.remove(bookId);
+            }
+        };
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            update.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                update.run();
+            }
+        });
+    }
+
+    private void forEach(Stream<Loan> loans, Consumer<Loan> loanConsumer) {
+        int count = 0;
+        Iterator<Loan> iterator = loans.iterator();
+        while (iterator.hasNext()) {
+            loanConsumer.accept(iterator.next());
+            if (++count % STREAM_CLEAR_INTERVAL == 0) {
+                entityManager.clear();
+            }
+        }
+    }
+
+    private Loan saveAndFlush(Loan loan) {
+        try {
+            return loanRepository.saveAndFlush(loan);
+        } catch (DataIntegrityViolationException exception) {
+            throw translate(exception);
+        }
+    }
+
+    private static RuntimeException translate(DataIntegrityViolationException exception) {
+        return isOpenBookConstraintViolation(exception) ? new BusinessException("Book already loaned") : exception;
+    }
+
+    private static boolean isOpenBookConstraintViolation(DataIntegrityViolationException exception) {
+        if (!(exception.getCause() instanceof ConstraintViolationException)) {
+            return false;
+        }
+        String constraintName = ((ConstraintViolationException) exception.getCause()).getConstraintName();
+        return constraintName != null && constraintName.toLowerCase().contains(Loan.OPEN_BOOK_CONSTRAINT);
+    }
+
+    private static void awaitDelivery(CompletableFuture<?> delivery) {
+        try {
+            delivery.join();
+        } catch (CompletionException exception) {
+            if (exception.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) exception.getCause();
+            }
+            throw exception;
+        }
+    }
+
+    private LocalDate overdueLoanDate() {
         final int maxLoanDays = 4;
-        LocalDate threeDaysAgo = LocalDate.now().minus(maxLoanDays, ChronoUnit.DAYS);
-        return loanRepository.findByLoanDateLessThanAndNotReturned(threeDaysAgo);
+        return LocalDate.now().minus(maxLoanDays, ChronoUnit.DAYS);
     }
 }
@@ -0,0 +1,218 @@
+package com.ndrewcoding.libraryapi.api.service.impl;
+
+import com.ndrewcoding.libraryapi.api.config.MailDispatchProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.mail.MailException;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.SimpleMailMessage;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Sends mails in the background: messages wait in a bounded queue and a fixed pool of workers drains them, sending
+ * up to {@code messagesPerConnection} messages over a single SMTP connection and retrying failed messages with
+ * exponential backoff.
+ * <p>
+ * Each {@link #dispatch} returns a future that completes once the message was handed to the mail server, or fails
+ * with a {@link MailSendException} when every attempt failed or the dispatcher stopped before sending it, so callers
+ * that must know a mail went out can wait for it.
+ */
+@Slf4j
+@Component
+public class MailDispatcher {
+
+    private final JavaMailSender javaMailSender;
+    private final MailDispatchProperties properties;
+    private final BlockingQueue<Dispatch> queue;
+    private final Timer successfulSends;
+    private final Timer failedSends;
+    private final Counter sentMails;
+    private final Counter failedMails;
+    private final Counter rejectedMails;
+
+    private ExecutorService workers;
+    private volatile boolean running;
+
+    public MailDispatcher(JavaMailSender javaMailSender, MailDispatchProperties properties, MeterRegistry meterRegistry) {
+        this.javaMailSender = javaMailSender;
+        this.properties = properties;
+        this.queue = new ArrayBlockingQueue<>(properties.getQueueCapacity());
+
+        Gauge.builder("library.mail.dispatch.queue.size", queue, BlockingQueue::size)
+                .description("Mails waiting to be sent")
+                .register(meterRegistry);
+        this.successfulSends = sendTimer(meterRegistry, "success");
+        this.failedSends = sendTimer(meterRegistry, "failure");
+        this.sentMails = mailCounter(meterRegistry, "sent");
+        this.failedMails = mailCounter(meterRegistry, "failed");
+        this.rejectedMails = mailCounter(meterRegistry, "rejected");
+    }
+
+    @PostConstruct
+    public void start() {
+        running = true;
+        AtomicInteger threadCount = new AtomicInteger();
+        workers = Executors.newFixedThreadPool(properties.getWorkers(),
+                runnable -> new Thread(runnable, "mail-dispatcher-" + threadCount.incrementAndGet()));
+        for (int i = 0; i < properties.getWorkers(); i++) {
+            workers.execute(this::work);
+        }
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        workers.shutdown();
+        if (!workers.awaitTermination(properties.getMaxBackoff().toMillis() * 2, TimeUnit.MILLISECONDS)) {
+            log.warn("mail dispatcher stopped with {} mails still queued", queue.size());
+            workers.shutdownNow();
+        }
+        List<Dispatch> unsent = new ArrayList<>();
+        queue.drainTo(unsent);
+        fail(unsent, new MailSendException("The mail dispatcher stopped before sending the mail."));
+    }
+
+    /**
+     * Queues the message, waiting up to {@code enqueueTimeout} for room.
+     *
+     * @return a future completed once the message was sent, or failed once the dispatcher gave up on it
+     * @throws MailSendException when the queue stayed full
+     */
+    public CompletableFuture<Void> dispatch(SimpleMailMessage mailMessage) {
+        Dispatch dispatch = new Dispatch(mailMessage);
+        try {
+            if (!queue.offer(dispatch, properties.getEnqueueTimeout().toMillis(), TimeUnit.MILLISECONDS)) {
+                rejectedMails.increment();
+                throw new MailSendException("The mail queue is full.");
+            }
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            throw new MailSendException("Interrupted while queueing a mail.", exception);
+        }
+        return dispatch.delivery;
+    }
+
+    private void work() {
+        List<Dispatch> batch = new ArrayList<>(properties.getMessagesPerConnection());
+        while (running || !queue.isEmpty()) {
+            try {
+                Dispatch first = queue.poll(500, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, properties.getMessagesPerConnection() - 1);
+                send(batch);
+            } catch (InterruptedException exception) {
+                Thread.currentThread().interrupt();
+                fail(batch, new MailSendException("Interrupted while sending the mail.", exception));
+                return;
+            } catch (RuntimeException exception) {
+                log.error("unexpected error while dispatching {} mails", batch.size(), exception);
+                fail(batch, new MailSendException("Unexpected error while sending the mail.", exception));
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void send(List<Dispatch> batch) throws InterruptedException {
+        List<Dispatch> pending = new ArrayList<>(batch);
+        long backoff = properties.getInitialBackoff().toMillis();
+        for (int attempt = 1; ; attempt++) {
+            long start = System.nanoTime();
+            try {
+                javaMailSender.send(messages(pending));
+                successfulSends.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                sentMails.increment(pending.size());
+                pending.forEach(dispatch -> dispatch.delivery.complete(null));
+                return;
+            } catch (MailException exception) {
+                failedSends.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                List<Dispatch> failed = failedDispatches(exception, pending);
+                sentMails.increment(pending.size() - failed.size());
+                pending.stream().filter(dispatch -> !failed.contains(dispatch))
+                        .forEach(dispatch -> dispatch.delivery.complete(null));
+                pending = failed;
+                if (attempt >= properties.getMaxAttempts()) {
+                    failedMails.increment(pending.size());
+                    log.error("giving up sending {} mails after {} attempts", pending.size(), attempt, exception);
+                    fail(pending, new MailSendException(
+                            "Giving up sending the mail after " + attempt + " attempts.", exception));
+                    return;
+                }
+                log.warn("failed to send {} mails (attempt {}), retrying in {} ms", pending.size(), attempt, backoff);
+                Thread.sleep(backoff);
+                backoff = Math.min(backoff * 2, properties.getMaxBackoff().toMillis());
+            }
+        }
+    }
+
+    private List<Dispatch> failedDispatches(MailException exception, List<Dispatch> sent) {
+        if (!(exception instanceof MailSendException)) {
+            return sent;
+        }
+        Set<Object> failedMessages = Collections.newSetFromMap(new IdentityHashMap<>());
+        failedMessages.addAll(((MailSendException) exception).getFailedMessages().keySet());
+        List<Dispatch> failed = new ArrayList<>();
+        for (Dispatch dispatch : sent) {
+            if (failedMessages.contains(dispatch.message)) {
+                failed.add(dispatch);
+            }
+        }
+        return failed.isEmpty() ? sent : failed;
+    }
+
+    private static SimpleMailMessage[] messages(List<Dispatch> dispatches) {
+        SimpleMailMessage[] messages = new SimpleMailMessage[dispatches.size()];
+        for (int i = 0; i < messages.length; i++) {
+            messages[i] = dispatches.get(i).message;
+        }
+        return messages;
+    }
+
+    private static void fail(List<Dispatch> dispatches, MailSendException exception) {
+        dispatches.forEach(dispatch -> dispatch.delivery.completeExceptionally(exception));
+    }
+
+    private static Counter mailCounter(MeterRegistry meterRegistry, String outcome) {
+        return Counter.builder("library.mail.messages")
+                .description("Mails sent, given up after all attempts, or rejected because the queue was full")
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+
+    private static Timer sendTimer(MeterRegistry meterRegistry, String outcome) {
+        return Timer.builder("library.mail.dispatch.send")
+                .description("Time taken to send a batch of mails over one connection")
+                .tag("outcome", outcome)
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(meterRegistry);
+    }
+
+    /**
+     * A queued message and the future its sender waits on.
+     */
+    private static final class Dispatch {
+        private final SimpleMailMessage message;
+        private final CompletableFuture<Void> delivery = new CompletableFuture<>();
+
+        private Dispatch(SimpleMailMessage message) {
+            this.message = message;
+        }
+    }
+}
@@ -1,14 +1,33 @@
 package com.ndrewcoding.libraryapi;
 
+import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.scheduling.config.ScheduledTaskHolder;
+
+import static org.assertj.core.api.Assertions.assertThat;
 
 @SpringBootTest
 class LibraryApiApplicationTests {
 
+    @Autowired
+    ThreadPoolTaskScheduler taskScheduler;
+
+    @Autowired
+    ScheduledTaskHolder scheduledTaskHolder;
+
     @Test
     void contextLoads() {
 
     }
 
+    @Test
+    @DisplayName("Must give every scheduled job a thread, so a slow one does not hold up the others")
+    void schedulerThreadPerJobTest() {
+        assertThat(scheduledTaskHolder.getScheduledTasks()).isNotEmpty();
+        assertThat(taskScheduler.getPoolSize()).isGreaterThanOrEqualTo(scheduledTaskHolder.getScheduledTasks().size());
+    }
+
 }
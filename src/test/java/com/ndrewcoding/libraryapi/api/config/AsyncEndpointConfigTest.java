@@ -0,0 +1,141 @@
+package com.ndrewcoding.libraryapi.api.config;
+
+import com.ndrewcoding.libraryapi.api.controller.BookController;
+import com.ndrewcoding.libraryapi.api.controller.LoanController;
+import com.ndrewcoding.libraryapi.api.dto.BookDTO;
+import com.ndrewcoding.libraryapi.api.dto.LoanFilterDTO;
+import com.ndrewcoding.libraryapi.api.model.entity.Book;
+import com.ndrewcoding.libraryapi.api.service.BookService;
+import com.ndrewcoding.libraryapi.api.service.LoanService;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.BDDMockito;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.method.HandlerMethod;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@ExtendWith(SpringExtension.class)
+@ActiveProfiles("test")
+@SpringBootTest(properties = {
+        "application.web.async.endpoints=BookController.get",
+        "application.web.async.pool-size=1",
+        "application.web.async.queue-capacity=1"
+})
+@AutoConfigureMockMvc
+public class AsyncEndpointConfigTest {
+    static final String BOOK_API = "/api/books";
+
+    @Autowired
+    MockMvc mvc;
+
+    @MockBean
+    BookService bookService;
+    @MockBean
+    LoanService loanService;
+
+    @Test
+    @DisplayName("Must run the handler of an async endpoint on the async endpoint pool")
+    public void runAsyncEndpointOnPoolTest() throws Exception {
+        AtomicReference<String> handlerThread = new AtomicReference<>();
+        BDDMockito.given(bookService.getDTOById(1L)).willAnswer(invocation -> {
+            handlerThread.set(Thread.currentThread().getName());
+            return Optional.of(BookDTO.builder().id(1L).title("My Title").author("My Author").isbn("123").build());
+        });
+
+        MvcResult result = mvc.perform(get(BOOK_API + "/1"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("id").value(1L))
+                .andExpect(jsonPath("title").value("My Title"));
+        assertThat(handlerThread.get()).startsWith("async-endpoint-");
+    }
+
+    @Test
+    @DisplayName("Must run the handler of an endpoint not switched to async on the request thread")
+    public void runSyncEndpointInlineTest() throws Exception {
+        Page<BookDTO> page = new PageImpl<>(Collections.emptyList());
+        BDDMockito.given(bookService.findDTOs(Mockito.any(Book.class), Mockito.any(Pageable.class))).willReturn(page);
+
+        mvc.perform(get(BOOK_API))
+                .andExpect(request().asyncNotStarted())
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("content").isEmpty());
+    }
+
+    @Test
+    @DisplayName("Must handle the exceptions of an async handler like those of a synchronous one")
+    public void asyncEndpointExceptionTest() throws Exception {
+        BDDMockito.given(bookService.getDTOById(1L)).willReturn(Optional.empty());
+
+        MvcResult result = mvc.perform(get(BOOK_API + "/1"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mvc.perform(asyncDispatch(result))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    @DisplayName("Must refuse an async endpoint request with 503 when its pool and queue are full")
+    public void refuseWhenPoolIsFullTest() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        BDDMockito.given(bookService.getDTOById(1L)).willAnswer(invocation -> {
+            release.await();
+            return Optional.of(BookDTO.builder().id(1L).title("My Title").author("My Author").isbn("123").build());
+        });
+
+        MvcResult running = mvc.perform(get(BOOK_API + "/1")).andExpect(request().asyncStarted()).andReturn();
+        MvcResult queued = mvc.perform(get(BOOK_API + "/1")).andExpect(request().asyncStarted()).andReturn();
+
+        mvc.perform(get(BOOK_API + "/1"))
+                .andExpect(request().asyncNotStarted())
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(header().string(HttpHeaders.RETRY_AFTER, "1"))
+                .andExpect(jsonPath("errors[0]").value("Server busy, try again later."));
+
+        release.countDown();
+        mvc.perform(asyncDispatch(running)).andExpect(status().isOk());
+        mvc.perform(asyncDispatch(queued)).andExpect(status().isOk());
+    }
+
+    @Test
+    @DisplayName("Must give the stream timeout to streamed responses only")
+    public void streamTimeoutTest() throws Exception {
+        MvcResult result = mvc.perform(get("/api/loans/stream"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        assertThat(result.getRequest().getAsyncContext().getTimeout()).isEqualTo(Duration.ofMinutes(30).toMillis());
+        assertThat(AsyncEndpointConfig.isStream(new HandlerMethod(new Object(),
+                LoanController.class.getMethod("stream", LoanFilterDTO.class)))).isTrue();
+        assertThat(AsyncEndpointConfig.isStream(new HandlerMethod(new Object(),
+                BookController.class.getMethod("get", Long.class, WebRequest.class)))).isFalse();
+    }
+}
@@ -0,0 +1,189 @@
+package com.ndrewcoding.libraryapi.api.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import javax.servlet.FilterChain;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ConcurrencyLimitFilterTest {
+    MeterRegistry meterRegistry;
+    AdaptiveConcurrencyLimiter readLimiter;
+    AdaptiveConcurrencyLimiter writeLimiter;
+    ConcurrencyLimitFilter filter;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        meterRegistry = new SimpleMeterRegistry();
+        readLimiter = new AdaptiveConcurrencyLimiter(
+                "read", new ConcurrencyLimitProperties.Limit(1, 1, 4, Duration.ofSeconds(10)), 0.5, meterRegistry);
+        writeLimiter = new AdaptiveConcurrencyLimiter(
+                "write", new ConcurrencyLimitProperties.Limit(1, 1, 4, Duration.ofSeconds(10)), 0.5, meterRegistry);
+        filter = new ConcurrencyLimitFilter(readLimiter, writeLimiter,
+                new ConcurrencyLimitProperties().getExcludedPaths(), Duration.ofSeconds(2), new ObjectMapper());
+    }
+
+    @Test
+    @DisplayName("Must refuse a request over the limit with 503 and Retry-After, counting the rejection")
+    public void refuseOverLimitTest() throws Exception {
+        AtomicReference<MockHttpServletResponse> refused = new AtomicReference<>();
+
+        filter.doFilter(request("GET", "/api/books"), new MockHttpServletResponse(), (request, response) -> {
+            MockHttpServletResponse nested = new MockHttpServletResponse();
+            filter.doFilter(request("GET", "/api/books/1"), nested, failingChain());
+            refused.set(nested);
+        });
+
+        assertThat(refused.get().getStatus()).isEqualTo(HttpStatus.SERVICE_UNAVAILABLE.value());
+        assertThat(refused.get().getHeader(HttpHeaders.RETRY_AFTER)).isEqualTo("2");
+        assertThat(refused.get().getContentAsString())
+                .isEqualTo("{\"errors\":[\"" + ConcurrencyLimitFilter.BUSY_MESSAGE + "\"]}");
+        assertThat(meterRegistry.get("library.web.concurrency.rejected").tag("kind", "read").counter().count())
+                .isEqualTo(1);
+        assertThat(readLimiter.getInFlight()).isZero();
+    }
+
+    @Test
+    @DisplayName("Must limit reads and writes separately")
+    public void separateReadAndWriteLimitsTest() throws Exception {
+        AtomicReference<MockHttpServletResponse> write = new AtomicReference<>();
+
+        filter.doFilter(request("GET", "/api/books"), new MockHttpServletResponse(), (request, response) -> {
+            MockHttpServletResponse nested = new MockHttpServletResponse();
+            filter.doFilter(request("POST", "/api/loans"), nested, (nestedRequest, nestedResponse) ->
+                    ((MockHttpServletResponse) nestedResponse).setStatus(HttpStatus.CREATED.value()));
+            write.set(nested);
+        });
+
+        assertThat(write.get().getStatus()).isEqualTo(HttpStatus.CREATED.value());
+        assertThat(meterRegistry.get("library.web.concurrency.rejected").tag("kind", "write").counter().count())
+                .isZero();
+    }
+
+    @Test
+    @DisplayName("Must let the excluded long-lived endpoints through without taking a slot")
+    public void excludedPathTest() throws Exception {
+        AtomicReference<MockHttpServletResponse> stream = new AtomicReference<>();
+
+        filter.doFilter(request("GET", "/api/books"), new MockHttpServletResponse(), (request, response) -> {
+            MockHttpServletResponse nested = new MockHttpServletResponse();
+            filter.doFilter(request("GET", "/api/loans/stream"), nested, (nestedRequest, nestedResponse) -> {
+            });
+            stream.set(nested);
+        });
+
+        assertThat(stream.get().getStatus()).isEqualTo(HttpStatus.OK.value());
+    }
+
+    @Test
+    @DisplayName("Must let a bulk request through without taking a write slot")
+    public void excludedBulkPathTest() throws Exception {
+        AtomicReference<MockHttpServletResponse> write = new AtomicReference<>();
+
+        filter.doFilter(request("POST", "/api/loans/bulk"), new MockHttpServletResponse(), (request, response) -> {
+            MockHttpServletResponse nested = new MockHttpServletResponse();
+            filter.doFilter(request("POST", "/api/loans"), nested, (nestedRequest, nestedResponse) ->
+                    ((MockHttpServletResponse) nestedResponse).setStatus(HttpStatus.CREATED.value()));
+            write.set(nested);
+        });
+
+        assertThat(write.get().getStatus()).isEqualTo(HttpStatus.CREATED.value());
+        assertThat(writeLimiter.getInFlight()).isZero();
+        assertThat(writeLimiter.getLimit()).as("only the single write counted").isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("Must hold the slot of an async request until it completes")
+    public void holdSlotUntilAsyncCompletesTest() throws Exception {
+        MockHttpServletRequest asyncRequest = request("GET", "/api/books/1");
+        asyncRequest.setAsyncSupported(true);
+
+        filter.doFilter(asyncRequest, new MockHttpServletResponse(), (request, response) -> request.startAsync());
+
+        assertThat(readLimiter.getInFlight()).isEqualTo(1);
+        asyncRequest.getAsyncContext().complete();
+        assertThat(readLimiter.getInFlight()).isZero();
+    }
+
+    @Test
+    @DisplayName("Must raise the limit after fast requests that used it and lower it after slow or failed ones")
+    public void adaptLimitTest() {
+        assertThat(readLimiter.tryAcquire()).isTrue();
+        readLimiter.release(Duration.ofMillis(1), false);
+        assertThat(readLimiter.getLimit()).isEqualTo(2);
+
+        assertThat(readLimiter.tryAcquire()).isTrue();
+        readLimiter.release(Duration.ofMillis(1), false);
+        assertThat(readLimiter.getLimit()).isEqualTo(3);
+
+        assertThat(readLimiter.tryAcquire()).isTrue();
+        readLimiter.release(Duration.ofMillis(1), false);
+        assertThat(readLimiter.getLimit()).as("one in flight out of three does not use the limit").isEqualTo(3);
+
+        assertThat(readLimiter.tryAcquire()).isTrue();
+        readLimiter.release(Duration.ofSeconds(11), false);
+        assertThat(readLimiter.getLimit()).isEqualTo(1);
+
+        assertThat(readLimiter.tryAcquire()).isTrue();
+        readLimiter.release(Duration.ofMillis(1), true);
+        assertThat(readLimiter.getLimit()).as("never under the minimum").isEqualTo(1);
+        assertThat(meterRegistry.get("library.web.concurrency.limit").tag("kind", "read").gauge().value())
+                .isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Must lower the limit once for a burst of slow requests that finish together")
+    public void decreaseOncePerRoundTripTest() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(
+                "burst", new ConcurrencyLimitProperties.Limit(8, 1, 16, Duration.ofSeconds(10)), 0.5, meterRegistry);
+        for (int i = 0; i < 8; i++) {
+            assertThat(limiter.tryAcquire()).isTrue();
+        }
+
+        for (int i = 0; i < 8; i++) {
+            limiter.release(Duration.ofSeconds(11), false);
+        }
+
+        assertThat(limiter.getLimit()).as("one backoff for the whole burst").isEqualTo(4);
+        assertThat(limiter.getInFlight()).isZero();
+
+        assertThat(limiter.tryAcquire()).isTrue();
+        limiter.release(Duration.ZERO, true);
+        assertThat(limiter.getLimit()).as("a request started after the decrease lowers it again").isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("Must count a server error as a failure")
+    public void serverErrorLowersLimitTest() throws Exception {
+        assertThat(writeLimiter.tryAcquire()).isTrue();
+        writeLimiter.release(Duration.ofMillis(1), false);
+        assertThat(writeLimiter.getLimit()).as("only the single write counted").isEqualTo(2);
+
+        filter.doFilter(request("PUT", "/api/books/1"), new MockHttpServletResponse(), (request, response) ->
+                ((MockHttpServletResponse) response).setStatus(HttpStatus.INTERNAL_SERVER_ERROR.value()));
+
+        assertThat(writeLimiter.getLimit()).isEqualTo(1);
+        assertThat(writeLimiter.getInFlight()).isZero();
+    }
+
+    private static MockHttpServletRequest request(String method, String uri) {
+        return new MockHttpServletRequest(method, uri);
+    }
+
+    private static FilterChain failingChain() {
+        return (request, response) -> {
+            throw new AssertionError("the request must not reach the chain");
+        };
+    }
+}
@@ -0,0 +1,91 @@
+package com.ndrewcoding.libraryapi.api.config;
+
+import com.ndrewcoding.libraryapi.api.exception.BusinessException;
+import com.ndrewcoding.libraryapi.api.model.entity.Book;
+import com.ndrewcoding.libraryapi.api.model.repository.BookRepository;
+import com.ndrewcoding.libraryapi.api.model.repository.LoanRepository;
+import com.ndrewcoding.libraryapi.api.service.BookService;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+
+@ExtendWith(SpringExtension.class)
+@ActiveProfiles("test")
+@SpringBootTest
+public class MetricsAspectTest {
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    @Autowired
+    BookService bookService;
+
+    @Autowired
+    BookRepository bookRepository;
+
+    @Autowired
+    LoanRepository loanRepository;
+
+    @Autowired
+    LoanGauges loanGauges;
+
+    @AfterEach
+    public void tearDown() {
+        bookRepository.deleteAll();
+    }
+
+    @Test
+    @DisplayName("Must time the repository methods by repository interface and method")
+    public void timeRepositoryTest() {
+        loanRepository.findByBookIsbnOrCustomer("123", "Andrew", PageRequest.of(0, 10));
+        bookRepository.count();
+
+        assertThat(timer(MetricsAspect.REPOSITORY_TIMER, "LoanRepository", "findByBookIsbnOrCustomer", "none").count())
+                .isGreaterThanOrEqualTo(1);
+        assertThat(timer(MetricsAspect.REPOSITORY_TIMER, "BookRepository", "count", "none").count())
+                .isGreaterThanOrEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Must time the service methods, tagging the exception they throw")
+    public void timeServiceTest() {
+        Book book = Book.builder().title("Title").author("Author").isbn("123").build();
+        bookService.save(book);
+
+        Throwable exception = catchThrowable(
+                () -> bookService.save(Book.builder().title("Title").author("Author").isbn("123").build())
+        );
+
+        assertThat(exception).isInstanceOf(BusinessException.class);
+        assertThat(timer(MetricsAspect.SERVICE_TIMER, "BookServiceImpl", "save", "none").count()).isEqualTo(1);
+        assertThat(timer(MetricsAspect.SERVICE_TIMER, "BookServiceImpl", "save", "BusinessException").count())
+                .isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Must publish the number of open Loans")
+    public void loanGaugesTest() {
+        loanGauges.refresh();
+
+        assertThat(meterRegistry.get("library.loans.open").gauge().value()).isZero();
+        assertThat(meterRegistry.get("library.loans.overdue").gauge().value()).isZero();
+    }
+
+    private Timer timer(String name, String className, String method, String exception) {
+        return meterRegistry.get(name)
+                .tag("class", className)
+                .tag("method", method)
+                .tag("exception", exception)
+                .timer();
+    }
+}
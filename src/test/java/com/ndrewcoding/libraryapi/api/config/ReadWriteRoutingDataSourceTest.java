@@ -0,0 +1,231 @@
+package com.ndrewcoding.libraryapi.api.config;
+
+import com.ndrewcoding.libraryapi.api.model.entity.ReplicationHeartbeat;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceAutoConfiguration;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceTransactionManagerAutoConfiguration;
+import org.springframework.boot.autoconfigure.jdbc.JdbcTemplateAutoConfiguration;
+import org.springframework.boot.autoconfigure.transaction.TransactionAutoConfiguration;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Two in-memory H2 databases stand in for the primary and its replica. Nothing replicates between them, so the tests
+ * copy the heartbeat over themselves.
+ */
+@ExtendWith(SpringExtension.class)
+@ActiveProfiles("test")
+@SpringBootTest(
+        classes = {DataSourceRoutingConfig.class, ReadWriteRoutingDataSourceTest.MeterRegistryConfig.class},
+        properties = {
+                "spring.datasource.url=jdbc:h2:mem:primary;DB_CLOSE_DELAY=-1",
+                "application.datasource.replicas[0].url=jdbc:h2:mem:replica;DB_CLOSE_DELAY=-1",
+                "application.datasource.replicas[0].username=sa"
+        }
+)
+@ImportAutoConfiguration({
+        DataSourceAutoConfiguration.class,
+        DataSourceTransactionManagerAutoConfiguration.class,
+        TransactionAutoConfiguration.class,
+        JdbcTemplateAutoConfiguration.class
+})
+public class ReadWriteRoutingDataSourceTest {
+    private static final String CREATE_HEARTBEAT =
+            "CREATE TABLE IF NOT EXISTS " + ReplicationHeartbeat.TABLE + " (id INT PRIMARY KEY, beat_at BIGINT NOT NULL)";
+    private static final String DATABASE_NAME = "SELECT DATABASE()";
+
+    @Autowired
+    DataSource dataSource;
+
+    @Autowired
+    ReadWriteRoutingDataSource routingDataSource;
+
+    @Autowired
+    ReplicaLagMonitor replicaLagMonitor;
+
+    @Autowired
+    TransactionTemplate transactionTemplate;
+
+    JdbcTemplate jdbcTemplate;
+    JdbcTemplate primary;
+    JdbcTemplate replica;
+
+    @BeforeEach
+    public void setUp() {
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        primary = new JdbcTemplate(routingDataSource.getPrimary());
+        replica = new JdbcTemplate(routingDataSource.getReplicas().get("replica-0"));
+        primary.execute(CREATE_HEARTBEAT);
+        replica.execute(CREATE_HEARTBEAT);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        ReadYourWrites.clear();
+        replica.update("DELETE FROM " + ReplicationHeartbeat.TABLE);
+        routingDataSource.setHealthy("replica-0", false);
+    }
+
+    @Test
+    @DisplayName("Must send read-only transactions to a replica that keeps up and the others to the primary")
+    public void routeByTransactionTypeTest() {
+        catchUpReplica();
+
+        assertThat(readOnly()).isEqualTo("REPLICA");
+        assertThat(readWrite()).isEqualTo("PRIMARY");
+    }
+
+    @Test
+    @DisplayName("Must keep the reads on the primary right after a write")
+    public void readYourWritesTest() {
+        catchUpReplica();
+        AtomicReference<String> database = new AtomicReference<>();
+
+        ReadYourWrites.run(() -> {
+            readWrite();
+            database.set(readOnly());
+        });
+
+        assertThat(database.get()).isEqualTo("PRIMARY");
+        assertThat(readOnly()).as("the pin ends with the scope").isEqualTo("REPLICA");
+    }
+
+    @Test
+    @DisplayName("Must not pin a thread that wrote outside any request, job or task")
+    public void writeOutsideScopeLeavesNoPinTest() {
+        catchUpReplica();
+
+        readWrite();
+
+        assertThat(ReadYourWrites.isPinned()).isFalse();
+        assertThat(readOnly()).isEqualTo("REPLICA");
+    }
+
+    @Test
+    @DisplayName("Must keep the pin of a task handed to a pooled thread within that task")
+    public void propagatedTaskLeavesNoPinTest() throws Exception {
+        catchUpReplica();
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            String database = executor.submit(ReadYourWrites.propagate(() -> {
+                readWrite();
+                return readOnly();
+            })).get(5, TimeUnit.SECONDS);
+
+            assertThat(database).isEqualTo("PRIMARY");
+            assertThat(executor.submit(this::readOnly).get(5, TimeUnit.SECONDS)).isEqualTo("REPLICA");
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    @DisplayName("Must fall back to the primary while the replica lags")
+    public void fallBackToPrimaryWhenReplicaLagsTest() {
+        catchUpReplica();
+        replica.update("UPDATE " + ReplicationHeartbeat.TABLE + " SET beat_at = ?",
+                System.currentTimeMillis() - Duration.ofMinutes(1).toMillis());
+
+        replicaLagMonitor.check();
+
+        assertThat(readOnly()).isEqualTo("PRIMARY");
+    }
+
+    @Test
+    @DisplayName("Must fall back to the primary while the replica cannot be checked")
+    public void fallBackToPrimaryBeforeFirstCheckTest() {
+        replicaLagMonitor.check();
+
+        assertThat(readOnly()).isEqualTo("PRIMARY");
+    }
+
+    @Test
+    @DisplayName("Must hand a client that wrote a cookie pinning its next reads to the primary")
+    public void readYourWritesCookieTest() throws Exception {
+        catchUpReplica();
+        ReadYourWritesFilter filter = new ReadYourWritesFilter(Duration.ofSeconds(5));
+        MockHttpServletResponse writeResponse = new MockHttpServletResponse();
+
+        filter.doFilter(new MockHttpServletRequest(), writeResponse, new MockFilterChain(servlet(this::readWrite)));
+
+        Cookie cookie = writeResponse.getCookie(ReadYourWritesFilter.COOKIE);
+        assertThat(cookie).isNotNull();
+        assertThat(cookie.getMaxAge()).isEqualTo(5);
+
+        AtomicReference<String> database = new AtomicReference<>();
+        MockHttpServletRequest readRequest = new MockHttpServletRequest();
+        readRequest.setCookies(cookie);
+
+        filter.doFilter(readRequest, new MockHttpServletResponse(), new MockFilterChain(servlet(() -> database.set(readOnly()))));
+
+        assertThat(database.get()).isEqualTo("PRIMARY");
+        assertThat(readOnly()).isEqualTo("REPLICA");
+    }
+
+    private void catchUpReplica() {
+        replicaLagMonitor.check();
+        Long beat = primary.queryForObject("SELECT beat_at FROM " + ReplicationHeartbeat.TABLE, Long.class);
+        replica.update("DELETE FROM " + ReplicationHeartbeat.TABLE);
+        replica.update("INSERT INTO " + ReplicationHeartbeat.TABLE + " (id, beat_at) VALUES (1, ?)", beat);
+        replicaLagMonitor.check();
+    }
+
+    private String readOnly() {
+        transactionTemplate.setReadOnly(true);
+        try {
+            return transactionTemplate.execute(status -> jdbcTemplate.queryForObject(DATABASE_NAME, String.class));
+        } finally {
+            transactionTemplate.setReadOnly(false);
+        }
+    }
+
+    private String readWrite() {
+        return transactionTemplate.execute(status -> jdbcTemplate.queryForObject(DATABASE_NAME, String.class));
+    }
+
+    private static HttpServlet servlet(Runnable handler) {
+        return new HttpServlet() {
+            @Override
+            protected void service(HttpServletRequest request, HttpServletResponse response) {
+                handler.run();
+            }
+        };
+    }
+
+    @Configuration
+    static class MeterRegistryConfig {
+        @Bean
+        MeterRegistry meterRegistry() {
+            return new SimpleMeterRegistry();
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package com.ndrewcoding.libraryapi.api.config;
+
+import com.ndrewcoding.libraryapi.api.model.entity.ReplicationHeartbeat;
+import com.ndrewcoding.libraryapi.api.service.LoanService;
+import com.ndrewcoding.libraryapi.api.service.LoanedBookIndex;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * The whole application with a read replica. The replica is a second in-memory H2 database that nothing replicates
+ * to, standing in for one that lags: it still holds a Loan the primary no longer has open.
+ */
+@ExtendWith(SpringExtension.class)
+@ActiveProfiles("test")
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:application-primary;DB_CLOSE_DELAY=-1",
+        "application.datasource.replicas[0].url=jdbc:h2:mem:application-replica;DB_CLOSE_DELAY=-1",
+        "application.datasource.replicas[0].username=sa"
+})
+public class ReplicaRoutingApplicationTest {
+    private static final long STALE_BOOK_ID = 42;
+
+    @Autowired
+    LoanService loanService;
+
+    @Autowired
+    LoanedBookIndex loanedBookIndex;
+
+    @Autowired
+    DataSource dataSource;
+
+    @Autowired
+    ReadWriteRoutingDataSource routingDataSource;
+
+    @Autowired
+    ReplicaLagMonitor replicaLagMonitor;
+
+    @Autowired
+    TransactionTemplate transactionTemplate;
+
+    JdbcTemplate primary;
+    JdbcTemplate replica;
+
+    @BeforeEach
+    public void setUp() {
+        primary = new JdbcTemplate(routingDataSource.getPrimary());
+        replica = new JdbcTemplate(routingDataSource.getReplicas().get("replica-0"));
+        replica.execute("CREATE TABLE IF NOT EXISTS loan (open_book_id BIGINT)");
+        replica.execute(
+                "CREATE TABLE IF NOT EXISTS " + ReplicationHeartbeat.TABLE + " (id INT PRIMARY KEY, beat_at BIGINT NOT NULL)"
+        );
+        replica.update("INSERT INTO loan (open_book_id) VALUES (?)", STALE_BOOK_ID);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        replica.execute("DROP TABLE loan");
+        replica.update("DELETE FROM " + ReplicationHeartbeat.TABLE);
+        routingDataSource.setHealthy("replica-0", false);
+    }
+
+    @Test
+    @DisplayName("Must start with a read replica and serve the read-only transactions from it once it keeps up")
+    public void readOnlyTransactionsReachReplicaTest() {
+        catchUpReplica();
+
+        String readWriteDatabase = transactionTemplate.execute(status -> new JdbcTemplate(dataSource).queryForObject(
+                "SELECT DATABASE()", String.class
+        ));
+
+        assertThat(readOnlyStaleLoans()).isEqualTo(1);
+        assertThat(readWriteDatabase).isEqualTo("APPLICATION-PRIMARY");
+    }
+
+    @Test
+    @DisplayName("Must reconcile the index of loaned Books with the primary, not with a replica that may lag")
+    public void reconcileReadsPrimaryTest() {
+        catchUpReplica();
+        assertThat(readOnlyStaleLoans()).as("read-only transactions see the stale replica").isEqualTo(1);
+
+        loanService.reconcileLoanedBookIndex();
+
+        assertThat(loanedBookIndex.contains(STALE_BOOK_ID)).isFalse();
+    }
+
+    private void catchUpReplica() {
+        replicaLagMonitor.check();
+        Long beat = primary.queryForObject("SELECT beat_at FROM " + ReplicationHeartbeat.TABLE, Long.class);
+        replica.update("DELETE FROM " + ReplicationHeartbeat.TABLE);
+        replica.update("INSERT INTO " + ReplicationHeartbeat.TABLE + " (id, beat_at) VALUES (1, ?)", beat);
+        replicaLagMonitor.check();
+    }
+
+    private Long readOnlyStaleLoans() {
+        transactionTemplate.setReadOnly(true);
+        try {
+            return transactionTemplate.execute(status -> new JdbcTemplate(dataSource).queryForObject(
+                    "SELECT COUNT(*) FROM loan WHERE open_book_id = ?", Long.class, STALE_BOOK_ID
+            ));
+        } finally {
+            transactionTemplate.setReadOnly(false);
+        }
+    }
+}
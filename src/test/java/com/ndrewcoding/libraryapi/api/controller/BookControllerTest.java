@@ -1,10 +1,14 @@
 package com.ndrewcoding.libraryapi.api.controller;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
 import com.ndrewcoding.libraryapi.api.dto.BookDTO;
+import com.ndrewcoding.libraryapi.api.dto.LoanDTO;
 import com.ndrewcoding.libraryapi.api.exception.BusinessException;
 import com.ndrewcoding.libraryapi.api.model.entity.Book;
 import com.ndrewcoding.libraryapi.api.model.entity.Loan;
+import com.ndrewcoding.libraryapi.api.pagination.KeysetPage;
+import com.ndrewcoding.libraryapi.api.pagination.SlicePage;
 import com.ndrewcoding.libraryapi.api.service.BookService;
 import com.ndrewcoding.libraryapi.api.service.LoanService;
 import com.ndrewcoding.libraryapi.api.service.LoanServiceTest;
@@ -20,19 +24,29 @@ import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
 import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
 
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
 
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.hamcrest.Matchers.hasSize;
-import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
-import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.startsWith;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
 @ExtendWith(SpringExtension.class)
 @ActiveProfiles("test")
@@ -57,14 +71,7 @@ public class BookControllerTest {
 
         long id = 1L;
 
-        Book book = Book.builder()
-                .id(id)
-                .title(bookDTO.getTitle())
-                .author(bookDTO.getAuthor())
-                .isbn(bookDTO.getIsbn())
-                .build();
-
-        BDDMockito.given(bookService.getById(id)).willReturn(Optional.of(book));
+        BDDMockito.given(bookService.getDTOById(id)).willReturn(Optional.of(bookDTO));
 
         MockHttpServletRequestBuilder request = MockMvcRequestBuilders
                 .get(BOOK_API.concat("/" + id))
@@ -75,7 +82,45 @@ public class BookControllerTest {
                 .andExpect(jsonPath("id").value(id))
                 .andExpect(jsonPath("title").value(bookDTO.getTitle()))
                 .andExpect(jsonPath("author").value(bookDTO.getAuthor()))
-                .andExpect(jsonPath("isbn").value(bookDTO.getIsbn()));
+                .andExpect(jsonPath("isbn").value(bookDTO.getIsbn()))
+                .andExpect(header().string(HttpHeaders.ETAG, "\"0\""));
+    }
+
+    @Test
+    @DisplayName("Must answer Not Modified to a matching If-None-Match without loading the Book")
+    public void getUnmodifiedBookTest() throws Exception {
+        BDDMockito.given(bookService.getVersion(1L)).willReturn(Optional.of(3L));
+
+        MockHttpServletRequestBuilder request = MockMvcRequestBuilders
+                .get(BOOK_API.concat("/1"))
+                .header(HttpHeaders.IF_NONE_MATCH, "\"3\"")
+                .accept(MediaType.APPLICATION_JSON);
+
+        mvc.perform(request)
+                .andExpect(status().isNotModified())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"3\""))
+                .andExpect(content().string(""));
+
+        Mockito.verify(bookService, Mockito.never()).getDTOById(Mockito.anyLong());
+    }
+
+    @Test
+    @DisplayName("Must return a modified Book with its new ETag")
+    public void getModifiedBookTest() throws Exception {
+        BookDTO book = BookDTO.builder().id(1L).title("Title").author("Author").isbn("001").version(4L).build();
+
+        BDDMockito.given(bookService.getVersion(1L)).willReturn(Optional.of(4L));
+        BDDMockito.given(bookService.getDTOById(1L)).willReturn(Optional.of(book));
+
+        MockHttpServletRequestBuilder request = MockMvcRequestBuilders
+                .get(BOOK_API.concat("/1"))
+                .header(HttpHeaders.IF_NONE_MATCH, "\"3\"")
+                .accept(MediaType.APPLICATION_JSON);
+
+        mvc.perform(request)
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"4\""))
+                .andExpect(jsonPath("title").value("Title"));
     }
 
     @Test
@@ -84,7 +129,7 @@ public class BookControllerTest {
 
         long id = 1L;
 
-        BDDMockito.given(bookService.getById(Mockito.anyLong())).willReturn(Optional.empty());
+        BDDMockito.given(bookService.getDTOById(Mockito.anyLong())).willReturn(Optional.empty());
 
         MockHttpServletRequestBuilder request = MockMvcRequestBuilders
                 .get(BOOK_API.concat("/" + id))
@@ -116,6 +161,32 @@ public class BookControllerTest {
                 .andExpect(jsonPath("isbn").value(bookDTO.getIsbn()));
     }
 
+    @Test
+    @DisplayName("Must create a Book from a Smile body and answer in Smile when asked to")
+    public void createBookAsSmileTest() throws Exception {
+        BookDTO bookDTO = createNewBookDTO();
+        Book savedBook = Book.builder().id(1L).title("Title").author("Author").isbn("001").build();
+        BDDMockito.given(bookService.save(Mockito.any(Book.class))).willReturn(savedBook);
+        ObjectMapper smileMapper = new ObjectMapper(new SmileFactory());
+        MediaType smile = new MediaType("application", "x-jackson-smile");
+
+        MockHttpServletRequestBuilder request = MockMvcRequestBuilders
+                .post(BOOK_API)
+                .contentType(smile)
+                .accept(smile)
+                .content(smileMapper.writeValueAsBytes(bookDTO));
+
+        MvcResult result = mvc.perform(request)
+                .andExpect(status().isCreated())
+                .andExpect(content().contentType(smile))
+                .andExpect(header().string(HttpHeaders.VARY, HttpHeaders.ACCEPT))
+                .andReturn();
+        BookDTO created = smileMapper.readValue(result.getResponse().getContentAsByteArray(), BookDTO.class);
+        assertThat(created.getId()).isEqualTo(1L);
+        assertThat(created.getTitle()).isEqualTo(bookDTO.getTitle());
+        assertThat(created.getIsbn()).isEqualTo(bookDTO.getIsbn());
+    }
+
     @Test
     @DisplayName("Must throw a Validation Error when creating a Book with insufficient data")
     public void createInvalidBookTest() throws Exception {
@@ -150,28 +221,173 @@ public class BookControllerTest {
     }
 
     @Test
-    @DisplayName("Must update an existent Book")
-    public void updateBookTest() throws Exception {
-        long id = 1L;
+    @DisplayName("Must search Books by text")
+    public void searchBooksTest() throws Exception {
+        Book book = Book.builder().id(1L).title("Reading Tolkien").author("Someone").isbn("222").build();
 
-        String json = new ObjectMapper().writeValueAsString(createNewBookDTO());
+        BDDMockito.given(bookService.search(Mockito.eq("tolk"), Mockito.any(Pageable.class)))
+                .willReturn(new PageImpl<>(Collections.singletonList(book), PageRequest.of(0, 10), 1));
+
+        MockHttpServletRequestBuilder request = MockMvcRequestBuilders
+                .get(BOOK_API.concat("?q=tolk&page=0&size=10"))
+                .accept(MediaType.APPLICATION_JSON);
+
+        mvc.perform(request)
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("content", hasSize(1)))
+                .andExpect(jsonPath("content[0].title").value("Reading Tolkien"))
+                .andExpect(jsonPath("totalElements").value(1));
+
+        Mockito.verify(bookService, Mockito.never()).findDTOs(Mockito.any(Book.class), Mockito.any(Pageable.class));
+    }
+
+    @Test
+    @DisplayName("Must export all the Books as CSV, quoting the values that need it")
+    public void exportBooksAsCsvTest() throws Exception {
+        Book first = Book.builder().id(1L).title("My Title").author("My Author").isbn("001").build();
+        Book second = Book.builder().id(2L).title("Title, \"Quoted\"").author("Author").isbn("002").build();
+
+        BDDMockito.willAnswer(invocation -> {
+            Consumer<Book> consumer = invocation.getArgument(0);
+            consumer.accept(first);
+            consumer.accept(second);
+            return null;
+        }).given(bookService).forEachBook(Mockito.any());
+
+        MvcResult result = mvc.perform(MockMvcRequestBuilders.get(BOOK_API.concat("/export")))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("text/csv"))
+                .andExpect(header().string(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"books.csv\""))
+                .andExpect(content().string("id,title,author,isbn\r\n"
+                        + "1,My Title,My Author,001\r\n"
+                        + "2,\"Title, \"\"Quoted\"\"\",Author,002\r\n"));
+    }
+
+    @Test
+    @DisplayName("Must export all the Books as newline-delimited JSON")
+    public void exportBooksAsNdjsonTest() throws Exception {
+        Book book = Book.builder().id(1L).title("My Title").author("My Author").isbn("001").build();
+
+        BDDMockito.willAnswer(invocation -> {
+            invocation.<Consumer<Book>>getArgument(0).accept(book);
+            return null;
+        }).given(bookService).forEachBook(Mockito.any());
+
+        MvcResult result = mvc.perform(MockMvcRequestBuilders.get(BOOK_API.concat("/export?format=ndjson")))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_NDJSON))
+                .andExpect(content().string("{\"id\":1,\"title\":\"My Title\",\"author\":\"My Author\",\"isbn\":\"001\"}\n"));
+    }
+
+    @Test
+    @DisplayName("Must refuse to export the Books in an unknown format")
+    public void exportBooksInUnknownFormatTest() throws Exception {
+        mvc.perform(MockMvcRequestBuilders.get(BOOK_API.concat("/export?format=xml")))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("errors[0]").value("Unknown export format: xml"));
+
+        Mockito.verify(bookService, Mockito.never()).forEachBook(Mockito.any());
+    }
+
+    @Test
+    @DisplayName("Must create Books in bulk reporting the result of each one")
+    public void createBooksInBulkTest() throws Exception {
+        BookDTO newBook = createNewBookDTO();
+        BookDTO registeredBook = BookDTO.builder().title("Title").author("Author").isbn("002").build();
+        BookDTO invalidBook = BookDTO.builder().isbn("003").build();
 
-        Book originalBook = Book.builder().id(id).title("Original Title").author("Original Author").isbn("336").build();
+        BDDMockito.given(bookService.saveAll(Mockito.anyList())).willAnswer(invocation -> {
+            List<Book> books = invocation.getArgument(0);
+            books.get(0).setId(1L);
+            return Collections.singletonList(books.get(0));
+        });
 
-        BDDMockito.given(bookService.getById(id)).willReturn(Optional.of(originalBook));
+        String json = new ObjectMapper().writeValueAsString(Arrays.asList(newBook, registeredBook, invalidBook));
 
-        Book updatedBook = Book.builder().id(originalBook.getId()).title("Updated Title").author("Updated Author").isbn(originalBook.getIsbn()).build();
+        MockHttpServletRequestBuilder request = MockMvcRequestBuilders
+                .post(BOOK_API.concat("/bulk"))
+                .contentType(MediaType.APPLICATION_JSON)
+                .accept(MediaType.APPLICATION_JSON)
+                .content(json);
 
-        BDDMockito.given(bookService.update(originalBook)).willReturn(updatedBook);
+        mvc.perform(request)
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(3)))
+                .andExpect(jsonPath("[0].created").value(true))
+                .andExpect(jsonPath("[0].id").value(1L))
+                .andExpect(jsonPath("[1].created").value(false))
+                .andExpect(jsonPath("[1].errors[0]").value("ISBN already registered!"))
+                .andExpect(jsonPath("[2].created").value(false))
+                .andExpect(jsonPath("[2].isbn").value("003"))
+                .andExpect(jsonPath("[2].errors", hasSize(2)));
+
+        Mockito.verify(bookService).saveAll(Mockito.argThat(books -> books.size() == 2));
+    }
+
+    @Test
+    @DisplayName("Must update an existent Book with a single UPDATE, without loading it first")
+    public void updateBookTest() throws Exception {
+        long id = 1L;
+
+        String json = new ObjectMapper().writeValueAsString(createNewBookDTO());
+
+        BDDMockito.given(bookService.updateDetails(id, createNewBookDTO().getTitle(), createNewBookDTO().getAuthor(), null))
+                .willReturn(1);
+        givenUpdatedBookDTO(id, 1L);
 
         MockHttpServletRequestBuilder request = putBookByIdRequestBuilder(id, json);
 
         mvc.perform(request)
                 .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"1\""))
                 .andExpect(jsonPath("id").value(1L))
-                .andExpect(jsonPath("title").value(updatedBook.getTitle()))
-                .andExpect(jsonPath("author").value(updatedBook.getAuthor()))
-                .andExpect(jsonPath("isbn").value(originalBook.getIsbn()));
+                .andExpect(jsonPath("title").value(createNewBookDTO().getTitle()))
+                .andExpect(jsonPath("author").value(createNewBookDTO().getAuthor()))
+                .andExpect(jsonPath("isbn").value("336"));
+
+        Mockito.verify(bookService, Mockito.never()).getById(Mockito.anyLong());
+        Mockito.verify(bookService, Mockito.never()).update(Mockito.any(Book.class));
+    }
+
+    @Test
+    @DisplayName("Must update a Book whose version matches If-Match, returning the new ETag")
+    public void updateBookIfMatchTest() throws Exception {
+        String json = new ObjectMapper().writeValueAsString(createNewBookDTO());
+
+        BDDMockito.given(bookService.updateDetails(1L, createNewBookDTO().getTitle(), createNewBookDTO().getAuthor(), 2L))
+                .willReturn(1);
+        givenUpdatedBookDTO(1L, 3L);
+
+        mvc.perform(putBookByIdRequestBuilder(1L, json).header(HttpHeaders.IF_MATCH, "\"2\""))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"3\""))
+                .andExpect(jsonPath("title").value(createNewBookDTO().getTitle()));
+
+        Mockito.verify(bookService, Mockito.never()).getById(Mockito.anyLong());
+    }
+
+    @Test
+    @DisplayName("Must refuse to update a Book changed since the ETag given in If-Match")
+    public void updateBookIfMatchFailsTest() throws Exception {
+        String json = new ObjectMapper().writeValueAsString(createNewBookDTO());
+
+        BDDMockito.given(bookService.getVersion(1L)).willReturn(Optional.of(3L));
+
+        mvc.perform(putBookByIdRequestBuilder(1L, json).header(HttpHeaders.IF_MATCH, "\"2\""))
+                .andExpect(status().isPreconditionFailed());
+        mvc.perform(putBookByIdRequestBuilder(1L, json).header(HttpHeaders.IF_MATCH, "W/\"2\""))
+                .andExpect(status().isPreconditionFailed());
+
+        Mockito.verify(bookService).updateDetails(1L, createNewBookDTO().getTitle(), createNewBookDTO().getAuthor(), 2L);
+        Mockito.verify(bookService, Mockito.never()).getDTOById(Mockito.anyLong());
     }
 
     @Test
@@ -179,11 +395,11 @@ public class BookControllerTest {
     public void updateNonexistentBookTest() throws Exception {
         String json = new ObjectMapper().writeValueAsString(createNewBookDTO());
 
-        BDDMockito.given(bookService.getById(Mockito.anyLong())).willReturn(Optional.empty());
+        BDDMockito.given(bookService.getVersion(Mockito.anyLong())).willReturn(Optional.empty());
 
-        MockHttpServletRequestBuilder request = putBookByIdRequestBuilder(1L, json);
-
-        mvc.perform(request)
+        mvc.perform(putBookByIdRequestBuilder(1L, json))
+                .andExpect(status().isNotFound());
+        mvc.perform(putBookByIdRequestBuilder(1L, json).header(HttpHeaders.IF_MATCH, "\"2\""))
                 .andExpect(status().isNotFound());
     }
 
@@ -220,15 +436,10 @@ public class BookControllerTest {
     @Test
     @DisplayName("Must filter Books")
     public void findBooksTest() throws Exception {
-        Book book = Book.builder()
-                .id(1L)
-                .title(createNewBookDTO().getTitle())
-                .author(createNewBookDTO().getAuthor())
-                .isbn(createNewBookDTO().getIsbn())
-                .build();
+        BookDTO book = createNewBookDTO();
 
         BDDMockito
-                .given(bookService.find(Mockito.any(Book.class), Mockito.any(Pageable.class)))
+                .given(bookService.findDTOs(Mockito.any(Book.class), Mockito.any(Pageable.class)))
                 .willReturn(new PageImpl<>(Collections.singletonList(book), PageRequest.of(0, 100), 1));
 
         String queryString = String.format("?title=%s&author=%s&page=0&size=100",
@@ -243,7 +454,86 @@ public class BookControllerTest {
                 .andExpect(jsonPath("content", hasSize(1)))
                 .andExpect(jsonPath("pageable.pageNumber").value(0))
                 .andExpect(jsonPath("pageable.pageSize").value(100))
-                .andExpect(jsonPath("totalElements").value(1));
+                .andExpect(jsonPath("totalElements").value(1))
+                .andExpect(header().string(HttpHeaders.ETAG, startsWith("W/\"")));
+    }
+
+    @Test
+    @DisplayName("Must answer Not Modified when the found Books have the versions of the given ETag")
+    public void findUnmodifiedBooksTest() throws Exception {
+        BookDTO book = BookDTO.builder().id(1L).title("Title").author("Author").isbn("001").version(2L).build();
+
+        BDDMockito
+                .given(bookService.findDTOs(Mockito.any(Book.class), Mockito.any(Pageable.class)))
+                .willReturn(new PageImpl<>(Collections.singletonList(book), PageRequest.of(0, 10), 1));
+
+        String etag = mvc.perform(MockMvcRequestBuilders.get(BOOK_API.concat("?size=10")).accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        mvc.perform(MockMvcRequestBuilders.get(BOOK_API.concat("?size=10"))
+                        .header(HttpHeaders.IF_NONE_MATCH, etag)
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isNotModified())
+                .andExpect(content().string(""));
+
+        book.setVersion(3L);
+
+        mvc.perform(MockMvcRequestBuilders.get(BOOK_API.concat("?size=10"))
+                        .header(HttpHeaders.IF_NONE_MATCH, etag)
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, not(etag)));
+    }
+
+    @Test
+    @DisplayName("Must find Books by cursor without counting them")
+    public void findBooksByCursorTest() throws Exception {
+        Book book = Book.builder().id(1L).title("Title").author("Author").isbn("001").build();
+
+        BDDMockito
+                .given(bookService.findByCursor(Mockito.any(Book.class), Mockito.eq(""), Mockito.any(Pageable.class), Mockito.eq(false)))
+                .willReturn(new KeysetPage<>(Collections.singletonList(book), "next-cursor", null));
+
+        MockHttpServletRequestBuilder request = MockMvcRequestBuilders
+                .get(BOOK_API.concat("?cursor=&size=1&sort=title"))
+                .accept(MediaType.APPLICATION_JSON);
+
+        mvc.perform(request)
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("content", hasSize(1)))
+                .andExpect(jsonPath("content[0].title").value("Title"))
+                .andExpect(jsonPath("nextCursor").value("next-cursor"))
+                .andExpect(jsonPath("hasNext").value(true))
+                .andExpect(jsonPath("totalElements").doesNotExist());
+    }
+
+    @Test
+    @DisplayName("Must find a slice of Books without counting them unless asked to")
+    public void findBooksSliceTest() throws Exception {
+        Book book = Book.builder().id(1L).title("Title").author("Author").isbn("001").build();
+
+        BDDMockito
+                .given(bookService.findSlice(Mockito.any(Book.class), Mockito.any(Pageable.class), Mockito.eq(false)))
+                .willReturn(new SlicePage<>(Collections.singletonList(book), 0, 1, true, null));
+        BDDMockito
+                .given(bookService.findSlice(Mockito.any(Book.class), Mockito.any(Pageable.class), Mockito.eq(true)))
+                .willReturn(new SlicePage<>(Collections.singletonList(book), 0, 1, true, 2L));
+
+        mvc.perform(MockMvcRequestBuilders.get(BOOK_API.concat("?slice=true&title=Title&size=1")).accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("content", hasSize(1)))
+                .andExpect(jsonPath("content[0].title").value("Title"))
+                .andExpect(jsonPath("number").value(0))
+                .andExpect(jsonPath("size").value(1))
+                .andExpect(jsonPath("hasNext").value(true))
+                .andExpect(jsonPath("totalElements").doesNotExist());
+
+        mvc.perform(MockMvcRequestBuilders.get(BOOK_API.concat("?slice=true&count=true&size=1")).accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("totalElements").value(2));
+
+        Mockito.verify(bookService, Mockito.never()).findDTOs(Mockito.any(Book.class), Mockito.any(Pageable.class));
     }
 
     @Test
@@ -251,16 +541,17 @@ public class BookControllerTest {
     public void findLoansByBookTest() throws Exception {
         long id = 1L;
 
-        Book book = Book.builder().id(id).author("Author").title("Title").isbn("123").build();
+        BookDTO book = BookDTO.builder().id(id).author("Author").title("Title").isbn("123").build();
 
-        Loan loan = LoanServiceTest.createValidLoan(book);
+        LoanDTO loan = LoanDTO.builder().id(1L).isbn("123").customer("Andrew").customerEmail("andrew@email.com")
+                .bookDTO(book).build();
 
         BDDMockito
-                .given(bookService.getById(Mockito.anyLong()))
+                .given(bookService.getDTOById(id))
                 .willReturn(Optional.of(book));
 
         BDDMockito
-                .given(loanService.getLoansByBook(Mockito.any(Book.class), Mockito.any(Pageable.class)))
+                .given(loanService.getLoanDTOsByBook(Mockito.eq(id), Mockito.any(Pageable.class)))
                 .willReturn(new PageImpl<>(Collections.singletonList(loan), PageRequest.of(0, 100), 1));
 
         MockHttpServletRequestBuilder request = MockMvcRequestBuilders
@@ -272,29 +563,79 @@ public class BookControllerTest {
                 .andExpect(jsonPath("content", hasSize(1)))
                 .andExpect(jsonPath("pageable.pageNumber").value(0))
                 .andExpect(jsonPath("pageable.pageSize").value(100))
+                .andExpect(jsonPath("content[0].bookDTO.title").value("Title"))
+                .andExpect(jsonPath("content[0].version").doesNotExist())
                 .andExpect(jsonPath("totalElements").value(1));
     }
 
+    @Test
+    @DisplayName("Must return a slice of the Loans of a Book without counting them")
+    public void findLoansByBookSliceTest() throws Exception {
+        Book book = Book.builder().id(1L).author("Author").title("Title").isbn("123").build();
+
+        Loan loan = LoanServiceTest.createValidLoan(book);
+
+        BDDMockito
+                .given(bookService.getById(1L))
+                .willReturn(Optional.of(book));
+
+        BDDMockito
+                .given(loanService.getLoansByBookSlice(Mockito.eq(book), Mockito.any(Pageable.class), Mockito.eq(false)))
+                .willReturn(new SlicePage<>(Collections.singletonList(loan), 0, 100, false, null));
+
+        mvc.perform(MockMvcRequestBuilders.get(BOOK_API.concat("/1/loans?slice=true&size=100")).accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("content", hasSize(1)))
+                .andExpect(jsonPath("content[0].isbn").value("123"))
+                .andExpect(jsonPath("hasNext").value(false))
+                .andExpect(jsonPath("totalElements").doesNotExist());
+    }
+
     @Test
     @DisplayName("Must return 404 when searching the Loans of a nonexistent Book")
     public void findLoansByNonexistentBookTest() throws Exception {
         long id = 1L;
 
-        Loan loan = Loan.builder().id(id).build();
-
         BDDMockito
-                .given(bookService.getById(Mockito.anyLong()))
+                .given(bookService.getDTOById(Mockito.anyLong()))
                 .willReturn(Optional.empty());
 
-        BDDMockito
-                .given(loanService.getLoansByBook(Mockito.any(Book.class), Mockito.any(Pageable.class)))
-                .willReturn(new PageImpl<>(Collections.singletonList(loan), PageRequest.of(0, 100), 0));
-
         MockHttpServletRequestBuilder request = MockMvcRequestBuilders
                 .get(BOOK_API.concat("/" + id + "/loans?size=100"))
                 .accept(MediaType.APPLICATION_JSON);
 
         mvc.perform(request).andExpect(status().isNotFound());
+
+        Mockito.verify(loanService, Mockito.never()).getLoanDTOsByBook(Mockito.anyLong(), Mockito.any(Pageable.class));
+    }
+
+    @Test
+    @DisplayName("Must tell whether a Book is available from the index of loaned Books")
+    public void bookAvailabilityTest() throws Exception {
+        BDDMockito.given(loanService.isLoaned(1L)).willReturn(true);
+
+        mvc.perform(MockMvcRequestBuilders.get(BOOK_API.concat("/1/availability")).accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("id").value(1))
+                .andExpect(jsonPath("available").value(false));
+
+        mvc.perform(MockMvcRequestBuilders.get(BOOK_API.concat("/availability?ids=1,2")).accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(2)))
+                .andExpect(jsonPath("[0].available").value(false))
+                .andExpect(jsonPath("[1].id").value(2))
+                .andExpect(jsonPath("[1].available").value(true));
+
+        Mockito.verify(bookService, Mockito.never()).getById(Mockito.anyLong());
+    }
+
+    @Test
+    @DisplayName("Must refuse to tell the availability of too many Books at once")
+    public void tooManyBooksAvailabilityTest() throws Exception {
+        String ids = LongStream.rangeClosed(1, 1001).mapToObj(String::valueOf).collect(Collectors.joining(","));
+
+        mvc.perform(MockMvcRequestBuilders.get(BOOK_API.concat("/availability?ids=" + ids)).accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isBadRequest());
     }
 
     protected static BookDTO createNewBookDTO() {
@@ -309,6 +650,12 @@ public class BookControllerTest {
                 .content(json);
     }
 
+    private void givenUpdatedBookDTO(long id, long version) {
+        BDDMockito.given(bookService.getDTOById(id)).willReturn(Optional.of(new BookDTO(
+                id, createNewBookDTO().getTitle(), createNewBookDTO().getAuthor(), "336", version
+        )));
+    }
+
     private MockHttpServletRequestBuilder putBookByIdRequestBuilder(long id, String json) {
         return MockMvcRequestBuilders
                 .put(BOOK_API.concat("/" + id))
@@ -0,0 +1,112 @@
+package com.ndrewcoding.libraryapi.api.controller;
+
+import com.ndrewcoding.libraryapi.api.model.entity.Book;
+import com.ndrewcoding.libraryapi.api.model.entity.Loan;
+import com.ndrewcoding.libraryapi.api.model.repository.BookRepository;
+import com.ndrewcoding.libraryapi.api.model.repository.LoanRepository;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+
+import javax.persistence.EntityManagerFactory;
+import java.time.LocalDate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.hasSize;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@ExtendWith(SpringExtension.class)
+@ActiveProfiles("test")
+@SpringBootTest
+@AutoConfigureMockMvc
+public class LoanControllerQueryCountTest {
+
+    @Autowired
+    MockMvc mvc;
+
+    @Autowired
+    BookRepository bookRepository;
+
+    @Autowired
+    LoanRepository loanRepository;
+
+    @Autowired
+    EntityManagerFactory entityManagerFactory;
+
+    Statistics statistics;
+
+    @BeforeEach
+    public void setUp() {
+        for (int i = 1; i <= 3; i++) {
+            Book book = bookRepository.save(Book.builder().title("Title " + i).author("Author").isbn("isbn-" + i).build());
+            loanRepository.save(Loan.builder().book(book).customer("Andrew").customerEmail("andrew@email.com")
+                    .loanDate(LocalDate.now()).build());
+        }
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        loanRepository.deleteAll();
+        bookRepository.deleteAll();
+    }
+
+    @Test
+    @DisplayName("Must load a page of Loans and their Books with one select and one count")
+    public void findLoansIssuesSelectAndCountTest() throws Exception {
+        mvc.perform(MockMvcRequestBuilders
+                        .get(LoanControllerTest.LOAN_API.concat("?customer=Andrew&page=0&size=2"))
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("content", hasSize(2)))
+                .andExpect(jsonPath("content[0].bookDTO.isbn").isNotEmpty())
+                .andExpect(jsonPath("content[1].bookDTO.isbn").isNotEmpty())
+                .andExpect(jsonPath("totalElements").value(3));
+
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(2);
+        assertThat(statistics.getEntityLoadCount()).as("selected straight into DTOs").isZero();
+    }
+
+    @Test
+    @DisplayName("Must load a complete page of Loans and their Books with a single statement")
+    public void findLoansIssuesSingleSelectTest() throws Exception {
+        mvc.perform(MockMvcRequestBuilders
+                        .get(LoanControllerTest.LOAN_API.concat("?customer=Andrew&page=0&size=10"))
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("content", hasSize(3)))
+                .andExpect(jsonPath("totalElements").value(3));
+
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Must read a Book and a page of its Loans without loading any entity")
+    public void findLoansByBookLoadsNoEntityTest() throws Exception {
+        Long bookId = bookRepository.findByIsbn("isbn-1").map(Book::getId).orElseThrow(IllegalStateException::new);
+        statistics.clear();
+
+        mvc.perform(MockMvcRequestBuilders
+                        .get(BookControllerTest.BOOK_API.concat("/" + bookId + "/loans?page=0&size=10"))
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("content", hasSize(1)))
+                .andExpect(jsonPath("content[0].bookDTO.isbn").value("isbn-1"));
+
+        assertThat(statistics.getEntityLoadCount()).isZero();
+    }
+}
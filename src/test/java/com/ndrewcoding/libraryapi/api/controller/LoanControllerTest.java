@@ -1,13 +1,19 @@
 package com.ndrewcoding.libraryapi.api.controller;
 
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
 import com.ndrewcoding.libraryapi.api.dto.BookDTO;
+import com.ndrewcoding.libraryapi.api.dto.BulkLoanDTO;
 import com.ndrewcoding.libraryapi.api.dto.LoanDTO;
 import com.ndrewcoding.libraryapi.api.dto.LoanFilterDTO;
 import com.ndrewcoding.libraryapi.api.dto.ReturnedLoanDTO;
 import com.ndrewcoding.libraryapi.api.exception.BusinessException;
+import com.ndrewcoding.libraryapi.api.mapper.LoanMapper;
 import com.ndrewcoding.libraryapi.api.model.entity.Book;
 import com.ndrewcoding.libraryapi.api.model.entity.Loan;
+import com.ndrewcoding.libraryapi.api.pagination.KeysetPage;
+import com.ndrewcoding.libraryapi.api.pagination.SlicePage;
 import com.ndrewcoding.libraryapi.api.service.BookService;
 import com.ndrewcoding.libraryapi.api.service.LoanService;
 import com.ndrewcoding.libraryapi.api.service.LoanServiceTest;
@@ -24,18 +30,25 @@ import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
 import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
 
 import java.time.LocalDate;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
 
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.hamcrest.Matchers.hasSize;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
 @ExtendWith(SpringExtension.class)
@@ -127,16 +140,30 @@ public class LoanControllerTest {
 
         long id = 1L;
 
-        Loan loan = Loan.builder().id(id).build();
-
-        BDDMockito.given(loanService.getById(id)).willReturn(Optional.of(loan));
+        BDDMockito.given(loanService.updateReturned(id, true, null)).willReturn(1);
 
         MockHttpServletRequestBuilder request = patchLoanByIdRequestBuilder(id, json);
 
         mvc.perform(request)
                 .andExpect(status().isOk());
 
-        Mockito.verify(loanService, Mockito.times(1)).update(loan);
+        Mockito.verify(loanService, Mockito.times(1)).updateReturned(id, true, null);
+        Mockito.verify(loanService, Mockito.never()).getById(Mockito.anyLong());
+    }
+
+    @Test
+    @DisplayName("Must refuse to return a Book whose Loan changed since the ETag given in If-Match")
+    public void returnBookIfMatchFailsTest() throws Exception {
+        String json = new ObjectMapper().writeValueAsString(ReturnedLoanDTO.builder().returned(true).build());
+
+        BDDMockito.given(loanService.updateReturned(1L, true, 2L)).willReturn(0);
+        BDDMockito.given(loanService.getById(1L)).willReturn(Optional.of(Loan.builder().id(1L).version(3L).build()));
+
+        mvc.perform(patchLoanByIdRequestBuilder(1L, json).header(HttpHeaders.IF_MATCH, "\"2\""))
+                .andExpect(status().isPreconditionFailed());
+
+        mvc.perform(patchLoanByIdRequestBuilder(1L, json).header(HttpHeaders.IF_MATCH, "W/\"2\""))
+                .andExpect(status().isPreconditionFailed());
     }
 
     @Test
@@ -168,8 +195,8 @@ public class LoanControllerTest {
         loan.setId(genericId);
 
         BDDMockito
-                .given(loanService.find(Mockito.any(LoanFilterDTO.class), Mockito.any(Pageable.class)))
-                .willReturn(new PageImpl<>(Collections.singletonList(loan), PageRequest.of(0, 10), 1));
+                .given(loanService.findDTOs(Mockito.any(LoanFilterDTO.class), Mockito.any(Pageable.class)))
+                .willReturn(new PageImpl<>(Collections.singletonList(LoanMapper.toDTO(loan)), PageRequest.of(0, 10), 1));
 
         String queryString = String.format("?isbn=%s&customer=%s&page=0&size=10",
                 loan.getBook().getIsbn(), loan.getCustomer());
@@ -181,19 +208,205 @@ public class LoanControllerTest {
         mvc.perform(request)
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("content", hasSize(1)))
+                .andExpect(jsonPath("content[0].id").value(genericId))
+                .andExpect(jsonPath("content[0].bookDTO.isbn").value("123"))
                 .andExpect(jsonPath("pageable.pageNumber").value(0))
                 .andExpect(jsonPath("pageable.pageSize").value(10))
                 .andExpect(jsonPath("totalElements").value(1));
     }
 
+    @Test
+    @DisplayName("Must filter Loans as CBOR when asked to and as JSON by default")
+    public void findLoansAsCborTest() throws Exception {
+        Book book = Book.builder().id(1L).isbn("123").build();
+        Loan loan = LoanServiceTest.createValidLoan(book);
+        loan.setId(1L);
+        BDDMockito
+                .given(loanService.findDTOs(Mockito.any(LoanFilterDTO.class), Mockito.any(Pageable.class)))
+                .willReturn(new PageImpl<>(Collections.singletonList(LoanMapper.toDTO(loan)), PageRequest.of(0, 10), 1));
+
+        MvcResult result = mvc.perform(MockMvcRequestBuilders.get(LOAN_API).accept(MediaType.APPLICATION_CBOR))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_CBOR))
+                .andExpect(header().string(HttpHeaders.VARY, HttpHeaders.ACCEPT))
+                .andReturn();
+        JsonNode page = new ObjectMapper(new CBORFactory()).readTree(result.getResponse().getContentAsByteArray());
+        assertThat(page.path("content").get(0).path("id").asLong()).isEqualTo(1L);
+        assertThat(page.path("content").get(0).path("bookDTO").path("isbn").asText()).isEqualTo("123");
+        assertThat(page.path("totalElements").asLong()).isEqualTo(1L);
+
+        mvc.perform(MockMvcRequestBuilders.get(LOAN_API))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_JSON))
+                .andExpect(jsonPath("content[0].id").value(1L));
+    }
+
+    @Test
+    @DisplayName("Must find Loans by cursor, counting them when asked to")
+    public void findLoansByCursorTest() throws Exception {
+        Book book = Book.builder().id(1L).isbn("123").build();
+
+        Loan loan = LoanServiceTest.createValidLoan(book);
+
+        loan.setId(1L);
+
+        BDDMockito
+                .given(loanService.findByCursor(Mockito.any(LoanFilterDTO.class), Mockito.eq("abc"), Mockito.any(Pageable.class), Mockito.eq(true)))
+                .willReturn(new KeysetPage<>(Collections.singletonList(loan), null, 1L));
+
+        MockHttpServletRequestBuilder request = MockMvcRequestBuilders
+                .get(LOAN_API.concat("?isbn=123&cursor=abc&count=true"))
+                .accept(MediaType.APPLICATION_JSON);
+
+        mvc.perform(request)
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("content", hasSize(1)))
+                .andExpect(jsonPath("content[0].bookDTO.isbn").value("123"))
+                .andExpect(jsonPath("hasNext").value(false))
+                .andExpect(jsonPath("nextCursor").doesNotExist())
+                .andExpect(jsonPath("totalElements").value(1));
+    }
+
+    @Test
+    @DisplayName("Must find a slice of Loans, counting them when asked to")
+    public void findLoansSliceTest() throws Exception {
+        Book book = Book.builder().id(1L).isbn("123").build();
+
+        Loan loan = LoanServiceTest.createValidLoan(book);
+
+        loan.setId(1L);
+
+        BDDMockito
+                .given(loanService.findSlice(Mockito.any(LoanFilterDTO.class), Mockito.any(Pageable.class), Mockito.eq(true)))
+                .willReturn(new SlicePage<>(Collections.singletonList(loan), 0, 10, true, 11L));
+
+        MockHttpServletRequestBuilder request = MockMvcRequestBuilders
+                .get(LOAN_API.concat("?isbn=123&slice=true&count=true&size=10"))
+                .accept(MediaType.APPLICATION_JSON);
+
+        mvc.perform(request)
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("content", hasSize(1)))
+                .andExpect(jsonPath("content[0].bookDTO.isbn").value("123"))
+                .andExpect(jsonPath("hasNext").value(true))
+                .andExpect(jsonPath("totalElements").value(11));
+
+        Mockito.verify(loanService, Mockito.never()).findDTOs(Mockito.any(LoanFilterDTO.class), Mockito.any(Pageable.class));
+    }
+
+    @Test
+    @DisplayName("Must stream the filtered Loans as newline-delimited JSON")
+    public void streamLoansTest() throws Exception {
+        Loan first = LoanServiceTest.createValidLoan(Book.builder().id(1L).isbn("123").build());
+        first.setId(1L);
+        Loan second = LoanServiceTest.createValidLoan(Book.builder().id(2L).isbn("456").build());
+        second.setId(2L);
+
+        BDDMockito.willAnswer(invocation -> {
+            Consumer<Loan> consumer = invocation.getArgument(1);
+            consumer.accept(first);
+            consumer.accept(second);
+            return null;
+        }).given(loanService).forEachLoan(Mockito.any(LoanFilterDTO.class), Mockito.any());
+
+        MvcResult result = mvc.perform(MockMvcRequestBuilders.get(LOAN_API.concat("/stream?customer=Andrew")))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        String[] lines = mvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_NDJSON))
+                .andReturn().getResponse().getContentAsString().split("\n");
+
+        assertThat(lines).hasSize(2);
+        assertThat(new ObjectMapper().readValue(lines[0], LoanDTO.class).getIsbn()).isEqualTo("123");
+        assertThat(new ObjectMapper().readValue(lines[1], LoanDTO.class).getId()).isEqualTo(2L);
+    }
+
+    @Test
+    @DisplayName("Must export all the Loans as CSV")
+    public void exportLoansAsCsvTest() throws Exception {
+        Loan loan = LoanServiceTest.createValidLoan(Book.builder().id(1L).title("My Title").author("My Author").isbn("123").build());
+        loan.setId(1L);
+
+        BDDMockito.willAnswer(invocation -> {
+            invocation.<Consumer<Loan>>getArgument(0).accept(loan);
+            return null;
+        }).given(loanService).forEachLoan(Mockito.<Consumer<Loan>>any());
+
+        MvcResult result = mvc.perform(MockMvcRequestBuilders.get(LOAN_API.concat("/export")))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("text/csv"))
+                .andExpect(header().string(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"loans.csv\""))
+                .andExpect(content().string("id,isbn,customer,customerEmail,title,author\r\n"
+                        + "1,123,Andrew,andrew@email.com,My Title,My Author\r\n"));
+    }
+
+    @Test
+    @DisplayName("Must create Loans in bulk reporting the result of each one")
+    public void createLoansInBulkTest() throws Exception {
+        Book loanableBook = Book.builder().id(1L).isbn("123").build();
+        Book loanedBook = Book.builder().id(2L).isbn("456").build();
+        BulkLoanDTO bulkLoanDTO = BulkLoanDTO.builder().customer("Andrew").customerEmail("andrew@email.com")
+                .isbns(Arrays.asList("123", "456", "789")).build();
+
+        BDDMockito.given(bookService.getByIsbns(bulkLoanDTO.getIsbns()))
+                .willReturn(Arrays.asList(loanableBook, loanedBook));
+        BDDMockito.given(loanService.saveAll(Mockito.anyList())).willAnswer(invocation -> {
+            List<Loan> loans = invocation.getArgument(0);
+            loans.get(0).setId(10L);
+            return Collections.singletonList(loans.get(0));
+        });
+
+        String json = new ObjectMapper().writeValueAsString(bulkLoanDTO);
+
+        mvc.perform(postLoanRequestBuilder(LOAN_API.concat("/bulk"), json))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(3)))
+                .andExpect(jsonPath("[0].succeeded").value(true))
+                .andExpect(jsonPath("[0].id").value(10L))
+                .andExpect(jsonPath("[1].succeeded").value(false))
+                .andExpect(jsonPath("[1].errors[0]").value("Book already loaned"))
+                .andExpect(jsonPath("[2].succeeded").value(false))
+                .andExpect(jsonPath("[2].errors[0]").value("There is no Book with this ISBN."));
+
+        Mockito.verify(loanService).saveAll(Mockito.argThat(loans -> loans.size() == 2));
+    }
+
+    @Test
+    @DisplayName("Must return Books in bulk reporting the Loans that do not exist")
+    public void returnBooksInBulkTest() throws Exception {
+        BDDMockito.given(loanService.returnAll(Arrays.asList(1L, 2L))).willReturn(Collections.singleton(1L));
+
+        String json = new ObjectMapper().writeValueAsString(Arrays.asList(1L, 2L));
+
+        mvc.perform(postLoanRequestBuilder(LOAN_API.concat("/bulk/returns"), json))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("[0].id").value(1L))
+                .andExpect(jsonPath("[0].succeeded").value(true))
+                .andExpect(jsonPath("[1].id").value(2L))
+                .andExpect(jsonPath("[1].succeeded").value(false))
+                .andExpect(jsonPath("[1].errors[0]").value("There is no Loan for this Book"));
+
+        Mockito.verify(loanService, Mockito.never()).update(Mockito.any(Loan.class));
+    }
+
     private LoanDTO createNewLoanDTO() {
         BookDTO bookDTO = BookControllerTest.createNewBookDTO();
         return LoanDTO.builder().id(1L).isbn("123").customer("Andrew").customerEmail("andrew@email.com").bookDTO(bookDTO).build();
     }
 
     private MockHttpServletRequestBuilder postLoanRequestBuilder(String json) {
+        return postLoanRequestBuilder(LOAN_API, json);
+    }
+
+    private MockHttpServletRequestBuilder postLoanRequestBuilder(String url, String json) {
         return MockMvcRequestBuilders
-                .post(LOAN_API)
+                .post(url)
                 .contentType(MediaType.APPLICATION_JSON)
                 .accept(MediaType.APPLICATION_JSON)
                 .content(json);
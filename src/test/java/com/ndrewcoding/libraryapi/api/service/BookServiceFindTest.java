@@ -0,0 +1,53 @@
+package com.ndrewcoding.libraryapi.api.service;
+
+import com.ndrewcoding.libraryapi.api.model.entity.Book;
+import com.ndrewcoding.libraryapi.api.model.repository.BookRepository;
+import com.ndrewcoding.libraryapi.api.service.impl.BookServiceImpl;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@ExtendWith(SpringExtension.class)
+@DataJpaTest(properties = "application.second-level-cache.enabled=false")
+@ActiveProfiles("test")
+public class BookServiceFindTest {
+
+    @Autowired
+    TestEntityManager testEntityManager;
+
+    @Autowired
+    BookRepository bookRepository;
+
+    BookService bookService;
+
+    @BeforeEach
+    public void setUp() {
+        this.bookService = new BookServiceImpl(bookRepository, testEntityManager.getEntityManager());
+    }
+
+    @Test
+    @DisplayName("Must still find a Book by its properties after it has been updated")
+    public void findUpdatedBookTest() {
+        Book book = testEntityManager.persistAndFlush(
+                Book.builder().title("My Title").author("My Author").isbn("123").build());
+        book.setTitle("My New Title");
+        bookService.update(book);
+        testEntityManager.flush();
+        testEntityManager.clear();
+
+        Page<Book> result = bookService.find(Book.builder().author("my author").build(), PageRequest.of(0, 10));
+
+        assertThat(result.getContent()).extracting(Book::getId).containsExactly(book.getId());
+        assertThat(result.getContent().get(0).getVersion()).isEqualTo(1);
+    }
+}
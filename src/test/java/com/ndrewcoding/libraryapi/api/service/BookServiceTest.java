@@ -3,6 +3,9 @@ package com.ndrewcoding.libraryapi.api.service;
 import com.ndrewcoding.libraryapi.api.exception.BusinessException;
 import com.ndrewcoding.libraryapi.api.model.entity.Book;
 import com.ndrewcoding.libraryapi.api.model.repository.BookRepository;
+import com.ndrewcoding.libraryapi.api.pagination.KeysetCursor;
+import com.ndrewcoding.libraryapi.api.pagination.KeysetPage;
+import com.ndrewcoding.libraryapi.api.pagination.SlicePage;
 import com.ndrewcoding.libraryapi.api.service.impl.BookServiceImpl;
 import org.assertj.core.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
@@ -12,12 +15,19 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.ArgumentMatchers;
 import org.mockito.Mockito;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.data.domain.Example;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.domain.Sort;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
@@ -33,9 +43,12 @@ public class BookServiceTest {
     @MockBean
     BookRepository bookRepository;
 
+    @MockBean
+    EntityManager entityManager;
+
     @BeforeEach
     public void setUp() {
-        this.bookService = new BookServiceImpl(bookRepository);
+        this.bookService = new BookServiceImpl(bookRepository, entityManager);
     }
 
     @Test
@@ -80,6 +93,34 @@ public class BookServiceTest {
         Mockito.verify(bookRepository, Mockito.never()).save(book);
     }
 
+    @Test
+    @DisplayName("Must save only the Books whose ISBN is neither registered nor repeated")
+    public void saveAllBooksSkipsTakenIsbnsTest() {
+        Book newBook = Book.builder().title("New").author("Author").isbn("001").build();
+        Book registeredBook = Book.builder().title("Registered").author("Author").isbn("002").build();
+        Book repeatedBook = Book.builder().title("Repeated").author("Author").isbn("001").build();
+
+        Mockito.when(bookRepository.findIsbnsByIsbnIn(Arrays.asList("001", "002")))
+                .thenReturn(Collections.singleton("002"));
+        Mockito.when(bookRepository.saveAll(Collections.singletonList(newBook)))
+                .thenReturn(Collections.singletonList(newBook));
+
+        List<Book> savedBooks = bookService.saveAll(Arrays.asList(newBook, registeredBook, repeatedBook));
+
+        assertThat(savedBooks).containsExactly(newBook);
+        Mockito.verify(bookRepository).findIsbnsByIsbnIn(Mockito.anyCollection());
+        Mockito.verify(bookRepository, Mockito.never()).existsByIsbn(Mockito.anyString());
+    }
+
+    @Test
+    @DisplayName("Must not search the index for a blank text")
+    public void searchBlankTextTest() {
+        Page<Book> result = bookService.search(" ", PageRequest.of(0, 10));
+
+        assertThat(result).isEmpty();
+        Mockito.verify(bookRepository, Mockito.never()).search(Mockito.anyString(), Mockito.any());
+    }
+
     @Test
     @DisplayName("Must return a Book with the given id")
     public void getBookByIdTest() {
@@ -191,6 +232,22 @@ public class BookServiceTest {
         assertThat(finalBook.getLoans()).isEqualTo(updatingBook.getLoans());
     }
 
+    @Test
+    @DisplayName("Must update the details of a Book in one statement, telling whether its version still matched")
+    public void updateBookDetailsTest() {
+        Mockito.when(bookRepository.updateDetails(1L, "Title", "Author", 0L)).thenReturn(1, 0);
+
+        assertThat(bookService.updateDetails(1L, "Title", "Author", 0L)).isEqualTo(1);
+        assertThat(bookService.updateDetails(1L, "Title", "Author", 0L)).isZero();
+
+        Throwable exception = Assertions.catchThrowable(() -> bookService.updateDetails(null, "Title", "Author", null));
+
+        assertThat(exception)
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("There is no Book with this ID.");
+        Mockito.verify(bookRepository, Mockito.never()).save(Mockito.any(Book.class));
+    }
+
     @Test
     @DisplayName("Must throw IllegalArgumentException when updating a Book with invalid ID")
     public void updateInvalidBookTest() {
@@ -245,6 +302,83 @@ public class BookServiceTest {
         assertThat(booksResult.getPageable().getPageSize()).isEqualTo(pageSize);
     }
 
+    @Test
+    @DisplayName("Must find Books by cursor counting them only when asked to")
+    public void findBooksByCursorTest() {
+        Book book = createValidBook();
+
+        KeysetPage<Book> page = new KeysetPage<>(Collections.singletonList(book), null, null);
+
+        Mockito
+                .when(bookRepository.findByKeyset(Mockito.any(Book.class), Mockito.any(KeysetCursor.class), Mockito.eq(10)))
+                .thenReturn(page);
+
+        Mockito.when(bookRepository.countMatching(book)).thenReturn(1L);
+
+        KeysetPage<Book> uncounted = bookService.findByCursor(book, "", PageRequest.of(0, 10), false);
+
+        assertThat(uncounted.getContent()).containsExactly(book);
+        assertThat(uncounted.getTotalElements()).isNull();
+        Mockito.verify(bookRepository, Mockito.never()).countMatching(Mockito.any(Book.class));
+
+        KeysetPage<Book> counted = bookService.findByCursor(book, "", PageRequest.of(0, 10), true);
+
+        assertThat(counted.getTotalElements()).isEqualTo(1L);
+    }
+
+    @Test
+    @DisplayName("Must find a slice of Books counting them only when asked to")
+    public void findBooksSliceTest() {
+        Book book = createValidBook();
+        PageRequest pageRequest = PageRequest.of(0, 10);
+
+        Mockito
+                .when(bookRepository.findSlice(book, pageRequest))
+                .thenReturn(new SliceImpl<>(Collections.singletonList(book), pageRequest, true));
+
+        Mockito.when(bookRepository.countMatching(book)).thenReturn(11L);
+
+        SlicePage<Book> uncounted = bookService.findSlice(book, pageRequest, false);
+
+        assertThat(uncounted.getContent()).containsExactly(book);
+        assertThat(uncounted.hasNext()).isTrue();
+        assertThat(uncounted.getTotalElements()).isNull();
+        Mockito.verify(bookRepository, Mockito.never()).countMatching(Mockito.any(Book.class));
+        Mockito.verify(bookRepository, Mockito.never()).findAll(ArgumentMatchers.<Example<Book>>any(), Mockito.any(Pageable.class));
+
+        SlicePage<Book> counted = bookService.findSlice(book, pageRequest, true);
+
+        assertThat(counted.getTotalElements()).isEqualTo(11L);
+    }
+
+    @Test
+    @DisplayName("Must throw a Business Exception when paging Books by cursor on an unsupported property")
+    public void findBooksByCursorOnUnsupportedPropertyTest() {
+        Throwable exception = Assertions.catchThrowable(() ->
+                bookService.findByCursor(new Book(), "", PageRequest.of(0, 10, Sort.by("loans")), false));
+
+        assertThat(exception)
+                .isInstanceOf(BusinessException.class)
+                .hasMessage("Cannot paginate by cursor sorting by 'loans'.");
+    }
+
+    @Test
+    @DisplayName("Must hand every Book over, clearing the persistence context as it goes")
+    public void forEachBookTest() {
+        List<Book> books = new ArrayList<>();
+        for (long id = 1; id <= 1200; id++) {
+            books.add(Book.builder().id(id).title("My Book").author("My Author").isbn("isbn-" + id).build());
+        }
+        Mockito.when(bookRepository.streamAll()).thenReturn(books.stream());
+
+        List<Book> handedOver = new ArrayList<>();
+
+        bookService.forEachBook(handedOver::add);
+
+        assertThat(handedOver).isEqualTo(books);
+        Mockito.verify(entityManager, Mockito.times(2)).clear();
+    }
+
     protected static Book createValidBook() {
         return Book.builder().title("My Book").author("My Author").isbn("001").loans(Collections.emptyList()).build();
     }
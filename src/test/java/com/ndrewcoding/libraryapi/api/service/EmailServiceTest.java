@@ -1,35 +1,75 @@
 package com.ndrewcoding.libraryapi.api.service;
 
+import com.ndrewcoding.libraryapi.api.config.MailDispatchProperties;
 import com.ndrewcoding.libraryapi.api.service.impl.EmailServiceImpl;
+import com.ndrewcoding.libraryapi.api.service.impl.MailDispatcher;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentMatchers;
 import org.mockito.Mockito;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.mail.MailSendException;
 import org.springframework.mail.SimpleMailMessage;
 import org.springframework.mail.javamail.JavaMailSender;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 
+import javax.mail.MessagingException;
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
 
 @ExtendWith(SpringExtension.class)
 @ActiveProfiles("test")
 public class EmailServiceTest {
 
     EmailService emailService;
+    MailDispatcher mailDispatcher;
     SimpleMailMessage mailMessage;
 
     @MockBean
     JavaMailSender javaMailSender;
 
+    List<SimpleMailMessage> sentMessages;
+    SimpleMeterRegistry meterRegistry;
+
     @BeforeEach
     public void setUp() {
-        this.emailService = new EmailServiceImpl(javaMailSender);
+        MailDispatchProperties properties = new MailDispatchProperties();
+        properties.setRecipientsPerMessage(2);
+        properties.setInitialBackoff(Duration.ofMillis(1));
+
+        this.sentMessages = new CopyOnWriteArrayList<>();
+        Mockito.doAnswer(invocation -> {
+            for (Object message : invocation.getArguments()) {
+                sentMessages.add((SimpleMailMessage) message);
+            }
+            return null;
+        }).when(javaMailSender).send(ArgumentMatchers.<SimpleMailMessage[]>any());
+
+        this.meterRegistry = new SimpleMeterRegistry();
+        this.mailDispatcher = new MailDispatcher(javaMailSender, properties, meterRegistry);
+        this.mailDispatcher.start();
+        this.emailService = new EmailServiceImpl(mailDispatcher, properties);
+    }
+
+    @AfterEach
+    public void tearDown() throws InterruptedException {
+        mailDispatcher.stop();
     }
 
     @Test
@@ -64,4 +104,107 @@ public class EmailServiceTest {
         assertThat(mailMessage.getText()).isEqualTo(text);
         assertThat(mailMessage.getTo()).isEqualTo(mails);
     }
+
+    @Test
+    @DisplayName("Must split the recipients into mails of at most the configured size")
+    public void sendMailsInChunksTest() throws InterruptedException {
+        List<String> mailsList = Arrays.asList("a@email.com", "b@email.com", "c@email.com", "d@email.com", "e@email.com");
+
+        emailService.sendMails("Overdue!", mailsList);
+
+        awaitSentMessages(3);
+
+        assertThat(sentMessages)
+                .extracting(SimpleMailMessage::getTo)
+                .containsExactlyInAnyOrder(
+                        new String[]{"a@email.com", "b@email.com"},
+                        new String[]{"c@email.com", "d@email.com"},
+                        new String[]{"e@email.com"}
+                );
+        assertThat(sentMessages).extracting(SimpleMailMessage::getText).containsOnly("Overdue!");
+    }
+
+    @Test
+    @DisplayName("Must retry the mails that could not be sent")
+    public void retryFailedMailsTest() throws InterruptedException {
+        AtomicInteger attempts = new AtomicInteger();
+        Mockito.doAnswer(invocation -> {
+            if (attempts.incrementAndGet() == 1) {
+                throw new MailSendException("Mail server connection failed");
+            }
+            for (Object message : invocation.getArguments()) {
+                sentMessages.add((SimpleMailMessage) message);
+            }
+            return null;
+        }).when(javaMailSender).send(ArgumentMatchers.<SimpleMailMessage[]>any());
+
+        emailService.sendMails("Overdue!", Collections.singletonList("a@email.com"));
+
+        awaitSentMessages(1);
+
+        assertThat(attempts.get()).isEqualTo(2);
+        assertThat(sentMessages.get(0).getTo()).containsExactly("a@email.com");
+        assertThat(meterRegistry.get("library.mail.dispatch.send").tag("outcome", "failure").timer().count()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Must count the mails given up after all attempts")
+    public void countFailedMailsTest() throws InterruptedException {
+        Mockito.doThrow(new MailSendException("Mail server connection failed"))
+                .when(javaMailSender).send(ArgumentMatchers.<SimpleMailMessage[]>any());
+
+        emailService.sendMails("Overdue!", Arrays.asList("a@email.com", "b@email.com", "c@email.com"));
+
+        long deadline = System.currentTimeMillis() + 2000;
+        while (mailCount("failed") < 2 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(mailCount("failed")).isEqualTo(2);
+        assertThat(mailCount("sent")).isZero();
+    }
+
+    @Test
+    @DisplayName("Must complete the delivery once every mail was sent")
+    public void completeDeliveryTest() throws Exception {
+        CompletableFuture<Void> delivery = emailService.sendMails("Overdue!", Arrays.asList("a@email.com", "b@email.com", "c@email.com"));
+
+        delivery.get(2, TimeUnit.SECONDS);
+
+        assertThat(sentMessages).hasSize(2);
+    }
+
+    @Test
+    @DisplayName("Must fail the delivery when a mail is given up after all attempts")
+    public void failDeliveryTest() {
+        AtomicInteger sends = new AtomicInteger();
+        Mockito.doAnswer(invocation -> {
+            for (Object message : invocation.getArguments()) {
+                if (((SimpleMailMessage) message).getTo()[0].equals("c@email.com")) {
+                    throw new MailSendException(Collections.singletonMap(message, new MessagingException("rejected")));
+                }
+            }
+            sends.incrementAndGet();
+            return null;
+        }).when(javaMailSender).send(ArgumentMatchers.<SimpleMailMessage[]>any());
+
+        CompletableFuture<Void> delivery = emailService.sendMails("Overdue!", Arrays.asList("a@email.com", "b@email.com", "c@email.com"));
+
+        Throwable exception = catchThrowable(() -> delivery.get(2, TimeUnit.SECONDS));
+
+        assertThat(exception).isInstanceOf(ExecutionException.class).hasCauseInstanceOf(MailSendException.class);
+        assertThat(mailCount("failed")).isEqualTo(1);
+        assertThat(mailCount("sent")).isEqualTo(1);
+    }
+
+    private double mailCount(String outcome) {
+        return meterRegistry.get("library.mail.messages").tag("outcome", outcome).counter().count();
+    }
+
+    private void awaitSentMessages(int count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 2000;
+        while (sentMessages.size() < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(sentMessages).hasSize(count);
+    }
 }
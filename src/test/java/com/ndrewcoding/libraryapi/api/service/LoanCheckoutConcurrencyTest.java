@@ -0,0 +1,101 @@
+package com.ndrewcoding.libraryapi.api.service;
+
+import com.ndrewcoding.libraryapi.api.exception.BusinessException;
+import com.ndrewcoding.libraryapi.api.model.entity.Book;
+import com.ndrewcoding.libraryapi.api.model.entity.Loan;
+import com.ndrewcoding.libraryapi.api.model.repository.BookRepository;
+import com.ndrewcoding.libraryapi.api.model.repository.LoanRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@Slf4j
+@ExtendWith(SpringExtension.class)
+@ActiveProfiles("test")
+@SpringBootTest
+public class LoanCheckoutConcurrencyTest {
+    private static final int BOOKS = 20;
+    private static final int CHECKOUTS_PER_BOOK = 8;
+    private static final int THREADS = 8;
+
+    @Autowired
+    LoanService loanService;
+
+    @Autowired
+    BookRepository bookRepository;
+
+    @Autowired
+    LoanRepository loanRepository;
+
+    @AfterEach
+    public void tearDown() {
+        loanRepository.deleteAll();
+        bookRepository.deleteAll();
+    }
+
+    @Test
+    @DisplayName("Must loan each Book only once under concurrent checkouts")
+    public void concurrentCheckoutTest() throws Exception {
+        List<Book> books = new ArrayList<>();
+        for (int i = 0; i < BOOKS; i++) {
+            books.add(bookRepository.save(Book.builder().title("Title").author("Author").isbn("isbn-" + i).build()));
+        }
+
+        AtomicInteger loaned = new AtomicInteger();
+        AtomicInteger rejected = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        List<Future<?>> checkouts = new ArrayList<>();
+        for (int attempt = 0; attempt < CHECKOUTS_PER_BOOK; attempt++) {
+            for (Book book : books) {
+                checkouts.add(executor.submit(() -> {
+                    start.await();
+                    try {
+                        loanService.save(LoanServiceTest.createValidLoan(book));
+                        loaned.incrementAndGet();
+                    } catch (BusinessException exception) {
+                        rejected.incrementAndGet();
+                    }
+                    return null;
+                }));
+            }
+        }
+
+        long startedAt = System.nanoTime();
+        start.countDown();
+        for (Future<?> checkout : checkouts) {
+            checkout.get(30, TimeUnit.SECONDS);
+        }
+        long elapsedNanos = System.nanoTime() - startedAt;
+        executor.shutdown();
+
+        Map<Long, Long> openLoansByBook = loanRepository.findAll().stream()
+                .filter(loan -> !loan.isReturned())
+                .collect(Collectors.groupingBy(Loan::getOpenBookId, Collectors.counting()));
+        long doubleLoans = openLoansByBook.values().stream().filter(count -> count > 1).count();
+
+        log.info("{} checkouts on {} threads in {} ms ({} checkouts/s): {} loaned, {} rejected, {} double loans",
+                checkouts.size(), THREADS, TimeUnit.NANOSECONDS.toMillis(elapsedNanos),
+                Math.round(checkouts.size() / (elapsedNanos / 1e9)), loaned.get(), rejected.get(), doubleLoans);
+
+        assertThat(doubleLoans).isZero();
+        assertThat(loaned.get()).isEqualTo(BOOKS);
+        assertThat(rejected.get()).isEqualTo(BOOKS * (CHECKOUTS_PER_BOOK - 1));
+        assertThat(openLoansByBook).hasSize(BOOKS);
+    }
+}
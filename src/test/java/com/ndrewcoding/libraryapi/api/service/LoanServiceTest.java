@@ -5,23 +5,33 @@ import com.ndrewcoding.libraryapi.api.exception.BusinessException;
 import com.ndrewcoding.libraryapi.api.model.entity.Book;
 import com.ndrewcoding.libraryapi.api.model.entity.Loan;
 import com.ndrewcoding.libraryapi.api.model.repository.LoanRepository;
+import com.ndrewcoding.libraryapi.api.pagination.SlicePage;
 import com.ndrewcoding.libraryapi.api.service.impl.LoanServiceImpl;
+import org.hibernate.exception.ConstraintViolationException;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mockito;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.mail.MailSendException;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 
+import javax.persistence.EntityManager;
+import java.sql.SQLException;
 import java.time.LocalDate;
-import java.util.Collections;
-import java.util.List;
-import java.util.Optional;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+import java.util.stream.Stream;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.catchThrowable;
@@ -37,9 +47,14 @@ public class LoanServiceTest {
     @MockBean
     LoanRepository loanRepository;
 
+    @MockBean
+    EntityManager entityManager;
+
+    LoanedBookIndex loanedBookIndex = new LoanedBookIndex();
+
     @BeforeEach
     public void setUp() {
-        this.loanService = new LoanServiceImpl(loanRepository);
+        this.loanService = new LoanServiceImpl(loanRepository, entityManager, loanedBookIndex);
     }
 
     @Test
@@ -57,11 +72,7 @@ public class LoanServiceTest {
                 .book(book)
                 .build();
 
-        Mockito
-                .when(loanRepository.existsByBookAndHasNotBeenReturned(book))
-                .thenReturn(false);
-
-        Mockito.when(loanRepository.save(givenLoan)).thenReturn(savedLoan);
+        Mockito.when(loanRepository.saveAndFlush(givenLoan)).thenReturn(savedLoan);
 
         Loan finalLoan = loanService.save(givenLoan);
 
@@ -69,6 +80,7 @@ public class LoanServiceTest {
         assertThat(finalLoan.getBook().getId()).isEqualTo(savedLoan.getBook().getId());
         assertThat(finalLoan.getCustomer()).isEqualTo(savedLoan.getCustomer());
         assertThat(finalLoan.getLoanDate()).isEqualTo(savedLoan.getLoanDate());
+        assertThat(loanService.isLoaned(1L)).isTrue();
     }
 
     @Test
@@ -79,8 +91,8 @@ public class LoanServiceTest {
         Loan givenLoan = createValidLoan(book);
 
         Mockito
-                .when(loanRepository.existsByBookAndHasNotBeenReturned(book))
-                .thenReturn(true);
+                .when(loanRepository.saveAndFlush(givenLoan))
+                .thenThrow(openBookConstraintViolation());
 
         Throwable exception = catchThrowable(() -> loanService.save(givenLoan));
 
@@ -88,7 +100,104 @@ public class LoanServiceTest {
                 .isInstanceOf(BusinessException.class)
                 .hasMessage("Book already loaned");
 
-        verify(loanRepository, never()).save(givenLoan);
+        verify(loanRepository, never()).existsByBookAndHasNotBeenReturned(book);
+    }
+
+    @Test
+    @DisplayName("Must propagate integrity violations of other constraints when saving a Loan")
+    public void saveLoanWithOtherIntegrityViolationTest() {
+        Loan givenLoan = createValidLoan(Book.builder().id(1L).build());
+
+        DataIntegrityViolationException violation = new DataIntegrityViolationException("not null",
+                new ConstraintViolationException("not null", new SQLException(), "NOT_NULL_CUSTOMER"));
+        Mockito.when(loanRepository.saveAndFlush(givenLoan)).thenThrow(violation);
+
+        Throwable exception = catchThrowable(() -> loanService.save(givenLoan));
+
+        assertThat(exception).isSameAs(violation);
+    }
+
+    @Test
+    @DisplayName("Must save only the Loans whose Book is neither loaned nor repeated")
+    public void saveAllLoansSkipsLoanedBooksTest() {
+        Loan newLoan = createValidLoan(Book.builder().id(1L).build());
+        Loan loanedBookLoan = createValidLoan(Book.builder().id(2L).build());
+        Loan repeatedLoan = createValidLoan(Book.builder().id(1L).build());
+
+        Mockito.when(loanRepository.findOpenBookIdsByOpenBookIdIn(new HashSet<>(Arrays.asList(1L, 2L))))
+                .thenReturn(Collections.singleton(2L));
+        Mockito.when(loanRepository.saveAll(Collections.singletonList(newLoan)))
+                .thenReturn(Collections.singletonList(newLoan));
+
+        List<Loan> savedLoans = loanService.saveAll(Arrays.asList(newLoan, loanedBookLoan, repeatedLoan));
+
+        assertThat(savedLoans).containsExactly(newLoan);
+        verify(loanRepository).flush();
+    }
+
+    @Test
+    @DisplayName("Must throw a Business Error when a Book is loaned concurrently during a bulk checkout")
+    public void saveAllLoansWithConcurrentlyLoanedBookTest() {
+        Loan loan = createValidLoan(Book.builder().id(1L).build());
+
+        Mockito.when(loanRepository.findOpenBookIdsByOpenBookIdIn(Mockito.anyCollection()))
+                .thenReturn(Collections.emptySet());
+        Mockito.doThrow(openBookConstraintViolation()).when(loanRepository).flush();
+
+        Throwable exception = catchThrowable(() -> loanService.saveAll(Collections.singletonList(loan)));
+
+        assertThat(exception)
+                .isInstanceOf(BusinessException.class)
+                .hasMessage("Book already loaned");
+    }
+
+    @Test
+    @DisplayName("Must return only the existing Loans with one update")
+    public void returnAllLoansTest() {
+        Mockito.when(loanRepository.findIdsByIdIn(Arrays.asList(1L, 2L))).thenReturn(Collections.singleton(1L));
+
+        Set<Long> returnedIds = loanService.returnAll(Arrays.asList(1L, 2L));
+
+        assertThat(returnedIds).containsExactly(1L);
+        verify(loanRepository).returnAllByIdIn(Collections.singleton(1L));
+        verify(loanRepository, never()).save(Mockito.any(Loan.class));
+    }
+
+    @Test
+    @DisplayName("Must keep the index of loaned Books current as Loans are returned and reopened")
+    public void loanedBookIndexTest() {
+        loanedBookIndex.add(10L);
+        loanedBookIndex.add(11L);
+        Mockito.when(loanRepository.findIdsByIdIn(Collections.singleton(1L))).thenReturn(Collections.singleton(1L));
+        Mockito.when(loanRepository.findOpenBookIdsByIdIn(Collections.singleton(1L))).thenReturn(Collections.singleton(10L));
+        Mockito.when(loanRepository.updateReturnedById(2L, true, null)).thenReturn(1);
+        Mockito.when(loanRepository.updateReturnedById(1L, false, null)).thenReturn(1);
+        Mockito.when(loanRepository.findBookIdById(2L)).thenReturn(Optional.of(11L));
+        Mockito.when(loanRepository.findBookIdById(1L)).thenReturn(Optional.of(10L));
+
+        loanService.returnAll(Collections.singleton(1L));
+        loanService.updateReturned(2L, true, null);
+
+        assertThat(loanService.isLoaned(10L)).isFalse();
+        assertThat(loanService.isLoaned(11L)).isFalse();
+
+        loanService.updateReturned(1L, false, null);
+
+        assertThat(loanService.isLoaned(10L)).isTrue();
+    }
+
+    @Test
+    @DisplayName("Must reconcile the index of loaned Books with the open Loans in the database")
+    public void reconcileLoanedBookIndexTest() {
+        loanedBookIndex.add(10L);
+        Mockito.when(loanRepository.streamOpenBookIds()).thenReturn(Stream.of(11L, 12L));
+
+        int outOfSync = loanService.reconcileLoanedBookIndex();
+
+        assertThat(outOfSync).isEqualTo(3);
+        assertThat(loanService.isLoaned(10L)).isFalse();
+        assertThat(loanService.isLoaned(11L)).isTrue();
+        assertThat(loanService.isLoaned(12L)).isTrue();
     }
 
     @Test
@@ -126,13 +235,13 @@ public class LoanServiceTest {
 
         originalLoan.setReturned(true);
 
-        Mockito.when(loanRepository.save(Mockito.any(Loan.class))).thenReturn(originalLoan);
+        Mockito.when(loanRepository.saveAndFlush(Mockito.any(Loan.class))).thenReturn(originalLoan);
 
         Loan updatedLoan = loanService.update(originalLoan);
 
         assertThat(updatedLoan.isReturned()).isTrue();
 
-        verify(loanRepository).save(originalLoan);
+        verify(loanRepository).saveAndFlush(originalLoan);
     }
 
     @Test
@@ -176,6 +285,53 @@ public class LoanServiceTest {
         assertThat(loansResult.getPageable().getPageSize()).isEqualTo(pageSize);
     }
 
+    @Test
+    @DisplayName("Must find a slice of Loans counting them only when asked to")
+    public void findLoansSliceTest() {
+        Loan loan = createValidLoan(BookServiceTest.createValidBook());
+        LoanFilterDTO loanFilterDTO = LoanFilterDTO.builder().customer("Andrew").isbn("123").build();
+        PageRequest pageRequest = PageRequest.of(0, 10);
+
+        Mockito
+                .when(loanRepository.findSliceByBookIsbnOrCustomer("123", "Andrew", pageRequest))
+                .thenReturn(new SliceImpl<>(Collections.singletonList(loan), pageRequest, false));
+        Mockito.when(loanRepository.countByBookIsbnOrCustomer("123", "Andrew")).thenReturn(1L);
+
+        SlicePage<Loan> uncounted = loanService.findSlice(loanFilterDTO, pageRequest, false);
+
+        assertThat(uncounted.getContent()).containsExactly(loan);
+        assertThat(uncounted.hasNext()).isFalse();
+        assertThat(uncounted.getTotalElements()).isNull();
+        verify(loanRepository, never()).countByBookIsbnOrCustomer(Mockito.anyString(), Mockito.anyString());
+
+        SlicePage<Loan> counted = loanService.findSlice(loanFilterDTO, pageRequest, true);
+
+        assertThat(counted.getTotalElements()).isEqualTo(1L);
+    }
+
+    @Test
+    @DisplayName("Must find a slice of the Loans of a given Book counting them only when asked to")
+    public void findLoansByBookSliceTest() {
+        Book book = BookServiceTest.createValidBook();
+        Loan loan = createValidLoan(book);
+        PageRequest pageRequest = PageRequest.of(0, 10);
+
+        Mockito
+                .when(loanRepository.findSliceByBook(book, pageRequest))
+                .thenReturn(new SliceImpl<>(Collections.singletonList(loan), pageRequest, true));
+        Mockito.when(loanRepository.countByBook(book)).thenReturn(11L);
+
+        SlicePage<Loan> uncounted = loanService.getLoansByBookSlice(book, pageRequest, false);
+
+        assertThat(uncounted.getContent()).containsExactly(loan);
+        assertThat(uncounted.hasNext()).isTrue();
+        verify(loanRepository, never()).countByBook(Mockito.any(Book.class));
+
+        SlicePage<Loan> counted = loanService.getLoansByBookSlice(book, pageRequest, true);
+
+        assertThat(counted.getTotalElements()).isEqualTo(11L);
+    }
+
     @Test
     @DisplayName("Must filter the Loans of a given Book")
     public void findLoansByBookTest() {
@@ -220,39 +376,146 @@ public class LoanServiceTest {
     }
 
     @Test
-    @DisplayName("Must return all not returned overdue Loans")
-    public void getAllNotReturnedOverdueLoansTest() {
-        Book book = Book.builder().id(1L).build();
+    @DisplayName("Must hand the newly overdue customer e-mails over in chunks, marking each chunk as notified")
+    public void notifyNewlyOverdueLoansTest() {
+        LocalDate from = LocalDate.now().minusDays(2);
+        Mockito
+                .when(loanRepository.findUnnotifiedOverdueLoans(
+                        Mockito.eq(from), Mockito.any(LocalDate.class), Mockito.any(Pageable.class)))
+                .thenReturn(
+                        Arrays.asList(overdueLoan(1L, "a@email.com"), overdueLoan(2L, "b@email.com")),
+                        Collections.singletonList(overdueLoan(3L, "c@email.com"))
+                );
+
+        List<List<String>> chunks = new ArrayList<>();
+
+        LocalDate watermark = loanService.notifyNewlyOverdueLoans(from, 2, delivered(chunks));
+
+        assertThat(watermark).isEqualTo(LocalDate.now());
+        assertThat(chunks).containsExactly(
+                Arrays.asList("a@email.com", "b@email.com"),
+                Collections.singletonList("c@email.com")
+        );
+        verify(loanRepository).markOverdueNotified(Mockito.eq(Arrays.asList(1L, 2L)), Mockito.any(LocalDateTime.class));
+        verify(loanRepository).markOverdueNotified(Mockito.eq(Collections.singletonList(3L)), Mockito.any(LocalDateTime.class));
+        verify(loanRepository, Mockito.times(2))
+                .findUnnotifiedOverdueLoans(Mockito.eq(from), Mockito.any(LocalDate.class), Mockito.any(Pageable.class));
+    }
 
-        Loan loan = createValidLoan(book);
+    @Test
+    @DisplayName("Must not hand any chunk over nor mark anything when there are no newly overdue Loans")
+    public void notifyNewlyOverdueLoansWithoutOverdueLoansTest() {
+        Mockito
+                .when(loanRepository.findUnnotifiedOverdueLoans(
+                        Mockito.any(LocalDate.class), Mockito.any(LocalDate.class), Mockito.any(Pageable.class)))
+                .thenReturn(Collections.emptyList());
 
-        List<Loan> loansList = Collections.singletonList(loan);
+        List<List<String>> chunks = new ArrayList<>();
+
+        LocalDate watermark = loanService.notifyNewlyOverdueLoans(LocalDate.now(), 2, delivered(chunks));
+
+        assertThat(watermark).isEqualTo(LocalDate.now());
+        assertThat(chunks).isEmpty();
+        verify(loanRepository, never()).markOverdueNotified(Mockito.any(), Mockito.any());
+    }
 
+    @Test
+    @DisplayName("Must leave a chunk unmarked when handing it over fails")
+    public void notifyNewlyOverdueLoansLeavesFailedChunkUnmarkedTest() {
         Mockito
-                .when(loanRepository.findByLoanDateLessThanAndNotReturned(Mockito.any(LocalDate.class)))
-                .thenReturn(loansList);
+                .when(loanRepository.findUnnotifiedOverdueLoans(
+                        Mockito.any(LocalDate.class), Mockito.any(LocalDate.class), Mockito.any(Pageable.class)))
+                .thenReturn(Collections.singletonList(overdueLoan(1L, "a@email.com")));
 
-        List<Loan> allOverdueLoans = loanService.getAllOverdueLoans();
+        Throwable exception = catchThrowable(() -> loanService.notifyNewlyOverdueLoans(LocalDate.now(), 2, emails -> {
+            throw new IllegalStateException("mail queue full");
+        }));
 
-        assertThat(allOverdueLoans).hasSize(1).contains(loan);
+        assertThat(exception).isInstanceOf(IllegalStateException.class);
+        verify(loanRepository, never()).markOverdueNotified(Mockito.any(), Mockito.any());
     }
 
     @Test
-    @DisplayName("Returns empty when there are no not returned overdue Loans")
-    public void getAllNotReturnedOverdueLoansReturnsEmptyWhenThereAreNoneTest() {
-        List<Loan> loansList = Collections.emptyList();
-
+    @DisplayName("Must mark a chunk only once its mails were delivered, leaving it and the rest when delivery fails")
+    public void notifyNewlyOverdueLoansLeavesUndeliveredChunkUnmarkedTest() {
         Mockito
-                .when(loanRepository.findByLoanDateLessThanAndNotReturned(Mockito.any(LocalDate.class)))
-                .thenReturn(loansList);
+                .when(loanRepository.findUnnotifiedOverdueLoans(
+                        Mockito.any(LocalDate.class), Mockito.any(LocalDate.class), Mockito.any(Pageable.class)))
+                .thenReturn(Arrays.asList(overdueLoan(1L, "a@email.com"), overdueLoan(2L, "b@email.com")));
+
+        CompletableFuture<Void> delivery = new CompletableFuture<>();
+        delivery.completeExceptionally(new MailSendException("Giving up sending the mail after 3 attempts."));
+
+        Throwable exception = catchThrowable(() -> loanService.notifyNewlyOverdueLoans(LocalDate.now(), 2, emails -> delivery));
+
+        assertThat(exception).isInstanceOf(MailSendException.class);
+        verify(loanRepository, never()).markOverdueNotified(Mockito.any(), Mockito.any());
+        verify(loanRepository, Mockito.times(1))
+                .findUnnotifiedOverdueLoans(Mockito.any(LocalDate.class), Mockito.any(LocalDate.class), Mockito.any(Pageable.class));
+    }
+
+    @Test
+    @DisplayName("Must hand every filtered Loan over, clearing the persistence context as it goes")
+    public void forEachLoanTest() {
+        List<Loan> loans = new ArrayList<>();
+        for (long id = 1; id <= 1200; id++) {
+            Loan loan = createValidLoan(Book.builder().id(id).isbn("123").build());
+            loan.setId(id);
+            loans.add(loan);
+        }
+        Mockito.when(loanRepository.streamByBookIsbnOrCustomer("123", "Andrew")).thenReturn(loans.stream());
+
+        List<Loan> handedOver = new ArrayList<>();
+
+        loanService.forEachLoan(LoanFilterDTO.builder().isbn("123").customer("Andrew").build(), handedOver::add);
+
+        assertThat(handedOver).isEqualTo(loans);
+        verify(entityManager, Mockito.times(2)).clear();
+    }
+
+    @Test
+    @DisplayName("Must hand every Loan over")
+    public void forEachLoanWithoutFilterTest() {
+        Loan loan = createValidLoan(Book.builder().id(1L).isbn("123").build());
+        Mockito.when(loanRepository.streamAll()).thenReturn(Stream.of(loan));
+
+        List<Loan> handedOver = new ArrayList<>();
 
-        List<Loan> allOverdueLoans = loanService.getAllOverdueLoans();
+        loanService.forEachLoan(handedOver::add);
 
-        assertThat(allOverdueLoans).isEmpty();
+        assertThat(handedOver).containsExactly(loan);
+        verify(entityManager, never()).clear();
     }
 
     public static Loan createValidLoan(Book book) {
         return Loan.builder().book(book).customer("Andrew").customerEmail("andrew@email.com")
                 .loanDate(LocalDate.now()).returned(false).build();
     }
+
+    private static Function<List<String>, CompletableFuture<?>> delivered(List<List<String>> chunks) {
+        return emails -> {
+            chunks.add(emails);
+            return CompletableFuture.completedFuture(null);
+        };
+    }
+
+    public static LoanRepository.OverdueLoan overdueLoan(Long id, String customerEmail) {
+        return new LoanRepository.OverdueLoan() {
+            @Override
+            public Long getId() {
+                return id;
+            }
+
+            @Override
+            public String getCustomerEmail() {
+                return customerEmail;
+            }
+        };
+    }
+
+    private static DataIntegrityViolationException openBookConstraintViolation() {
+        return new DataIntegrityViolationException("could not execute statement",
+                new ConstraintViolationException("Unique index or primary key violation", new SQLException(),
+                        "UK_LOAN_OPEN_BOOK_INDEX_2 ON PUBLIC.LOAN(OPEN_BOOK_ID) VALUES 1"));
+    }
 }
@@ -0,0 +1,74 @@
+package com.ndrewcoding.libraryapi.api.service;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.LongStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@ExtendWith(SpringExtension.class)
+@ActiveProfiles("test")
+public class LoanedBookIndexTest {
+
+    @Test
+    @DisplayName("Must tell the loaned Books apart, growing past its initial size")
+    public void addAndRemoveTest() {
+        LoanedBookIndex index = new LoanedBookIndex();
+
+        index.add(1);
+        index.add(63);
+        index.add(1_000_000);
+        index.remove(63);
+        index.remove(5_000_000);
+
+        assertThat(index.contains(1)).isTrue();
+        assertThat(index.contains(63)).isFalse();
+        assertThat(index.contains(1_000_000)).isTrue();
+        assertThat(index.contains(1_000_001)).isFalse();
+        assertThat(index.contains(5_000_000)).isFalse();
+        assertThat(index.contains(-1)).isFalse();
+    }
+
+    @Test
+    @DisplayName("Must keep every Book added concurrently")
+    public void concurrentAddTest() throws InterruptedException {
+        LoanedBookIndex index = new LoanedBookIndex();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        for (int thread = 0; thread < 4; thread++) {
+            long first = thread;
+            executor.execute(() -> LongStream.iterate(first, id -> id + 4).limit(50_000).forEach(index::add));
+        }
+        executor.shutdown();
+        assertThat(executor.awaitTermination(10, TimeUnit.SECONDS)).isTrue();
+
+        assertThat(LongStream.range(0, 200_000).allMatch(index::contains)).isTrue();
+    }
+
+    @Test
+    @DisplayName("Must fix the Books out of sync with the database, except those changed while reconciling")
+    public void reconcileTest() {
+        LoanedBookIndex index = new LoanedBookIndex();
+        index.add(1);
+        index.add(2);
+
+        index.beginReconcile();
+        LoanedBookIndex fromDatabase = new LoanedBookIndex();
+        fromDatabase.add(2);
+        fromDatabase.add(100_000);
+        index.add(3);
+
+        assertThat(index.finishReconcile(fromDatabase)).isEqualTo(2);
+
+        assertThat(index.contains(1)).isFalse();
+        assertThat(index.contains(2)).isTrue();
+        assertThat(index.contains(3)).isTrue();
+        assertThat(index.contains(100_000)).isTrue();
+    }
+}
@@ -4,19 +4,30 @@ import com.ndrewcoding.libraryapi.api.model.entity.Book;
 import com.ndrewcoding.libraryapi.api.model.entity.Loan;
 import com.ndrewcoding.libraryapi.api.model.repository.LoanRepository;
 import com.ndrewcoding.libraryapi.api.service.impl.LoanServiceImpl;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mockito;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.data.domain.Pageable;
+import org.springframework.mail.MailSendException;
 import org.springframework.mail.javamail.JavaMailSender;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.test.util.ReflectionTestUtils;
 
+import javax.persistence.EntityManager;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Arrays;
 import java.util.Collections;
-import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
 
 @ExtendWith(SpringExtension.class)
 @ActiveProfiles("test")
@@ -24,6 +35,7 @@ public class ScheduleServiceTest {
 
     LoanService loanService;
     ScheduleService scheduleService;
+    SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
 
     @MockBean
     EmailService emailService;
@@ -34,10 +46,18 @@ public class ScheduleServiceTest {
     @MockBean
     JavaMailSender javaMailSender;
 
+    @MockBean
+    EntityManager entityManager;
+
+    LoanedBookIndex loanedBookIndex = new LoanedBookIndex();
+
     @BeforeEach
     public void setUp() {
-        this.loanService = new LoanServiceImpl(loanRepository);
-        this.scheduleService = new ScheduleService(loanService, emailService);
+        this.loanService = new LoanServiceImpl(loanRepository, entityManager, loanedBookIndex);
+        this.scheduleService = new ScheduleService(loanService, emailService, meterRegistry);
+        ReflectionTestUtils.setField(scheduleService, "chunkSize", 2);
+        Mockito.when(emailService.sendMails(Mockito.any(), Mockito.anyList()))
+                .thenReturn(CompletableFuture.completedFuture(null));
     }
 
     @Test
@@ -46,19 +66,96 @@ public class ScheduleServiceTest {
         Book book = Book.builder().id(1L).build();
 
         Loan loan = LoanServiceTest.createValidLoan(book);
+        LocalDate dueDate = LocalDate.now().minusDays(1);
+
+        Mockito
+                .when(loanRepository.findEarliestUnnotifiedOverdueDueDate(Mockito.any(LocalDate.class)))
+                .thenReturn(Optional.of(dueDate));
+        Mockito
+                .when(loanRepository.findUnnotifiedOverdueLoans(
+                        Mockito.eq(dueDate), Mockito.any(LocalDate.class), Mockito.any(Pageable.class)))
+                .thenReturn(Collections.singletonList(LoanServiceTest.overdueLoan(1L, loan.getCustomerEmail())));
+
+        scheduleService.sendMailToCustomersWithOverdueLoans();
+
+        Mockito.verify(emailService, Mockito.times(1))
+                .sendMails(null, Collections.singletonList(loan.getCustomerEmail()));
+
+        Mockito.verify(loanRepository)
+                .markOverdueNotified(Mockito.eq(Collections.singletonList(1L)), Mockito.any(LocalDateTime.class));
 
-        List<Loan> overdueLoansList = Collections.singletonList(loan);
+        assertThat(meterRegistry.get("library.job.overdue-loans").timer().count()).isEqualTo(1);
+    }
 
+    @Test
+    @DisplayName("Must send the mails in chunks of the configured size")
+    public void sendMailToCustomersWithOverdueLoansInChunksTest() {
         Mockito
-                .when(loanRepository.findByLoanDateLessThanAndNotReturned(Mockito.any(LocalDate.class)))
-                .thenReturn(overdueLoansList);
+                .when(loanRepository.findEarliestUnnotifiedOverdueDueDate(Mockito.any(LocalDate.class)))
+                .thenReturn(Optional.of(LocalDate.now().minusDays(3)));
+        Mockito
+                .when(loanRepository.findUnnotifiedOverdueLoans(
+                        Mockito.any(LocalDate.class), Mockito.any(LocalDate.class), Mockito.any(Pageable.class)))
+                .thenReturn(
+                        Arrays.asList(
+                                LoanServiceTest.overdueLoan(1L, "a@email.com"),
+                                LoanServiceTest.overdueLoan(2L, "b@email.com")
+                        ),
+                        Collections.singletonList(LoanServiceTest.overdueLoan(3L, "c@email.com"))
+                );
 
         scheduleService.sendMailToCustomersWithOverdueLoans();
 
-        Mockito.verify(loanRepository, Mockito.times(1))
-                .findByLoanDateLessThanAndNotReturned(Mockito.any(LocalDate.class));
+        Mockito.verify(emailService).sendMails(null, Arrays.asList("a@email.com", "b@email.com"));
+        Mockito.verify(emailService).sendMails(null, Collections.singletonList("c@email.com"));
+        Mockito.verifyNoMoreInteractions(emailService);
+    }
 
-        Mockito.verify(emailService, Mockito.times(1))
-                .sendMails(null, Collections.singletonList(overdueLoansList.get(0).getCustomerEmail()));
+    @Test
+    @DisplayName("Must leave the Loans unnotified and the watermark where it was when the mails are not delivered")
+    public void sendMailToCustomersWithOverdueLoansDeliveryFailureTest() {
+        LocalDate dueDate = LocalDate.now().minusDays(5);
+        Mockito
+                .when(loanRepository.findEarliestUnnotifiedOverdueDueDate(Mockito.any(LocalDate.class)))
+                .thenReturn(Optional.of(dueDate));
+        Mockito
+                .when(loanRepository.findUnnotifiedOverdueLoans(
+                        Mockito.any(LocalDate.class), Mockito.any(LocalDate.class), Mockito.any(Pageable.class)))
+                .thenReturn(Collections.singletonList(LoanServiceTest.overdueLoan(1L, "a@email.com")));
+        CompletableFuture<Void> failedDelivery = new CompletableFuture<>();
+        failedDelivery.completeExceptionally(new MailSendException("Giving up sending the mail after 3 attempts."));
+        Mockito.when(emailService.sendMails(Mockito.any(), Mockito.anyList())).thenReturn(failedDelivery);
+
+        assertThat(catchThrowable(() -> scheduleService.sendMailToCustomersWithOverdueLoans()))
+                .isInstanceOf(MailSendException.class);
+        assertThat(catchThrowable(() -> scheduleService.sendMailToCustomersWithOverdueLoans()))
+                .isInstanceOf(MailSendException.class);
+
+        Mockito.verify(loanRepository, Mockito.never()).markOverdueNotified(Mockito.any(), Mockito.any());
+        Mockito.verify(loanRepository, Mockito.times(2)).findEarliestUnnotifiedOverdueDueDate(Mockito.any(LocalDate.class));
+        Mockito.verify(loanRepository, Mockito.times(2)).findUnnotifiedOverdueLoans(
+                Mockito.eq(dueDate), Mockito.any(LocalDate.class), Mockito.any(Pageable.class));
+    }
+
+    @Test
+    @DisplayName("Must only look for the Loans that became overdue since the previous run")
+    public void sendMailToCustomersWithOverdueLoansFromWatermarkTest() {
+        Mockito
+                .when(loanRepository.findEarliestUnnotifiedOverdueDueDate(Mockito.any(LocalDate.class)))
+                .thenReturn(Optional.of(LocalDate.now().minusDays(30)));
+        Mockito
+                .when(loanRepository.findUnnotifiedOverdueLoans(
+                        Mockito.any(LocalDate.class), Mockito.any(LocalDate.class), Mockito.any(Pageable.class)))
+                .thenReturn(Collections.emptyList());
+
+        scheduleService.sendMailToCustomersWithOverdueLoans();
+        scheduleService.sendMailToCustomersWithOverdueLoans();
+
+        Mockito.verify(loanRepository, Mockito.times(1)).findEarliestUnnotifiedOverdueDueDate(Mockito.any(LocalDate.class));
+        Mockito.verify(loanRepository).findUnnotifiedOverdueLoans(
+                Mockito.eq(LocalDate.now().minusDays(30)), Mockito.any(LocalDate.class), Mockito.any(Pageable.class));
+        Mockito.verify(loanRepository).findUnnotifiedOverdueLoans(
+                Mockito.eq(LocalDate.now()), Mockito.any(LocalDate.class), Mockito.any(Pageable.class));
+        Mockito.verifyNoInteractions(emailService);
     }
 }
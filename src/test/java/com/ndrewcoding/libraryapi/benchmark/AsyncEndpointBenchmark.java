@@ -0,0 +1,125 @@
+package com.ndrewcoding.libraryapi.benchmark;
+
+import com.ndrewcoding.libraryapi.LibraryApiApplication;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Floods {@code GET /api/loans} against a database that takes {@code databaseDelay} ms to hand out each connection,
+ * while a few clients call the database-free {@code GET /actuator/info}, on a Tomcat of 16 threads. In {@code sync}
+ * mode the slow requests hold every container thread; in {@code async} mode {@code LoanController.find} runs on the
+ * async endpoint pool (16 threads, 64 queued, 503 beyond) and the container threads stay free for the cheap requests.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 3)
+@Measurement(iterations = 3, time = 5)
+@Fork(1)
+public class AsyncEndpointBenchmark {
+
+    @Param({"sync", "async"})
+    public String mode;
+
+    @Param({"50"})
+    public long databaseDelay;
+
+    private ConfigurableApplicationContext context;
+    private String baseUrl;
+
+    @Setup
+    public void setUp() {
+        context = new SpringApplicationBuilder(LibraryApiApplication.class)
+                .properties("server.port=0", "spring.boot.admin.client.enabled=false", "logging.level.root=WARN",
+                        "server.tomcat.threads.max=16",
+                        "application.web.async.endpoints=" + ("async".equals(mode) ? "LoanController.find" : ""))
+                .initializers(applicationContext -> applicationContext.getBeanFactory()
+                        .addBeanPostProcessor(new SlowDataSourcePostProcessor(databaseDelay)))
+                .run();
+        int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+        baseUrl = "http://localhost:" + port;
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(48)
+    public int findLoans() throws IOException {
+        return get("/api/loans?customer=Andrew");
+    }
+
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(4)
+    public int info() throws IOException {
+        return get("/actuator/info");
+    }
+
+    private int get(String path) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(baseUrl + path).openConnection();
+        int status = connection.getResponseCode();
+        try (InputStream body = status < 400 ? connection.getInputStream() : connection.getErrorStream()) {
+            if (body != null) {
+                byte[] buffer = new byte[8192];
+                while (body.read(buffer) != -1) {
+                    // drain so the connection can be reused
+                }
+            }
+        }
+        return status;
+    }
+
+    private static class SlowDataSourcePostProcessor implements BeanPostProcessor {
+        private final long delay;
+
+        SlowDataSourcePostProcessor(long delay) {
+            this.delay = delay;
+        }
+
+        @Override
+        public Object postProcessAfterInitialization(Object bean, String beanName) {
+            if (!(bean instanceof DataSource)) {
+                return bean;
+            }
+            return new DelegatingDataSource((DataSource) bean) {
+                @Override
+                public Connection getConnection() throws SQLException {
+                    try {
+                        Thread.sleep(delay);
+                    } catch (InterruptedException exception) {
+                        Thread.currentThread().interrupt();
+                    }
+                    return super.getConnection();
+                }
+            };
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(AsyncEndpointBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,104 @@
+package com.ndrewcoding.libraryapi.benchmark;
+
+import com.ndrewcoding.libraryapi.LibraryApiApplication;
+import com.ndrewcoding.libraryapi.api.config.SearchIndexInitializer;
+import com.ndrewcoding.libraryapi.api.model.entity.Book;
+import com.ndrewcoding.libraryapi.api.service.BookService;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Searches a catalog of {@code books} Books for a word prefix, comparing the {@code Example} CONTAINING scan behind
+ * {@code GET /api/books?title=} with the full-text index behind {@code GET /api/books?q=}. Both fetch the first page
+ * of 20 and the total count.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = "-Xmx3g")
+public class BookSearchBenchmark {
+    private static final int WORDS = 5000;
+    private static final int INSERT_BATCH = 10000;
+
+    @Param({"1000000"})
+    public int books;
+
+    private ConfigurableApplicationContext context;
+    private BookService bookService;
+    private String prefix;
+    private final PageRequest pageRequest = PageRequest.of(0, 20);
+
+    @Setup
+    public void setUp() throws InterruptedException {
+        context = new SpringApplicationBuilder(LibraryApiApplication.class)
+                .properties("server.port=0", "spring.boot.admin.client.enabled=false", "logging.level.root=WARN")
+                .run();
+        bookService = context.getBean(BookService.class);
+
+        Random random = new Random(42);
+        List<String> words = new ArrayList<>(WORDS);
+        for (int i = 0; i < WORDS; i++) {
+            words.add(randomWord(random));
+        }
+
+        JdbcTemplate jdbcTemplate = context.getBean(JdbcTemplate.class);
+        List<Object[]> rows = new ArrayList<>(INSERT_BATCH);
+        for (long id = 1; id <= books; id++) {
+            String title = words.get(random.nextInt(WORDS)) + " " + words.get(random.nextInt(WORDS));
+            String author = words.get(random.nextInt(WORDS)) + " " + words.get(random.nextInt(WORDS));
+            rows.add(new Object[]{id, title, author, "isbn-" + id});
+            if (rows.size() == INSERT_BATCH || id == books) {
+                jdbcTemplate.batchUpdate("INSERT INTO book (id, title, author, isbn, version) VALUES (?, ?, ?, ?, 0)", rows);
+                rows.clear();
+            }
+        }
+        context.getBean(SearchIndexInitializer.class).reindex();
+
+        prefix = words.get(0).substring(0, 4);
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Page<Book> exampleContaining() {
+        return bookService.find(Book.builder().title(prefix).build(), pageRequest);
+    }
+
+    @Benchmark
+    public Page<Book> fullTextSearch() {
+        return bookService.search(prefix, pageRequest);
+    }
+
+    private static String randomWord(Random random) {
+        char[] letters = new char[5 + random.nextInt(5)];
+        for (int i = 0; i < letters.length; i++) {
+            letters[i] = (char) ('a' + random.nextInt(26));
+        }
+        return new String(letters);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(BookSearchBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
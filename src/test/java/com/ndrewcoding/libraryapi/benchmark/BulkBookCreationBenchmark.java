@@ -0,0 +1,91 @@
+package com.ndrewcoding.libraryapi.benchmark;
+
+import com.ndrewcoding.libraryapi.LibraryApiApplication;
+import com.ndrewcoding.libraryapi.api.dto.BookDTO;
+import com.ndrewcoding.libraryapi.api.dto.BulkItemResultDTO;
+import com.ndrewcoding.libraryapi.api.model.repository.BookRepository;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.web.client.RestTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Creates {@code books} Books over HTTP against the application running on H2, one {@code POST /api/books} per Book
+ * versus a single {@code POST /api/books/bulk}. Each invocation starts from an empty catalog.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class BulkBookCreationBenchmark {
+
+    @Param({"10000"})
+    public int books;
+
+    private ConfigurableApplicationContext context;
+    private BookRepository bookRepository;
+    private CacheManager cacheManager;
+    private RestTemplate restTemplate;
+    private String bookApi;
+    private List<BookDTO> bookDTOs;
+
+    @Setup(Level.Trial)
+    public void startApplication() {
+        context = new SpringApplicationBuilder(LibraryApiApplication.class)
+                .properties("server.port=0", "spring.boot.admin.client.enabled=false", "logging.level.root=WARN")
+                .run();
+        bookRepository = context.getBean(BookRepository.class);
+        cacheManager = context.getBean(CacheManager.class);
+        restTemplate = new RestTemplate();
+        bookApi = "http://localhost:" + context.getEnvironment().getProperty("local.server.port") + "/api/books";
+
+        bookDTOs = new ArrayList<>(books);
+        for (int i = 0; i < books; i++) {
+            bookDTOs.add(BookDTO.builder().title("Title " + i).author("Author " + i).isbn("isbn-" + i).build());
+        }
+    }
+
+    @Setup(Level.Invocation)
+    public void emptyCatalog() {
+        bookRepository.deleteAllInBatch();
+        cacheManager.getCacheNames().forEach(name -> cacheManager.getCache(name).clear());
+    }
+
+    @TearDown(Level.Trial)
+    public void stopApplication() {
+        context.close();
+    }
+
+    @Benchmark
+    public int singleItemPosts() {
+        int created = 0;
+        for (BookDTO bookDTO : bookDTOs) {
+            restTemplate.postForObject(bookApi, bookDTO, BookDTO.class);
+            created++;
+        }
+        return created;
+    }
+
+    @Benchmark
+    public BulkItemResultDTO[] bulkPost() {
+        return restTemplate.postForObject(bookApi + "/bulk", bookDTOs, BulkItemResultDTO[].class);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(BulkBookCreationBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
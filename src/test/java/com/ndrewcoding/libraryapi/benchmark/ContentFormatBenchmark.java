@@ -0,0 +1,95 @@
+package com.ndrewcoding.libraryapi.benchmark;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.ndrewcoding.libraryapi.api.dto.LoanDTO;
+import com.ndrewcoding.libraryapi.api.mapper.LoanMapper;
+import com.ndrewcoding.libraryapi.api.model.entity.Book;
+import com.ndrewcoding.libraryapi.api.model.entity.Loan;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the formats {@code GET /api/loans} can answer in on a page of {@code pageSize} Loans: the time to write
+ * it, as the server does, and to read it back, as a client does. The size of each payload is logged on setup.
+ */
+@Slf4j
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ContentFormatBenchmark {
+
+    @Param({"1000"})
+    public int pageSize;
+
+    @Param({"json", "cbor", "smile"})
+    public String format;
+
+    private ObjectMapper objectMapper;
+    private Page<LoanDTO> page;
+    private byte[] payload;
+
+    @Setup
+    public void setUp() throws IOException {
+        objectMapper = "cbor".equals(format) ? Jackson2ObjectMapperBuilder.cbor().build()
+                : "smile".equals(format) ? Jackson2ObjectMapperBuilder.smile().build()
+                : Jackson2ObjectMapperBuilder.json().build();
+        List<Loan> content = new ArrayList<>(pageSize);
+        for (long id = 1; id <= pageSize; id++) {
+            Book book = Book.builder().id(id).title("Title " + id).author("Author " + id).isbn("isbn-" + id).build();
+            content.add(Loan.builder().id(id).customer("Customer " + id).customerEmail("customer" + id + "@email.com")
+                    .book(book).loanDate(LocalDate.now()).build());
+        }
+        page = new PageImpl<>(LoanMapper.toDTOList(content), PageRequest.of(0, pageSize), 10L * pageSize);
+        payload = objectMapper.writeValueAsBytes(page);
+        log.info("{} payload of {} loans: {} bytes", format, pageSize, payload.length);
+    }
+
+    @Benchmark
+    public byte[] serializeLoanPage() throws IOException {
+        return objectMapper.writeValueAsBytes(page);
+    }
+
+    @Benchmark
+    public LoanPage deserializeLoanPage() throws IOException {
+        return objectMapper.readValue(payload, LoanPage.class);
+    }
+
+    /**
+     * What a client keeps of the page, as the Spring Data page itself cannot be read back.
+     */
+    @Getter
+    @Setter
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public static class LoanPage {
+        private List<LoanDTO> content;
+        private long totalElements;
+        private int totalPages;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(ContentFormatBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,115 @@
+package com.ndrewcoding.libraryapi.benchmark;
+
+import com.ndrewcoding.libraryapi.LibraryApiApplication;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Downloads a catalog of {@code books} Books over HTTP, either by looping {@code GET /api/books?page=N&size=1000}
+ * until an empty page comes back, or in one request to {@code GET /api/books/export}, as CSV, NDJSON, or gzipped CSV.
+ * Every benchmark returns the number of bytes received; run with {@code -prof gc} to compare the memory allocated
+ * per download.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(value = 1, jvmArgs = "-Xmx3g")
+public class ExportBenchmark {
+    private static final int INSERT_BATCH = 10000;
+    private static final int PAGE_SIZE = 1000;
+
+    @Param({"1000000"})
+    public int books;
+
+    private ConfigurableApplicationContext context;
+    private String baseUrl;
+
+    @Setup
+    public void setUp() {
+        context = new SpringApplicationBuilder(LibraryApiApplication.class)
+                .properties("server.port=0", "spring.boot.admin.client.enabled=false", "logging.level.root=WARN")
+                .run();
+        baseUrl = "http://localhost:" + ((WebServerApplicationContext) context).getWebServer().getPort();
+
+        JdbcTemplate jdbcTemplate = context.getBean(JdbcTemplate.class);
+        List<Object[]> rows = new ArrayList<>(INSERT_BATCH);
+        for (long id = 1; id <= books; id++) {
+            rows.add(new Object[]{id, "Title " + id, "Author " + id % 1000, "isbn-" + id});
+            if (rows.size() == INSERT_BATCH || id == books) {
+                jdbcTemplate.batchUpdate("INSERT INTO book (id, title, author, isbn, version) VALUES (?, ?, ?, ?, 0)", rows);
+                rows.clear();
+            }
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public long pagedDownload() throws IOException {
+        long bytes = 0;
+        for (int page = 0; ; page++) {
+            long pageBytes = get("/api/books?size=" + PAGE_SIZE + "&page=" + page, false);
+            bytes += pageBytes;
+            if (page >= books / PAGE_SIZE) {
+                return bytes;
+            }
+        }
+    }
+
+    @Benchmark
+    public long exportCsv() throws IOException {
+        return get("/api/books/export", false);
+    }
+
+    @Benchmark
+    public long exportNdjson() throws IOException {
+        return get("/api/books/export?format=ndjson", false);
+    }
+
+    @Benchmark
+    public long exportCsvGzip() throws IOException {
+        return get("/api/books/export", true);
+    }
+
+    private long get(String path, boolean gzip) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(baseUrl + path).openConnection();
+        if (gzip) {
+            connection.setRequestProperty("Accept-Encoding", "gzip");
+        }
+        long bytes = 0;
+        try (InputStream body = connection.getInputStream()) {
+            byte[] buffer = new byte[64 * 1024];
+            for (int read = body.read(buffer); read != -1; read = body.read(buffer)) {
+                bytes += read;
+            }
+        }
+        return bytes;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(ExportBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,92 @@
+package com.ndrewcoding.libraryapi.benchmark;
+
+import com.ndrewcoding.libraryapi.LibraryApiApplication;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Calls {@code GET /api/loans} over HTTP for a customer with {@code loans} open Loans, each of a different Book, with
+ * the Hibernate second-level cache on and off.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LoanListingBenchmark {
+
+    @Param({"1000"})
+    public int loans;
+
+    @Param({"20", "1000"})
+    public int pageSize;
+
+    @Param({"false", "true"})
+    public boolean secondLevelCache;
+
+    private ConfigurableApplicationContext context;
+    private String loansUrl;
+
+    @Setup
+    public void setUp() {
+        context = new SpringApplicationBuilder(LibraryApiApplication.class)
+                .properties("server.port=0", "spring.boot.admin.client.enabled=false", "logging.level.root=WARN",
+                        "application.second-level-cache.enabled=" + secondLevelCache)
+                .run();
+        JdbcTemplate jdbcTemplate = context.getBean(JdbcTemplate.class);
+        List<Object[]> bookRows = new ArrayList<>(loans);
+        List<Object[]> loanRows = new ArrayList<>(loans);
+        LocalDate today = LocalDate.now();
+        for (long id = 1; id <= loans; id++) {
+            bookRows.add(new Object[]{id, "Title " + id, "Author " + id % 100, "isbn-" + id});
+            loanRows.add(new Object[]{id, "customer" + id + "@email.com", id, today, today.plusDays(3), id});
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO book (id, title, author, isbn, version) VALUES (?, ?, ?, ?, 0)", bookRows);
+        jdbcTemplate.batchUpdate("INSERT INTO loan (id, customer, customer_email, id_book, loan_date, due_date, "
+                + "returned, open_book_id, version) VALUES (?, 'Andrew', ?, ?, ?, ?, false, ?, 0)", loanRows);
+        int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+        loansUrl = "http://localhost:" + port + "/api/loans?customer=Andrew&page=0&size=" + pageSize;
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public long findLoans() throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(loansUrl).openConnection();
+        long length = 0;
+        try (InputStream body = connection.getInputStream()) {
+            byte[] buffer = new byte[8192];
+            for (int read = body.read(buffer); read != -1; read = body.read(buffer)) {
+                length += read;
+            }
+        }
+        return length;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(LoanListingBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,103 @@
+package com.ndrewcoding.libraryapi.benchmark;
+
+import com.ndrewcoding.libraryapi.api.config.MailDispatchProperties;
+import com.ndrewcoding.libraryapi.api.service.impl.EmailServiceImpl;
+import com.ndrewcoding.libraryapi.api.service.impl.MailDispatcher;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.mail.SimpleMailMessage;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures mails per second delivered to a {@link SmtpStandIn}, comparing one synchronous send per mail (a new SMTP
+ * connection each time) with the {@link MailDispatcher} pipeline.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+public class MailDispatchBenchmark {
+
+    private static final int RECIPIENTS_PER_MESSAGE = 50;
+    private static final int MESSAGES = 20;
+
+    @Param({"5"})
+    public long connectLatencyMillis;
+
+    @Param({"1", "4"})
+    public int workers;
+
+    @Param({"1", "20"})
+    public int messagesPerConnection;
+
+    private SmtpStandIn smtpStandIn;
+    private JavaMailSenderImpl javaMailSender;
+    private MailDispatcher mailDispatcher;
+    private EmailServiceImpl emailService;
+    private List<String> recipients;
+
+    @Setup
+    public void setUp() throws IOException {
+        smtpStandIn = new SmtpStandIn(connectLatencyMillis);
+
+        javaMailSender = new JavaMailSenderImpl();
+        javaMailSender.setHost("localhost");
+        javaMailSender.setPort(smtpStandIn.getPort());
+
+        MailDispatchProperties properties = new MailDispatchProperties();
+        properties.setWorkers(workers);
+        properties.setMessagesPerConnection(messagesPerConnection);
+        properties.setRecipientsPerMessage(RECIPIENTS_PER_MESSAGE);
+
+        mailDispatcher = new MailDispatcher(javaMailSender, properties, new SimpleMeterRegistry());
+        mailDispatcher.start();
+        emailService = new EmailServiceImpl(mailDispatcher, properties);
+
+        recipients = new ArrayList<>(MESSAGES * RECIPIENTS_PER_MESSAGE);
+        for (int i = 0; i < MESSAGES * RECIPIENTS_PER_MESSAGE; i++) {
+            recipients.add("customer" + i + "@email.com");
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException, InterruptedException {
+        mailDispatcher.stop();
+        smtpStandIn.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(MESSAGES)
+    public void synchronousSendPerMail() {
+        for (int from = 0; from < recipients.size(); from += RECIPIENTS_PER_MESSAGE) {
+            SimpleMailMessage mailMessage = new SimpleMailMessage();
+            mailMessage.setFrom("library@email.com");
+            mailMessage.setText("Overdue!");
+            mailMessage.setTo(recipients.subList(from, from + RECIPIENTS_PER_MESSAGE).toArray(new String[0]));
+            javaMailSender.send(mailMessage);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(MESSAGES)
+    public void mailDispatcher() {
+        emailService.sendMails("Overdue!", recipients).join();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(MailDispatchBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,85 @@
+package com.ndrewcoding.libraryapi.benchmark;
+
+import com.ndrewcoding.libraryapi.api.dto.BookDTO;
+import com.ndrewcoding.libraryapi.api.dto.LoanDTO;
+import com.ndrewcoding.libraryapi.api.mapper.BookMapper;
+import com.ndrewcoding.libraryapi.api.mapper.LoanMapper;
+import com.ndrewcoding.libraryapi.api.model.entity.Book;
+import com.ndrewcoding.libraryapi.api.model.entity.Loan;
+import org.modelmapper.ModelMapper;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the hand-written mappers with the reflective {@link ModelMapper} previously exposed as a bean by
+ * {@code LibraryApiApplication}, on a single Book and on a page of Loans with their nested Books.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MappingBenchmark {
+
+    @Param({"100"})
+    public int pageSize;
+
+    private final ModelMapper modelMapper = new ModelMapper();
+
+    private Book book;
+    private List<Loan> loans;
+
+    @Setup
+    public void setUp() {
+        book = Book.builder().id(1L).title("My Title").author("My Author").isbn("123").build();
+        loans = new ArrayList<>(pageSize);
+        for (long id = 1; id <= pageSize; id++) {
+            Book loanedBook = Book.builder().id(id).title("Title " + id).author("Author " + id).isbn("isbn-" + id).build();
+            loans.add(Loan.builder().id(id).customer("Customer " + id).customerEmail("customer" + id + "@email.com")
+                    .book(loanedBook).loanDate(LocalDate.now()).build());
+        }
+    }
+
+    @Benchmark
+    public BookDTO bookWithModelMapper() {
+        return modelMapper.map(book, BookDTO.class);
+    }
+
+    @Benchmark
+    public BookDTO bookWithBookMapper() {
+        return BookMapper.toDTO(book);
+    }
+
+    @Benchmark
+    public List<LoanDTO> loanPageWithModelMapper() {
+        List<LoanDTO> loanDTOs = new ArrayList<>(loans.size());
+        for (Loan loan : loans) {
+            BookDTO bookDTO = modelMapper.map(loan.getBook(), BookDTO.class);
+            LoanDTO loanDTO = modelMapper.map(loan, LoanDTO.class);
+            loanDTO.setBookDTO(bookDTO);
+            loanDTOs.add(loanDTO);
+        }
+        return loanDTOs;
+    }
+
+    @Benchmark
+    public List<LoanDTO> loanPageWithLoanMapper() {
+        return LoanMapper.toDTOList(loans);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(MappingBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,123 @@
+package com.ndrewcoding.libraryapi.benchmark;
+
+import com.ndrewcoding.libraryapi.LibraryApiApplication;
+import com.ndrewcoding.libraryapi.api.dto.BookDTO;
+import com.ndrewcoding.libraryapi.api.dto.LoanDTO;
+import com.ndrewcoding.libraryapi.api.dto.LoanFilterDTO;
+import com.ndrewcoding.libraryapi.api.mapper.BookMapper;
+import com.ndrewcoding.libraryapi.api.mapper.LoanMapper;
+import com.ndrewcoding.libraryapi.api.model.entity.Book;
+import com.ndrewcoding.libraryapi.api.model.entity.Loan;
+import com.ndrewcoding.libraryapi.api.service.BookService;
+import com.ndrewcoding.libraryapi.api.service.LoanService;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reads pages of Loans and Books, and single Books, the way the read endpoints did, loading entities and mapping
+ * them, against the way they do now, selecting DTOs. Run with the GC profiler (as {@link #main} does) to compare
+ * {@code gc.alloc.rate.norm}, the bytes allocated per read.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ProjectionBenchmark {
+
+    @Param({"1000"})
+    public int loans;
+
+    @Param({"20", "1000"})
+    public int pageSize;
+
+    private ConfigurableApplicationContext context;
+    private BookService bookService;
+    private LoanService loanService;
+    private PageRequest pageRequest;
+    private final LoanFilterDTO loanFilter = LoanFilterDTO.builder().customer("Andrew").build();
+    private final Book bookFilter = Book.builder().author("Author").build();
+
+    @Setup
+    public void setUp() {
+        context = new SpringApplicationBuilder(LibraryApiApplication.class)
+                .properties("server.port=0", "spring.boot.admin.client.enabled=false", "logging.level.root=WARN")
+                .run();
+        JdbcTemplate jdbcTemplate = context.getBean(JdbcTemplate.class);
+        bookService = context.getBean(BookService.class);
+        loanService = context.getBean(LoanService.class);
+        pageRequest = PageRequest.of(0, pageSize);
+
+        List<Object[]> bookRows = new ArrayList<>(loans);
+        List<Object[]> loanRows = new ArrayList<>(loans);
+        LocalDate today = LocalDate.now();
+        for (long id = 1; id <= loans; id++) {
+            bookRows.add(new Object[]{id, "Title " + id, "Author " + id % 100, "isbn-" + id});
+            loanRows.add(new Object[]{id, "customer" + id + "@email.com", id, today, today.plusDays(3), id});
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO book (id, title, author, isbn, version) VALUES (?, ?, ?, ?, 0)", bookRows);
+        jdbcTemplate.batchUpdate("INSERT INTO loan (id, customer, customer_email, id_book, loan_date, due_date, "
+                + "returned, open_book_id, version) VALUES (?, 'Andrew', ?, ?, ?, ?, false, ?, 0)", loanRows);
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Page<LoanDTO> findLoansAsEntities() {
+        Page<Loan> page = loanService.find(loanFilter, pageRequest);
+        return new PageImpl<>(LoanMapper.toDTOList(page.getContent()), pageRequest, page.getTotalElements());
+    }
+
+    @Benchmark
+    public Page<LoanDTO> findLoansAsDTOs() {
+        return loanService.findDTOs(loanFilter, pageRequest);
+    }
+
+    @Benchmark
+    public Page<BookDTO> findBooksAsEntities() {
+        Page<Book> page = bookService.find(bookFilter, pageRequest);
+        return new PageImpl<>(BookMapper.toDTOList(page.getContent()), pageRequest, page.getTotalElements());
+    }
+
+    @Benchmark
+    public Page<BookDTO> findBooksAsDTOs() {
+        return bookService.findDTOs(bookFilter, pageRequest);
+    }
+
+    @Benchmark
+    public BookDTO getBookAsEntity() {
+        return bookService.getById(1L).map(BookMapper::toDTO).orElse(null);
+    }
+
+    @Benchmark
+    public BookDTO getBookAsDTO() {
+        return bookService.getDTOById(1L).orElse(null);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(ProjectionBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build();
+        new Runner(options).run();
+    }
+}
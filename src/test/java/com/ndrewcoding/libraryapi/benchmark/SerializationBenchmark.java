@@ -0,0 +1,98 @@
+package com.ndrewcoding.libraryapi.benchmark;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.ndrewcoding.libraryapi.api.dto.BookDTO;
+import com.ndrewcoding.libraryapi.api.dto.LoanDTO;
+import com.ndrewcoding.libraryapi.api.exception.ApiErrors;
+import com.ndrewcoding.libraryapi.api.exception.BusinessException;
+import com.ndrewcoding.libraryapi.api.mapper.LoanMapper;
+import com.ndrewcoding.libraryapi.api.model.entity.Book;
+import com.ndrewcoding.libraryapi.api.model.entity.Loan;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.validation.BeanPropertyBindingResult;
+import org.springframework.validation.BindingResult;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Covers the web layer work done after the services return: mapping a page of Loans, serializing it with the
+ * {@link ObjectMapper} configuration Spring MVC uses, and building {@link ApiErrors} for error responses.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SerializationBenchmark {
+
+    @Param({"20", "100"})
+    public int pageSize;
+
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+    private final BusinessException businessException = new BusinessException("Book already loaned");
+
+    private Page<Loan> loans;
+    private Page<LoanDTO> loanDTOs;
+    private BindingResult bindingResult;
+
+    @Setup
+    public void setUp() {
+        List<Loan> content = new ArrayList<>(pageSize);
+        for (long id = 1; id <= pageSize; id++) {
+            Book book = Book.builder().id(id).title("Title " + id).author("Author " + id).isbn("isbn-" + id).build();
+            content.add(Loan.builder().id(id).customer("Customer " + id).customerEmail("customer" + id + "@email.com")
+                    .book(book).loanDate(LocalDate.now()).build());
+        }
+        loans = new PageImpl<>(content, PageRequest.of(0, pageSize), 10L * pageSize);
+        loanDTOs = new PageImpl<>(LoanMapper.toDTOList(content), loans.getPageable(), loans.getTotalElements());
+
+        bindingResult = new BeanPropertyBindingResult(new BookDTO(), "bookDTO");
+        bindingResult.rejectValue("title", "NotEmpty", "The field 'title' cannot be null!");
+        bindingResult.rejectValue("author", "NotEmpty", "The field 'author' cannot be null!");
+        bindingResult.rejectValue("isbn", "NotEmpty", "The field 'isbn' cannot be null!");
+    }
+
+    /**
+     * Maps the Loan entities with {@link LoanMapper}, as the paths that still read entities do; the page endpoints
+     * now select their DTOs directly.
+     */
+    @Benchmark
+    public List<LoanDTO> pageLoanToListLoanDTO() {
+        return LoanMapper.toDTOList(loans.getContent());
+    }
+
+    @Benchmark
+    public byte[] serializeLoanDTOPage() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(loanDTOs);
+    }
+
+    @Benchmark
+    public ApiErrors apiErrorsFromBindingResult() {
+        return new ApiErrors(bindingResult);
+    }
+
+    @Benchmark
+    public ApiErrors apiErrorsFromBusinessException() {
+        return new ApiErrors(businessException);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(SerializationBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
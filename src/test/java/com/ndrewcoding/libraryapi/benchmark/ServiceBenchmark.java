@@ -0,0 +1,127 @@
+package com.ndrewcoding.libraryapi.benchmark;
+
+import com.ndrewcoding.libraryapi.LibraryApiApplication;
+import com.ndrewcoding.libraryapi.api.model.entity.Book;
+import com.ndrewcoding.libraryapi.api.model.entity.Loan;
+import com.ndrewcoding.libraryapi.api.model.repository.LoanRepository;
+import com.ndrewcoding.libraryapi.api.pagination.SlicePage;
+import com.ndrewcoding.libraryapi.api.service.BookService;
+import com.ndrewcoding.libraryapi.api.service.LoanService;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs {@link BookService#find} and {@link LoanService#save} against the application on an H2 catalog of
+ * {@code books} Books, half of them loaned.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ServiceBenchmark {
+    private static final int INSERT_BATCH = 10000;
+
+    @Param({"10000"})
+    public int books;
+
+    private ConfigurableApplicationContext context;
+    private JdbcTemplate jdbcTemplate;
+    private BookService bookService;
+    private LoanService loanService;
+    private LoanRepository loanRepository;
+    private final PageRequest pageRequest = PageRequest.of(0, 20);
+    private long nextLoanedBookId;
+
+    @Setup
+    public void setUp() {
+        context = new SpringApplicationBuilder(LibraryApiApplication.class)
+                .properties("server.port=0", "spring.boot.admin.client.enabled=false", "logging.level.root=WARN")
+                .run();
+        jdbcTemplate = context.getBean(JdbcTemplate.class);
+        bookService = context.getBean(BookService.class);
+        loanService = context.getBean(LoanService.class);
+        loanRepository = context.getBean(LoanRepository.class);
+
+        List<Object[]> bookRows = new ArrayList<>(INSERT_BATCH);
+        List<Object[]> loanRows = new ArrayList<>(INSERT_BATCH);
+        for (long id = 1; id <= books; id++) {
+            bookRows.add(new Object[]{id, "Title " + id, "Author " + id % 100, "isbn-" + id});
+            if (id % 2 == 0) {
+                loanRows.add(new Object[]{id, "Customer " + id, "customer" + id + "@email.com", id, LocalDate.now(), id});
+            }
+            if (bookRows.size() == INSERT_BATCH || id == books) {
+                jdbcTemplate.batchUpdate("INSERT INTO book (id, title, author, isbn, version) VALUES (?, ?, ?, ?, 0)", bookRows);
+                jdbcTemplate.batchUpdate("INSERT INTO loan (id, customer, customer_email, id_book, loan_date, returned, "
+                        + "open_book_id, version) VALUES (?, ?, ?, ?, ?, false, ?, 0)", loanRows);
+                bookRows.clear();
+                loanRows.clear();
+            }
+        }
+        jdbcTemplate.execute("ALTER SEQUENCE loan_seq RESTART WITH " + (books + 100));
+    }
+
+    @Setup(Level.Iteration)
+    public void returnBenchmarkLoans() {
+        jdbcTemplate.update("DELETE FROM loan WHERE MOD(id_book, 2) = 1");
+        loanService.reconcileLoanedBookIndex();
+        nextLoanedBookId = 1;
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Page<Book> bookServiceFind() {
+        return bookService.find(Book.builder().author("Author 4").build(), pageRequest);
+    }
+
+    @Benchmark
+    public SlicePage<Book> bookServiceFindSlice() {
+        return bookService.findSlice(Book.builder().author("Author 4").build(), pageRequest, false);
+    }
+
+    @Benchmark
+    public Loan loanServiceSave() {
+        if (nextLoanedBookId > books) {
+            returnBenchmarkLoans();
+        }
+        Book book = Book.builder().id(nextLoanedBookId).build();
+        nextLoanedBookId += 2;
+        return loanService.save(Loan.builder().book(book).customer("Andrew").customerEmail("andrew@email.com")
+                .loanDate(LocalDate.now()).build());
+    }
+
+    @Benchmark
+    public boolean loanServiceIsLoaned() {
+        return loanService.isLoaned(books / 2);
+    }
+
+    @Benchmark
+    public boolean loanRepositoryExistsOpenLoan() {
+        return loanRepository.existsByBookAndHasNotBeenReturned(Book.builder().id((long) books / 2).build());
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(ServiceBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
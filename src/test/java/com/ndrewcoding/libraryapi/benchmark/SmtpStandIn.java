@@ -0,0 +1,94 @@
+package com.ndrewcoding.libraryapi.benchmark;
+
+import java.io.*;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Minimal in-process SMTP server that accepts every mail. It waits {@code connectLatencyMillis} before greeting each
+ * new connection, to stand in for the TCP/TLS handshake and authentication of a real server.
+ */
+public class SmtpStandIn implements Closeable {
+
+    private final ServerSocket serverSocket;
+    private final ExecutorService connections = Executors.newCachedThreadPool();
+    private final long connectLatencyMillis;
+
+    private final AtomicInteger openedConnections = new AtomicInteger();
+    private final AtomicInteger receivedMessages = new AtomicInteger();
+
+    public SmtpStandIn(long connectLatencyMillis) throws IOException {
+        this.connectLatencyMillis = connectLatencyMillis;
+        this.serverSocket = new ServerSocket(0);
+        connections.execute(this::accept);
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    public int getOpenedConnections() {
+        return openedConnections.get();
+    }
+
+    public int getReceivedMessages() {
+        return receivedMessages.get();
+    }
+
+    private void accept() {
+        while (!serverSocket.isClosed()) {
+            try {
+                Socket socket = serverSocket.accept();
+                connections.execute(() -> handle(socket));
+            } catch (IOException exception) {
+                return;
+            }
+        }
+    }
+
+    private void handle(Socket socket) {
+        openedConnections.incrementAndGet();
+        try (Socket client = socket;
+             BufferedReader in = new BufferedReader(new InputStreamReader(client.getInputStream(), StandardCharsets.US_ASCII));
+             Writer out = new OutputStreamWriter(client.getOutputStream(), StandardCharsets.US_ASCII)) {
+            Thread.sleep(connectLatencyMillis);
+            reply(out, "220 stand-in ESMTP");
+            String line;
+            while ((line = in.readLine()) != null) {
+                String command = line.length() < 4 ? line.toUpperCase() : line.substring(0, 4).toUpperCase();
+                if ("DATA".equals(command)) {
+                    reply(out, "354 End data with <CR><LF>.<CR><LF>");
+                    while ((line = in.readLine()) != null && !".".equals(line)) {
+                        // the message content is discarded
+                    }
+                    receivedMessages.incrementAndGet();
+                    reply(out, "250 OK");
+                } else if ("QUIT".equals(command)) {
+                    reply(out, "221 Bye");
+                    return;
+                } else {
+                    reply(out, "250 OK");
+                }
+            }
+        } catch (IOException exception) {
+            // the client went away
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void reply(Writer out, String response) throws IOException {
+        out.write(response + "\r\n");
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        serverSocket.close();
+        connections.shutdownNow();
+    }
+}
@@ -0,0 +1,214 @@
+package com.ndrewcoding.libraryapi.repository;
+
+import com.ndrewcoding.libraryapi.api.dto.BookDTO;
+import com.ndrewcoding.libraryapi.api.model.entity.Book;
+import com.ndrewcoding.libraryapi.api.model.repository.BookRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cache.CacheManager;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@ExtendWith(SpringExtension.class)
+@ActiveProfiles("test")
+@SpringBootTest
+public class BookRepositoryCacheTest {
+    @Autowired
+    BookRepository bookRepository;
+
+    @Autowired
+    CacheManager cacheManager;
+
+    @Autowired
+    EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    Statistics statistics;
+
+    @BeforeEach
+    public void setUp() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        bookRepository.deleteAll();
+        cacheManager.getCacheNames().forEach(name -> cacheManager.getCache(name).clear());
+        entityManagerFactory.getCache().evictAll();
+    }
+
+    @Test
+    @DisplayName("Must serve a Book found by its ID from the second-level cache")
+    public void findByIdIsCachedTest() {
+        Book book = bookRepository.save(BookRepositoryTest.createNewBook("123"));
+        statistics.clear();
+
+        Optional<Book> foundedBook = bookRepository.findById(book.getId());
+
+        assertThat(foundedBook).isPresent();
+        assertThat(foundedBook.get().getIsbn()).isEqualTo("123");
+        assertThat(statistics.getPrepareStatementCount()).isZero();
+        assertThat(statistics.getDomainDataRegionStatistics(Book.CACHE_REGION).getHitCount()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Must publish the hit, miss and eviction counts of the Book region as cache meters")
+    public void regionMetersTest() {
+        Book book = bookRepository.save(BookRepositoryTest.createNewBook("123"));
+        entityManagerFactory.getCache().evict(Book.class);
+        double hits = regionMeter("cache.gets", "hit");
+        double misses = regionMeter("cache.gets", "miss");
+
+        bookRepository.findById(book.getId());
+        bookRepository.findById(book.getId());
+
+        assertThat(regionMeter("cache.gets", "miss")).isGreaterThan(misses);
+        assertThat(regionMeter("cache.gets", "hit")).isEqualTo(hits + 1);
+        assertThat(meterRegistry.get("cache.evictions").tag("cache", Book.CACHE_REGION).functionCounter()).isNotNull();
+    }
+
+    private double regionMeter(String name, String result) {
+        return meterRegistry.get(name).tag("cache", Book.CACHE_REGION).tag("result", result).functionCounter().count();
+    }
+
+    @Test
+    @DisplayName("Must serve a Book found by its ISBN from the query cache")
+    public void findByIsbnIsCachedTest() {
+        Book book = bookRepository.save(BookRepositoryTest.createNewBook("123"));
+        assertThat(bookRepository.findByIsbn("123")).isPresent();
+        assertThat(bookRepository.existsByIsbn("123")).isTrue();
+        statistics.clear();
+
+        Optional<Book> foundedBook = bookRepository.findByIsbn("123");
+
+        assertThat(foundedBook).isPresent();
+        assertThat(foundedBook.get().getId()).isEqualTo(book.getId());
+        assertThat(bookRepository.existsByIsbn("123")).isTrue();
+        assertThat(statistics.getPrepareStatementCount()).isZero();
+        assertThat(statistics.getQueryRegionStatistics(Book.QUERY_CACHE_REGION).getHitCount()).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("Must serve a Book DTO from the query cache until the Book is updated")
+    public void findDTOByIdIsCachedTest() {
+        Book book = bookRepository.save(BookRepositoryTest.createNewBook("123"));
+        assertThat(bookRepository.findDTOById(book.getId())).isPresent();
+        statistics.clear();
+
+        Optional<BookDTO> bookDTO = bookRepository.findDTOById(book.getId());
+
+        assertThat(bookDTO).isPresent();
+        assertThat(bookDTO.get().getTitle()).isEqualTo("My Title");
+        assertThat(statistics.getPrepareStatementCount()).isZero();
+
+        assertThat(bookRepository.updateDetails(book.getId(), "New Title", book.getAuthor(), book.getVersion()))
+                .isEqualTo(1);
+
+        bookDTO = bookRepository.findDTOById(book.getId());
+        assertThat(bookDTO).isPresent();
+        assertThat(bookDTO.get().getTitle()).isEqualTo("New Title");
+        assertThat(bookDTO.get().getVersion()).isEqualTo(book.getVersion() + 1);
+    }
+
+    @Test
+    @DisplayName("Must hand every lookup its own Book, so changing one does not change what the cache serves")
+    public void cachedBooksAreNotSharedTest() {
+        Book book = bookRepository.save(BookRepositoryTest.createNewBook("123"));
+        Book first = bookRepository.findById(book.getId()).get();
+
+        first.setTitle("Changed but not saved");
+        Book second = bookRepository.findById(book.getId()).get();
+
+        assertThat(second).isNotSameAs(first);
+        assertThat(second.getTitle()).isEqualTo("My Title");
+        assertThat(bookRepository.findByIsbn("123").get()).isNotSameAs(second);
+    }
+
+    @Test
+    @DisplayName("Must stop resolving the previous ISBN of a Book once its ISBN changes")
+    public void isbnChangeInvalidatesPreviousIsbnTest() {
+        Book book = bookRepository.save(BookRepositoryTest.createNewBook("123"));
+        assertThat(bookRepository.findByIsbn("123")).isPresent();
+        assertThat(bookRepository.existsByIsbn("123")).isTrue();
+
+        book = bookRepository.findById(book.getId()).get();
+        book.setIsbn("456");
+        bookRepository.save(book);
+
+        assertThat(bookRepository.findByIsbn("123")).isEmpty();
+        assertThat(bookRepository.existsByIsbn("123")).isFalse();
+        assertThat(bookRepository.findByIsbn("456")).isPresent();
+    }
+
+    @Test
+    @DisplayName("Must not serve stale ISBN lookups once a Book with that ISBN is saved")
+    public void saveInvalidatesIsbnLookupsTest() {
+        assertThat(bookRepository.existsByIsbn("123")).isFalse();
+        assertThat(bookRepository.findByIsbn("123")).isEmpty();
+
+        bookRepository.save(BookRepositoryTest.createNewBook("123"));
+
+        assertThat(bookRepository.existsByIsbn("123")).isTrue();
+        assertThat(bookRepository.findByIsbn("123")).isPresent();
+    }
+
+    @Test
+    @DisplayName("Must not serve a deleted Book from the cache")
+    public void deleteEvictsLookupsTest() {
+        Book book = bookRepository.save(BookRepositoryTest.createNewBook("123"));
+
+        bookRepository.findById(book.getId());
+        bookRepository.findByIsbn("123");
+
+        assertThat(entityManagerFactory.getCache().contains(Book.class, book.getId())).isTrue();
+
+        bookRepository.delete(book);
+
+        assertThat(bookRepository.findById(book.getId())).isEmpty();
+        assertThat(bookRepository.findByIsbn("123")).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Must not serve a Book edited with a single UPDATE from the cache")
+    public void updateDetailsEvictsBookTest() {
+        Book book = bookRepository.save(BookRepositoryTest.createNewBook("123"));
+        bookRepository.findById(book.getId());
+
+        assertThat(bookRepository.updateDetails(book.getId(), "New Title", book.getAuthor(), book.getVersion()))
+                .isEqualTo(1);
+
+        Optional<Book> foundedBook = bookRepository.findById(book.getId());
+        assertThat(foundedBook).isPresent();
+        assertThat(foundedBook.get().getTitle()).isEqualTo("New Title");
+        assertThat(foundedBook.get().getVersion()).isEqualTo(book.getVersion() + 1);
+    }
+
+    @Test
+    @DisplayName("Must serve the count of the filtered Books from the cache until it goes stale")
+    public void countMatchingIsCachedTest() {
+        Book filter = Book.builder().isbn("1").build();
+        bookRepository.save(BookRepositoryTest.createNewBook("123"));
+
+        assertThat(bookRepository.countMatching(filter)).isEqualTo(1);
+
+        bookRepository.save(BookRepositoryTest.createNewBook("145"));
+
+        assertThat(bookRepository.countMatching(filter)).isEqualTo(1);
+        assertThat(bookRepository.countMatching(Book.builder().isbn("14").build())).isEqualTo(1);
+    }
+}
@@ -1,23 +1,33 @@
 package com.ndrewcoding.libraryapi.repository;
 
+import com.ndrewcoding.libraryapi.api.dto.BookDTO;
 import com.ndrewcoding.libraryapi.api.model.entity.Book;
 import com.ndrewcoding.libraryapi.api.model.repository.BookRepository;
+import com.ndrewcoding.libraryapi.api.pagination.KeysetCursor;
+import com.ndrewcoding.libraryapi.api.pagination.KeysetPage;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
 import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Stream;
 
 import static org.assertj.core.api.AssertionsForInterfaceTypes.assertThat;
 
 @ExtendWith(SpringExtension.class)
-@DataJpaTest
+@DataJpaTest(properties = "application.second-level-cache.enabled=false")
 @ActiveProfiles("test")
 public class BookRepositoryTest {
     @Autowired
@@ -50,6 +60,17 @@ public class BookRepositoryTest {
         assertThat(isbnExists).isFalse();
     }
 
+    @Test
+    @DisplayName("Must return which of the given ISBNs are registered in Database")
+    public void findIsbnsByIsbnInTest() {
+        testEntityManager.persist(createNewBook("123"));
+        testEntityManager.persist(createNewBook("456"));
+
+        Set<String> registeredIsbns = bookRepository.findIsbnsByIsbnIn(Arrays.asList("123", "789"));
+
+        assertThat(registeredIsbns).containsExactly("123");
+    }
+
     @Test
     @DisplayName("Must return a Book by the given id")
     public void findBookByIdTest() {
@@ -72,6 +93,20 @@ public class BookRepositoryTest {
         assertThat(savedBook.getId()).isNotNull();
     }
 
+    @Test
+    @DisplayName("Must read the version of a Book, raised by every update")
+    public void findVersionByIdTest() {
+        Book book = testEntityManager.persistAndFlush(createNewBook("123"));
+
+        assertThat(bookRepository.findVersionById(book.getId())).contains(0L);
+
+        book.setTitle("Other Title");
+        testEntityManager.flush();
+
+        assertThat(bookRepository.findVersionById(book.getId())).contains(1L);
+        assertThat(bookRepository.findVersionById(book.getId() + 1)).isEmpty();
+    }
+
     @Test
     @DisplayName("Must delete a Book")
     public void deleteBookTest() {
@@ -86,6 +121,116 @@ public class BookRepositoryTest {
         assertThat(testEntityManager.find(Book.class, book.getId())).isNull();
     }
 
+    @Test
+    @DisplayName("Must page through Books by cursor, sorted by title")
+    public void findByKeysetTest() {
+        for (String title : new String[]{"C", "A", "B", "A"}) {
+            Book book = createNewBook(title + "-isbn");
+            book.setTitle(title);
+            testEntityManager.persist(book);
+        }
+
+        KeysetCursor cursor = KeysetCursor.of("", Sort.by("title"), Collections.singleton("title"));
+
+        KeysetPage<Book> firstPage = bookRepository.findByKeyset(new Book(), cursor, 3);
+
+        assertThat(firstPage.getContent()).extracting(Book::getTitle).containsExactly("A", "A", "B");
+        assertThat(firstPage.hasNext()).isTrue();
+        assertThat(firstPage.getTotalElements()).isNull();
+
+        KeysetCursor nextCursor = KeysetCursor.of(firstPage.getNextCursor(), Sort.unsorted(), Collections.singleton("title"));
+
+        KeysetPage<Book> secondPage = bookRepository.findByKeyset(new Book(), nextCursor, 3);
+
+        assertThat(secondPage.getContent()).extracting(Book::getTitle).containsExactly("C");
+        assertThat(secondPage.hasNext()).isFalse();
+    }
+
+    @Test
+    @DisplayName("Must apply the Book filter when paging by cursor")
+    public void findByKeysetWithFilterTest() {
+        testEntityManager.persist(createNewBook("123"));
+        testEntityManager.persist(createNewBook("456"));
+
+        Book filter = Book.builder().isbn("2").build();
+
+        KeysetPage<Book> page = bookRepository.findByKeyset(
+                filter, KeysetCursor.of("", Sort.unsorted(), Collections.emptySet()), 10
+        );
+
+        assertThat(page.getContent()).extracting(Book::getIsbn).containsExactly("123");
+    }
+
+    @Test
+    @DisplayName("Must read a slice of the filtered Books and count them without paging")
+    public void findSliceTest() {
+        for (String title : new String[]{"C", "A", "B"}) {
+            Book book = createNewBook(title + "-isbn");
+            book.setTitle(title);
+            testEntityManager.persist(book);
+        }
+        testEntityManager.persist(createNewBook("other"));
+
+        Book filter = Book.builder().isbn("-ISBN").build();
+
+        Slice<Book> firstSlice = bookRepository.findSlice(filter, PageRequest.of(0, 2, Sort.by("title")));
+
+        assertThat(firstSlice.getContent()).extracting(Book::getTitle).containsExactly("A", "B");
+        assertThat(firstSlice.hasNext()).isTrue();
+
+        Slice<Book> lastSlice = bookRepository.findSlice(filter, PageRequest.of(1, 2, Sort.by("title")));
+
+        assertThat(lastSlice.getContent()).extracting(Book::getTitle).containsExactly("C");
+        assertThat(lastSlice.hasNext()).isFalse();
+        assertThat(bookRepository.countMatching(filter)).isEqualTo(3);
+    }
+
+    @Test
+    @DisplayName("Must stream every Book in ID order")
+    public void streamAllTest() {
+        Book first = testEntityManager.persist(createNewBook("123"));
+        Book second = testEntityManager.persist(createNewBook("456"));
+
+        try (Stream<Book> books = bookRepository.streamAll()) {
+            assertThat(books).containsExactly(first, second);
+        }
+    }
+
+    @Test
+    @DisplayName("Must read a Book by its id straight into its DTO")
+    public void findDTOByIdTest() {
+        Book book = testEntityManager.persistAndFlush(createNewBook("123"));
+
+        Optional<BookDTO> bookDTO = bookRepository.findDTOById(book.getId());
+
+        assertThat(bookDTO).isPresent();
+        assertThat(bookDTO.get().getIsbn()).isEqualTo("123");
+        assertThat(bookDTO.get().getTitle()).isEqualTo("My Title");
+        assertThat(bookDTO.get().getVersion()).isEqualTo(book.getVersion());
+        assertThat(bookRepository.findDTOById(book.getId() + 1)).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Must read a sorted page of the filtered Books straight into DTOs and count them")
+    public void findDTOsTest() {
+        for (String title : new String[]{"C", "A", "B"}) {
+            Book book = createNewBook(title + "-isbn");
+            book.setTitle(title);
+            testEntityManager.persist(book);
+        }
+        testEntityManager.persist(createNewBook("other"));
+
+        Book filter = Book.builder().isbn("-ISBN").build();
+
+        Page<BookDTO> firstPage = bookRepository.findDTOs(filter, PageRequest.of(0, 2, Sort.by("title")));
+        Page<BookDTO> lastPage = bookRepository.findDTOs(filter, PageRequest.of(1, 2, Sort.by("title")));
+
+        assertThat(firstPage.getContent()).extracting(BookDTO::getTitle).containsExactly("A", "B");
+        assertThat(firstPage.getTotalElements()).isEqualTo(3);
+        assertThat(lastPage.getContent()).extracting(BookDTO::getIsbn).containsExactly("C-isbn");
+        assertThat(lastPage.getTotalElements()).isEqualTo(3);
+    }
+
     protected static Book createNewBook(String isbn) {
         return Book.builder().title("My Title").author("My Author").isbn(isbn).loans(Collections.emptyList()).build();
     }
@@ -0,0 +1,95 @@
+package com.ndrewcoding.libraryapi.repository;
+
+import com.ndrewcoding.libraryapi.api.model.entity.Book;
+import com.ndrewcoding.libraryapi.api.model.repository.BookRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@ExtendWith(SpringExtension.class)
+@ActiveProfiles("test")
+@SpringBootTest
+public class BookSearchTest {
+    @Autowired
+    BookRepository bookRepository;
+
+    @AfterEach
+    public void tearDown() {
+        bookRepository.deleteAll();
+    }
+
+    @Test
+    @DisplayName("Must find Books by word prefixes of their title, author or ISBN, most relevant first")
+    public void searchTest() {
+        Book authorMatch = bookRepository.save(Book.builder().title("Letters").author("J. R. R. Tolkien").isbn("111").build());
+        Book titleMatch = bookRepository.save(Book.builder().title("Reading Tolkien").author("Someone").isbn("222").build());
+        bookRepository.save(Book.builder().title("Dune").author("Frank Herbert").isbn("333").build());
+
+        Page<Book> result = bookRepository.search("tolk", PageRequest.of(0, 10));
+
+        assertThat(result.getTotalElements()).isEqualTo(2);
+        assertThat(result.getContent()).extracting(Book::getId).containsExactly(titleMatch.getId(), authorMatch.getId());
+        assertThat(bookRepository.search("herb dun", PageRequest.of(0, 10)).getContent())
+                .extracting(Book::getIsbn).containsExactly("333");
+        assertThat(bookRepository.search("333", PageRequest.of(0, 10)).getContent())
+                .extracting(Book::getTitle).containsExactly("Dune");
+    }
+
+    @Test
+    @DisplayName("Must keep the search index in sync with updated and deleted Books")
+    public void searchIndexSyncTest() {
+        Book book = bookRepository.save(Book.builder().title("Old Title").author("Author").isbn("123").build());
+
+        book.setTitle("New Title");
+        book = bookRepository.save(book);
+
+        assertThat(bookRepository.search("old", PageRequest.of(0, 10))).isEmpty();
+        assertThat(bookRepository.search("new", PageRequest.of(0, 10))).hasSize(1);
+
+        bookRepository.delete(book);
+
+        assertThat(bookRepository.search("new", PageRequest.of(0, 10))).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Must update the details of a Book of the given version in one statement, keeping the index in sync")
+    public void updateDetailsTest() {
+        Book book = bookRepository.save(Book.builder().title("Old Title").author("Author").isbn("123").build());
+
+        assertThat(bookRepository.updateDetails(book.getId(), "Stale Title", "Author", 1L)).isZero();
+        assertThat(bookRepository.updateDetails(book.getId(), "New Title", "Author", 0L)).isEqualTo(1);
+
+        assertThat(bookRepository.findVersionById(book.getId())).contains(1L);
+        assertThat(bookRepository.findById(book.getId())).get().extracting(Book::getTitle).isEqualTo("New Title");
+        assertThat(bookRepository.search("old", PageRequest.of(0, 10))).isEmpty();
+        assertThat(bookRepository.search("new", PageRequest.of(0, 10))).hasSize(1);
+
+        assertThat(bookRepository.updateDetails(book.getId(), "Newer Title", "Author", null)).isEqualTo(1);
+        assertThat(bookRepository.findVersionById(book.getId())).contains(2L);
+        assertThat(bookRepository.findById(book.getId())).get().extracting(Book::getTitle).isEqualTo("Newer Title");
+        assertThat(bookRepository.search("newer", PageRequest.of(0, 10))).hasSize(1);
+    }
+
+    @Test
+    @DisplayName("Must page through the search results")
+    public void searchPagingTest() {
+        for (int i = 0; i < 5; i++) {
+            bookRepository.save(Book.builder().title("Saga " + i).author("Author").isbn("isbn-" + i).build());
+        }
+
+        Page<Book> result = bookRepository.search("saga", PageRequest.of(1, 2));
+
+        assertThat(result.getContent()).hasSize(2);
+        assertThat(result.getTotalElements()).isEqualTo(5);
+        assertThat(result.getTotalPages()).isEqualTo(3);
+    }
+}
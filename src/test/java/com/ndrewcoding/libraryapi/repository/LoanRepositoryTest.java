@@ -1,28 +1,42 @@
 package com.ndrewcoding.libraryapi.repository;
 
+import com.ndrewcoding.libraryapi.api.dto.LoanDTO;
+import com.ndrewcoding.libraryapi.api.exception.BusinessException;
 import com.ndrewcoding.libraryapi.api.model.entity.Book;
 import com.ndrewcoding.libraryapi.api.model.entity.Loan;
 import com.ndrewcoding.libraryapi.api.model.repository.LoanRepository;
+import com.ndrewcoding.libraryapi.api.pagination.KeysetCursor;
+import com.ndrewcoding.libraryapi.api.pagination.KeysetPage;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
 import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.time.temporal.ChronoUnit;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
 import java.util.List;
+import java.util.stream.Stream;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
 
 @ExtendWith(SpringExtension.class)
 @ActiveProfiles("test")
-@DataJpaTest
+@DataJpaTest(properties = "application.second-level-cache.enabled=false")
 public class LoanRepositoryTest {
     @Autowired
     TestEntityManager testEntityManager;
@@ -40,6 +54,88 @@ public class LoanRepositoryTest {
         assertThat(exists).isTrue();
     }
 
+    @Test
+    @DisplayName("Must reject a second open Loan of the same Book")
+    public void saveSecondOpenLoanOfSameBookTest() {
+        Loan persistedLoan = createAndPersistALoanAndItsBook();
+
+        Throwable exception = catchThrowable(() -> loanRepository.saveAndFlush(createNewLoan(persistedLoan.getBook())));
+
+        assertThat(exception)
+                .isInstanceOf(DataIntegrityViolationException.class)
+                .hasMessageContaining(Loan.OPEN_BOOK_CONSTRAINT.toUpperCase());
+    }
+
+    @Test
+    @DisplayName("Must accept a new Loan of a Book whose previous Loan was returned")
+    public void saveLoanOfReturnedBookTest() {
+        Loan persistedLoan = createAndPersistALoanAndItsBook();
+        persistedLoan.setReturned(true);
+        loanRepository.saveAndFlush(persistedLoan);
+
+        Loan newLoan = loanRepository.saveAndFlush(createNewLoan(persistedLoan.getBook()));
+
+        assertThat(persistedLoan.getOpenBookId()).isNull();
+        assertThat(newLoan.getOpenBookId()).isEqualTo(persistedLoan.getBook().getId());
+    }
+
+    @Test
+    @DisplayName("Must set the Loans with the given IDs as returned, freeing their Books")
+    public void returnAllByIdInTest() {
+        Loan persistedLoan = createAndPersistALoanAndItsBook();
+
+        int updated = loanRepository.returnAllByIdIn(Collections.singleton(persistedLoan.getId()));
+
+        Loan returnedLoan = testEntityManager.find(Loan.class, persistedLoan.getId());
+        assertThat(updated).isEqualTo(1);
+        assertThat(returnedLoan.isReturned()).isTrue();
+        assertThat(returnedLoan.getOpenBookId()).isNull();
+        assertThat(returnedLoan.getVersion()).isEqualTo(persistedLoan.getVersion() + 1);
+        assertThat(loanRepository.findOpenBookIdsByOpenBookIdIn(Collections.singleton(persistedLoan.getBook().getId())))
+                .isEmpty();
+    }
+
+    @Test
+    @DisplayName("Must set a Loan as returned or not in one statement, checking its version when given")
+    public void updateReturnedByIdTest() {
+        Loan persistedLoan = createAndPersistALoanAndItsBook();
+        Long bookId = persistedLoan.getBook().getId();
+
+        assertThat(loanRepository.updateReturnedById(persistedLoan.getId(), true, 1L)).isZero();
+        assertThat(loanRepository.updateReturnedById(persistedLoan.getId() + 1, true, null)).isZero();
+        assertThat(loanRepository.updateReturnedById(persistedLoan.getId(), true, 0L)).isEqualTo(1);
+
+        testEntityManager.clear();
+        Loan returnedLoan = testEntityManager.find(Loan.class, persistedLoan.getId());
+        assertThat(returnedLoan.isReturned()).isTrue();
+        assertThat(returnedLoan.getOpenBookId()).isNull();
+        assertThat(returnedLoan.getVersion()).isEqualTo(1);
+
+        assertThat(loanRepository.updateReturnedById(persistedLoan.getId(), false, null)).isEqualTo(1);
+
+        testEntityManager.clear();
+        Loan reopenedLoan = testEntityManager.find(Loan.class, persistedLoan.getId());
+        assertThat(reopenedLoan.isReturned()).isFalse();
+        assertThat(reopenedLoan.getOpenBookId()).isEqualTo(bookId);
+    }
+
+    @Test
+    @DisplayName("Must read the Books of the open Loans")
+    public void openBookIdsTest() {
+        Loan openLoan = createAndPersistALoanAndItsBook();
+        Loan returnedLoan = createAndPersistALoanAndItsBook();
+        returnedLoan.setReturned(true);
+        testEntityManager.flush();
+
+        Long openBookId = openLoan.getBook().getId();
+        try (Stream<Long> openBookIds = loanRepository.streamOpenBookIds()) {
+            assertThat(openBookIds).containsExactly(openBookId);
+        }
+        assertThat(loanRepository.findOpenBookIdsByIdIn(Arrays.asList(openLoan.getId(), returnedLoan.getId())))
+                .containsExactly(openBookId);
+        assertThat(loanRepository.findBookIdById(returnedLoan.getId())).contains(returnedLoan.getBook().getId());
+    }
+
     @Test
     @DisplayName("Must find a Loan by its Book's ISBN or by its Customer")
     public void findByBookIsbnOrCustomerTest() {
@@ -61,25 +157,103 @@ public class LoanRepositoryTest {
     }
 
     @Test
-    @DisplayName("Must get Loans that were loaned at most three days ago and that are not returned")
-    public void findByLoanDateLessThanAndNotReturnedTest() {
+    @DisplayName("Must read a slice of the Loans of a Book's ISBN or of a Customer without counting them")
+    public void findSliceByBookIsbnOrCustomerTest() {
+        Loan first = createAndPersistALoanAndItsBook();
+        Loan second = createAndPersistALoanAndItsBook();
+
+        Slice<Loan> firstSlice = loanRepository.findSliceByBookIsbnOrCustomer(
+                null, "Andrew", PageRequest.of(0, 1, Sort.by("id"))
+        );
+
+        assertThat(firstSlice.getContent()).containsExactly(first);
+        assertThat(firstSlice.hasNext()).isTrue();
+
+        Slice<Loan> lastSlice = loanRepository.findSliceByBookIsbnOrCustomer(
+                null, "Andrew", PageRequest.of(1, 1, Sort.by("id"))
+        );
+
+        assertThat(lastSlice.getContent()).containsExactly(second);
+        assertThat(lastSlice.hasNext()).isFalse();
+    }
+
+    @Test
+    @DisplayName("Must stream the Loans of a Book's ISBN or of a Customer in ID order")
+    public void streamByBookIsbnOrCustomerTest() {
+        Loan first = createAndPersistALoanAndItsBook();
+        Loan second = createAndPersistALoanAndItsBook();
+
+        try (Stream<Loan> loans = loanRepository.streamByBookIsbnOrCustomer(null, "Andrew")) {
+            assertThat(loans).containsExactly(first, second);
+        }
+    }
+
+    @Test
+    @DisplayName("Must stream every Loan in ID order")
+    public void streamAllTest() {
+        Loan first = createAndPersistALoanAndItsBook();
+        Loan second = createAndPersistALoanAndItsBook();
+        second.setCustomer("Maria");
+
+        try (Stream<Loan> loans = loanRepository.streamAll()) {
+            assertThat(loans).containsExactly(first, second);
+        }
+    }
+
+    @Test
+    @DisplayName("Must derive the due date from the loan date")
+    public void dueDateTest() {
         Loan loan = createAndPersistALoanAndItsBook();
 
-        loan.setLoanDate(LocalDate.now().minus(5, ChronoUnit.DAYS));
+        assertThat(loan.getDueDate()).isEqualTo(loan.getLoanDate().plusDays(Loan.LOAN_PERIOD_DAYS));
 
-        List<Loan> result = loanRepository.findByLoanDateLessThanAndNotReturned(LocalDate.now().minus(4, ChronoUnit.DAYS));
+        loan.setLoanDate(LocalDate.now().minus(5, ChronoUnit.DAYS));
+        loanRepository.flush();
 
-        assertThat(result).hasSize(1).contains(loan);
+        assertThat(loan.getDueDate()).isEqualTo(LocalDate.now().minus(2, ChronoUnit.DAYS));
     }
 
     @Test
-    @DisplayName("Must return empty when there are no overdue Loans")
-    public void findByLoanDateLessThanAndNotReturnedReturnsEmptyWhenLoansAreUpToDateTest() {
+    @DisplayName("Must read the overdue Loans due from a date on that are neither returned nor notified")
+    public void findUnnotifiedOverdueLoansTest() {
+        Loan overdueLoan = createAndPersistALoanAndItsBook();
+        overdueLoan.setLoanDate(LocalDate.now().minus(5, ChronoUnit.DAYS));
+        Loan olderOverdueLoan = createAndPersistALoanAndItsBook();
+        olderOverdueLoan.setLoanDate(LocalDate.now().minus(10, ChronoUnit.DAYS));
+        Loan notifiedLoan = createAndPersistALoanAndItsBook();
+        notifiedLoan.setLoanDate(LocalDate.now().minus(5, ChronoUnit.DAYS));
+        notifiedLoan.setOverdueNotifiedAt(LocalDateTime.now());
+        Loan returnedLoan = createAndPersistALoanAndItsBook();
+        returnedLoan.setLoanDate(LocalDate.now().minus(5, ChronoUnit.DAYS));
+        returnedLoan.setReturned(true);
         createAndPersistALoanAndItsBook();
+        loanRepository.flush();
 
-        List<Loan> result = loanRepository.findByLoanDateLessThanAndNotReturned(LocalDate.now().minus(4, ChronoUnit.DAYS));
+        List<LoanRepository.OverdueLoan> result = loanRepository.findUnnotifiedOverdueLoans(
+                LocalDate.now().minus(3, ChronoUnit.DAYS), LocalDate.now(), PageRequest.of(0, 10)
+        );
 
-        assertThat(result).isEmpty();
+        assertThat(result).extracting(LoanRepository.OverdueLoan::getId).containsExactly(overdueLoan.getId());
+        assertThat(loanRepository.findEarliestUnnotifiedOverdueDueDate(LocalDate.now()))
+                .contains(olderOverdueLoan.getDueDate());
+    }
+
+    @Test
+    @DisplayName("Must mark Loans as notified, leaving their version alone")
+    public void markOverdueNotifiedTest() {
+        Loan overdueLoan = createAndPersistALoanAndItsBook();
+        overdueLoan.setLoanDate(LocalDate.now().minus(5, ChronoUnit.DAYS));
+        loanRepository.flush();
+        long version = overdueLoan.getVersion();
+
+        int updated = loanRepository.markOverdueNotified(Collections.singletonList(overdueLoan.getId()), LocalDateTime.now());
+        testEntityManager.clear();
+
+        assertThat(updated).isEqualTo(1);
+        Loan notifiedLoan = testEntityManager.find(Loan.class, overdueLoan.getId());
+        assertThat(notifiedLoan.getOverdueNotifiedAt()).isNotNull();
+        assertThat(notifiedLoan.getVersion()).isEqualTo(version);
+        assertThat(loanRepository.findEarliestUnnotifiedOverdueDueDate(LocalDate.now())).isEmpty();
     }
 
     @Test
@@ -100,6 +274,79 @@ public class LoanRepositoryTest {
         assertThat(loansByBook.getPageable().getPageSize()).isEqualTo(10);
     }
 
+    @Test
+    @DisplayName("Must read the Loans by ISBN or Customer and by Book straight into DTOs")
+    public void findDTOsTest() {
+        Loan persistedLoan = createAndPersistALoanAndItsBook();
+        Book book = persistedLoan.getBook();
+
+        Page<LoanDTO> byIsbnOrCustomer = loanRepository.findDTOsByBookIsbnOrCustomer(
+                "123", "Nobody", PageRequest.of(0, 10, Sort.by("loanDate"))
+        );
+        Page<LoanDTO> byBook = loanRepository.findDTOsByBookId(book.getId(), PageRequest.of(0, 10));
+
+        for (Page<LoanDTO> page : Arrays.asList(byIsbnOrCustomer, byBook)) {
+            assertThat(page.getTotalElements()).isEqualTo(1);
+            LoanDTO loan = page.getContent().get(0);
+            assertThat(loan.getId()).isEqualTo(persistedLoan.getId());
+            assertThat(loan.getIsbn()).isEqualTo("123");
+            assertThat(loan.getCustomer()).isEqualTo(persistedLoan.getCustomer());
+            assertThat(loan.getVersion()).isEqualTo(persistedLoan.getVersion());
+            assertThat(loan.getBookDTO().getId()).isEqualTo(book.getId());
+            assertThat(loan.getBookDTO().getTitle()).isEqualTo(book.getTitle());
+            assertThat(loan.getBookDTO().getVersion()).isEqualTo(book.getVersion());
+        }
+        assertThat(loanRepository.findDTOsByBookId(book.getId() + 1, PageRequest.of(0, 10))).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Must read a slice of the Loans of a given Book and count them apart")
+    public void findSliceByBookTest() {
+        Loan persistedLoan = createAndPersistALoanAndItsBook();
+
+        Slice<Loan> loansByBook = loanRepository.findSliceByBook(persistedLoan.getBook(), PageRequest.of(0, 10));
+
+        assertThat(loansByBook.getContent()).containsExactly(persistedLoan);
+        assertThat(loansByBook.hasNext()).isFalse();
+        assertThat(loanRepository.countByBook(persistedLoan.getBook())).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Must page through the Loans of a Customer by cursor, newest first")
+    public void findByBookIsbnOrCustomerByKeysetTest() {
+        Loan oldest = createAndPersistALoanAndItsBook();
+        oldest.setLoanDate(LocalDate.now().minus(2, ChronoUnit.DAYS));
+        Loan newest = createAndPersistALoanAndItsBook();
+
+        KeysetCursor cursor = KeysetCursor.of("", Sort.by(Sort.Order.desc("loanDate")), Collections.singleton("loanDate"));
+
+        KeysetPage<Loan> firstPage = loanRepository.findByBookIsbnOrCustomerByKeyset(null, "Andrew", cursor, 1);
+
+        assertThat(firstPage.getContent()).containsExactly(newest);
+        assertThat(firstPage.hasNext()).isTrue();
+
+        KeysetPage<Loan> secondPage = loanRepository.findByBookIsbnOrCustomerByKeyset(
+                null, "Andrew", KeysetCursor.of(firstPage.getNextCursor(), Sort.unsorted(), Collections.singleton("loanDate")), 1
+        );
+
+        assertThat(secondPage.getContent()).containsExactly(oldest);
+        assertThat(secondPage.hasNext()).isFalse();
+        assertThat(loanRepository.countByBookIsbnOrCustomer(null, "Andrew")).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("Must reject a cursor whose last loan date does not parse as an invalid cursor")
+    public void findByBookIsbnOrCustomerByMalformedDateKeysetTest() {
+        createAndPersistALoanAndItsBook();
+        String token = Base64.getUrlEncoder().withoutPadding()
+                .encodeToString("loanDate|DESC|1|not-a-date".getBytes(StandardCharsets.UTF_8));
+        KeysetCursor cursor = KeysetCursor.of(token, Sort.unsorted(), Collections.singleton("loanDate"));
+
+        Throwable exception = catchThrowable(() -> loanRepository.findByBookIsbnOrCustomerByKeyset(null, "Andrew", cursor, 1));
+
+        assertThat(exception).isInstanceOf(BusinessException.class).hasMessage("Invalid pagination cursor.");
+    }
+
     private Loan createNewLoan(Book book) {
         return Loan.builder().book(book).customer("Andrew").customerEmail("andrew@email.com").loanDate(LocalDate.now()).build();
     }